@@ -0,0 +1,84 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Entry point of the benchmark jar. Accepts the same arguments as the JMH
+ * command line, and enables the GC profiler when it was not specified, so
+ * that the allocation rate of each benchmark is always reported.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * mvn -P benchmarks package
+ * java -jar target/benchmarks.jar IsInsideBenchmark
+ * }</pre>
+ * 
+ * @author dlegland
+ */
+public class BenchmarkRunner
+{
+    /**
+     * Runs the benchmarks selected by the command line arguments.
+     * 
+     * @param args
+     *            the JMH command line arguments
+     * @throws CommandLineOptionException
+     *             if the arguments can not be parsed
+     * @throws IOException
+     *             if the help message can not be displayed
+     * @throws RunnerException
+     *             if a benchmark could not be run
+     */
+    public static void main(String[] args) throws CommandLineOptionException, IOException, RunnerException
+    {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        if (cmdOptions.shouldHelp())
+        {
+            cmdOptions.showHelp();
+            return;
+        }
+        
+        Options options = cmdOptions;
+        if (!hasGCProfiler(cmdOptions))
+        {
+            options = new OptionsBuilder()
+                    .parent(cmdOptions)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+        }
+        
+        Runner runner = new Runner(options);
+        if (cmdOptions.shouldList())
+        {
+            runner.list();
+            return;
+        }
+        runner.run();
+    }
+    
+    private static boolean hasGCProfiler(Options options)
+    {
+        for (ProfilerConfig config : options.getProfilers())
+        {
+            String name = config.getKlass();
+            if (name.equals("gc") || name.equals(GCProfiler.class.getName()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.benchmarks;
+
+import ij.ImageStack;
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+import net.ijt.digishapes.raster.SpanShape2D;
+import net.ijt.digishapes.raster.SpanShape3D;
+import net.ijt.digishapes.shapes2d.Capsule2D;
+import net.ijt.digishapes.shapes2d.Circle2DAdapter;
+import net.ijt.digishapes.shapes2d.Ellipse2DAdapter;
+import net.ijt.digishapes.shapes2d.OrientedBox2DAdapter;
+import net.ijt.digishapes.shapes3d.Ball3D;
+import net.ijt.digishapes.shapes3d.Capsule3D;
+import net.ijt.digishapes.shapes3d.CenteredCylinder3D;
+import net.ijt.digishapes.shapes3d.Cube3D;
+import net.ijt.digishapes.shapes3d.Cuboid3D;
+import net.ijt.digishapes.shapes3d.Cylinder3D;
+import net.ijt.digishapes.shapes3d.Ellipsoid3DAdapter;
+import net.ijt.geometry.geom3d.Point3D;
+
+/**
+ * Creates the images and the shapes used by the benchmarks. The shapes are
+ * centered within the image, and their dimensions are proportional to the
+ * size of the image, so that the ratio between the number of voxels within
+ * the shape and the number of voxels of the image does not depend on the
+ * size.
+ * 
+ * @author dlegland
+ */
+class BenchmarkShapes
+{
+    /**
+     * Creates a planar shape from its name.
+     * 
+     * @param name
+     *            the name of the shape: "Disk", "Ellipse", "RotatedSquare",
+     *            "OrientedBox" or "Capsule"
+     * @param size
+     *            the size of the image that will contain the shape
+     * @return the new shape
+     */
+    static final SpanShape2D createShape2D(String name, int size)
+    {
+        double c = size * 0.5;
+        switch (name)
+        {
+            case "Disk": return new Circle2DAdapter(c, c, size * 0.4);
+            case "Ellipse": return new Ellipse2DAdapter(c, c, size * 0.4, size * 0.2, 30);
+            case "RotatedSquare": return new OrientedBox2DAdapter(c, c, size * 0.5, size * 0.5, 45);
+            case "OrientedBox": return new OrientedBox2DAdapter(c, c, size * 0.7, size * 0.3, 30);
+            case "Capsule": return new Capsule2D(c, c, size * 0.5, size * 0.15, 30);
+            default: throw new IllegalArgumentException("Unknown 2D shape: " + name);
+        }
+    }
+    
+    /**
+     * Creates a 3D shape from its name.
+     * 
+     * @param name
+     *            the name of the shape: "Ball", "Ellipsoid", "Cube", "Cuboid",
+     *            "Cylinder", "CenteredCylinder" or "Capsule"
+     * @param size
+     *            the size of the image that will contain the shape
+     * @return the new shape
+     */
+    static final SpanShape3D createShape3D(String name, int size)
+    {
+        double c = size * 0.5;
+        Point3D center = new Point3D(c, c, c);
+        switch (name)
+        {
+            case "Ball": return new Ball3D(c, c, c, size * 0.4);
+            case "Ellipsoid": return new Ellipsoid3DAdapter(c, c, c, size * 0.4, size * 0.3, size * 0.2, 30, 20, 10);
+            case "Cube": return new Cube3D(c, c, c, size * 0.5, 30, 20, 10);
+            case "Cuboid": return new Cuboid3D(c, c, c, size * 0.7, size * 0.4, size * 0.2, 30, 20, 10);
+            case "Cylinder":
+                Point3D p1 = new Point3D(size * 0.2, size * 0.3, size * 0.25);
+                Point3D p2 = new Point3D(size * 0.8, size * 0.7, size * 0.75);
+                return new Cylinder3D(p1, p2, size * 0.15);
+            case "CenteredCylinder": return new CenteredCylinder3D(center, size * 0.6, size * 0.15, 30, 20, 10);
+            case "Capsule": return new Capsule3D(center, size * 0.5, size * 0.15, 30, 20, 10);
+            default: throw new IllegalArgumentException("Unknown 3D shape: " + name);
+        }
+    }
+    
+    /**
+     * Creates a square image with the specified bit depth.
+     * 
+     * @param size
+     *            the width and the height of the image
+     * @param bitDepth
+     *            the bit depth of the image: 8, 16 or 32
+     * @return the new image
+     */
+    static final ImageProcessor createImage(int size, int bitDepth)
+    {
+        switch (bitDepth)
+        {
+            case 8: return new ByteProcessor(size, size);
+            case 16: return new ShortProcessor(size, size);
+            case 32: return new FloatProcessor(size, size);
+            default: throw new IllegalArgumentException("Bit depth must be 8, 16 or 32, not " + bitDepth);
+        }
+    }
+    
+    /**
+     * Creates a cubic image stack with the specified bit depth.
+     * 
+     * @param size
+     *            the width, the height and the number of slices of the image
+     * @param bitDepth
+     *            the bit depth of the image: 8, 16 or 32
+     * @return the new image
+     */
+    static final ImageStack createStack(int size, int bitDepth)
+    {
+        if (bitDepth != 8 && bitDepth != 16 && bitDepth != 32)
+        {
+            throw new IllegalArgumentException("Bit depth must be 8, 16 or 32, not " + bitDepth);
+        }
+        return ImageStack.create(size, size, size, bitDepth);
+    }
+}
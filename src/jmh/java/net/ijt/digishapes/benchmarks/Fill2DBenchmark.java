@@ -0,0 +1,172 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ij.process.ImageProcessor;
+import net.ijt.digishapes.DigitalShapes;
+import net.ijt.digishapes.raster.Rasterizer2D;
+import net.ijt.digishapes.raster.SpanShape2D;
+import net.ijt.digishapes.util.ImageUtils;
+
+/**
+ * Measures the time needed to fill a planar shape into an image, for each of
+ * the fill paths of the library.
+ * 
+ * Example, for comparing the fill paths on a disk within a 4096x4096 8-bit
+ * image:
+ * 
+ * <pre>{@code
+ * java -jar target/benchmarks.jar Fill2DBenchmark -p shape=Disk -p size=4096 -p bitDepth=8
+ * }</pre>
+ * 
+ * @author dlegland
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Fill2DBenchmark
+{
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Tests the center of each pixel of the image with the isInside method of
+     * the shape, using ImageUtils.
+     * 
+     * @param state
+     *            the image and the shape
+     */
+    @Benchmark
+    public void imageUtilsFill(Image2D state)
+    {
+        SpanShape2D shape = state.spanShape;
+        ImageUtils.fillPixels(state.image, (int x, int y) -> shape.isInside(x + 0.5, y + 0.5), state.value);
+    }
+    
+    /**
+     * Tests the center of each pixel within the bounds of the shape, using
+     * ImageUtils.
+     * 
+     * @param state
+     *            the image and the shape
+     */
+    @Benchmark
+    public void imageUtilsFillBounds(Image2D state)
+    {
+        ImageUtils.fillCenters(state.image, state.spanShape.bounds(), state.spanShape::isInside, state.value);
+    }
+    
+    /**
+     * Tests the center of each pixel with an explicit loop, and sets the
+     * pixels within the shape one by one.
+     * 
+     * @param state
+     *            the image and the shape
+     */
+    @Benchmark
+    public void putPixelLoop(Image2D state)
+    {
+        ImageProcessor image = state.image;
+        SpanShape2D shape = state.spanShape;
+        int sizeX = image.getWidth();
+        int sizeY = image.getHeight();
+        for (int y = 0; y < sizeY; y++)
+        {
+            for (int x = 0; x < sizeX; x++)
+            {
+                if (shape.isInside(x + 0.5, y + 0.5))
+                {
+                    image.putPixelValue(x, y, state.value);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Fills the shape row by row, within a single thread.
+     * 
+     * @param state
+     *            the image and the shape
+     */
+    @Benchmark
+    public void rasterizer(Image2D state)
+    {
+        Rasterizer2D.fill(state.image, state.spanShape, state.value);
+    }
+    
+    /**
+     * Fills the shape row by row, by processing bands of rows in parallel.
+     * 
+     * @param state
+     *            the image and the shape
+     * @param threads
+     *            the number of threads
+     */
+    @Benchmark
+    public void rasterizerParallel(Image2D state, Threads threads)
+    {
+        Rasterizer2D.fill(state.image, state.spanShape, state.value, threads.threads);
+    }
+    
+    /**
+     * Fills the shape with the entry point used by the plugins.
+     * 
+     * @param state
+     *            the image and the shape
+     * @param threads
+     *            the number of threads
+     */
+    @Benchmark
+    public void digitalShapes(Image2D state, Threads threads)
+    {
+        DigitalShapes.fill(state.image, state.spanShape, state.value, threads.threads);
+    }
+    
+    
+    // ===================================================================
+    // Inner classes
+    
+    /**
+     * The image to fill, and the shape to fill into the image.
+     */
+    @State(Scope.Thread)
+    public static class Image2D
+    {
+        @Param({"Disk", "Ellipse", "RotatedSquare", "OrientedBox", "Capsule"})
+        public String shape;
+        
+        @Param({"256", "1024", "4096"})
+        public int size;
+        
+        @Param({"8", "16", "32"})
+        public int bitDepth;
+        
+        ImageProcessor image;
+        SpanShape2D spanShape;
+        final float value = 255;
+        
+        @Setup
+        public void setup()
+        {
+            this.image = BenchmarkShapes.createImage(size, bitDepth);
+            this.spanShape = BenchmarkShapes.createShape2D(shape, size);
+        }
+    }
+}
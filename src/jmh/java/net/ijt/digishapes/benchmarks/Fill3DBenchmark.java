@@ -0,0 +1,220 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ij.ImageStack;
+import net.ijt.digishapes.DigitalShapes;
+import net.ijt.digishapes.raster.BlockShape3D;
+import net.ijt.digishapes.raster.OctreeRasterizer3D;
+import net.ijt.digishapes.raster.Rasterizer3D;
+import net.ijt.digishapes.raster.SpanShape3D;
+import net.ijt.digishapes.util.ImageUtils;
+
+/**
+ * Measures the time needed to fill a 3D shape into an image stack, for each of
+ * the fill paths of the library.
+ * 
+ * A 32-bit stack of 1024x1024x1024 voxels requires 4 GB of memory, hence the
+ * large heap of the forked virtual machines. As the per-voxel paths need
+ * several seconds for the largest sizes, it is convenient to restrict the
+ * parameters from the command line:
+ * 
+ * <pre>{@code
+ * java -jar target/benchmarks.jar "Fill3DBenchmark.(rasterizer|octree)" -p shape=Ball -p size=1024
+ * }</pre>
+ * 
+ * @author dlegland
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class Fill3DBenchmark
+{
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Tests the center of each voxel of the image with the isInside method of
+     * the shape, using ImageUtils.
+     * 
+     * @param state
+     *            the image and the shape
+     */
+    @Benchmark
+    public void imageUtilsFill(Image3D state)
+    {
+        SpanShape3D shape = state.spanShape;
+        ImageUtils.fillVoxels(state.image, (int x, int y, int z) -> shape.isInside(x + 0.5, y + 0.5, z + 0.5), state.value);
+    }
+    
+    /**
+     * Tests the center of each voxel within the bounds of the shape, using
+     * ImageUtils.
+     * 
+     * @param state
+     *            the image and the shape
+     */
+    @Benchmark
+    public void imageUtilsFillBounds(Image3D state)
+    {
+        ImageUtils.fillCenters(state.image, state.spanShape.bounds(), state.spanShape::isInside, state.value);
+    }
+    
+    /**
+     * Tests the center of each voxel with an explicit loop, and sets the
+     * voxels within the shape one by one.
+     * 
+     * @param state
+     *            the image and the shape
+     */
+    @Benchmark
+    public void setVoxelLoop(Image3D state)
+    {
+        ImageStack image = state.image;
+        SpanShape3D shape = state.spanShape;
+        int sizeX = image.getWidth();
+        int sizeY = image.getHeight();
+        int sizeZ = image.getSize();
+        for (int z = 0; z < sizeZ; z++)
+        {
+            for (int y = 0; y < sizeY; y++)
+            {
+                for (int x = 0; x < sizeX; x++)
+                {
+                    if (shape.isInside(x + 0.5, y + 0.5, z + 0.5))
+                    {
+                        image.setVoxel(x, y, z, state.value);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Fills the shape row by row, within a single thread.
+     * 
+     * @param state
+     *            the image and the shape
+     */
+    @Benchmark
+    public void rasterizer(Image3D state)
+    {
+        Rasterizer3D.fill(state.image, state.spanShape, state.value);
+    }
+    
+    /**
+     * Fills the shape row by row, by processing slabs of slices in parallel.
+     * 
+     * @param state
+     *            the image and the shape
+     * @param threads
+     *            the number of threads
+     */
+    @Benchmark
+    public void rasterizerParallel(Image3D state, Threads threads)
+    {
+        Rasterizer3D.fill(state.image, state.spanShape, state.value, threads.threads);
+    }
+    
+    /**
+     * Fills the shape by recursive subdivision of its bounding box.
+     * 
+     * @param state
+     *            the image and the shape
+     */
+    @Benchmark
+    public void octree(BlockImage3D state)
+    {
+        OctreeRasterizer3D.fill(state.image, state.blockShape, state.value);
+    }
+    
+    /**
+     * Fills the shape with the entry point used by the plugins.
+     * 
+     * @param state
+     *            the image and the shape
+     * @param threads
+     *            the number of threads
+     */
+    @Benchmark
+    public void digitalShapes(Image3D state, Threads threads)
+    {
+        DigitalShapes.fill(state.image, state.spanShape, state.value, threads.threads);
+    }
+    
+    
+    // ===================================================================
+    // Inner classes
+    
+    /**
+     * The image stack to fill, and the shape to fill into the image.
+     */
+    @State(Scope.Thread)
+    public static class Image3D
+    {
+        @Param({"Ball", "Ellipsoid", "Cube", "Cuboid", "Cylinder", "CenteredCylinder", "Capsule"})
+        public String shape;
+        
+        @Param({"256", "512", "1024"})
+        public int size;
+        
+        @Param({"8", "16", "32"})
+        public int bitDepth;
+        
+        ImageStack image;
+        SpanShape3D spanShape;
+        final double value = 255;
+        
+        @Setup
+        public void setup()
+        {
+            this.image = BenchmarkShapes.createStack(size, bitDepth);
+            this.spanShape = BenchmarkShapes.createShape3D(shape, size);
+        }
+    }
+    
+    /**
+     * The image stack to fill, and a shape that can be classified by blocks
+     * of voxels.
+     */
+    @State(Scope.Thread)
+    public static class BlockImage3D
+    {
+        @Param({"Ball", "Ellipsoid", "Cube", "Cuboid", "Capsule"})
+        public String shape;
+        
+        @Param({"256", "512", "1024"})
+        public int size;
+        
+        @Param({"8", "16", "32"})
+        public int bitDepth;
+        
+        ImageStack image;
+        BlockShape3D blockShape;
+        final double value = 255;
+        
+        @Setup
+        public void setup()
+        {
+            this.image = BenchmarkShapes.createStack(size, bitDepth);
+            this.blockShape = (BlockShape3D) BenchmarkShapes.createShape3D(shape, size);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.ijt.digishapes.raster.SpanShape2D;
+import net.ijt.digishapes.raster.SpanShape3D;
+import net.ijt.geometry.geom2d.Bounds2D;
+import net.ijt.geometry.geom3d.Bounds3D;
+
+/**
+ * Measures the cost of a single call to the isInside method of each shape,
+ * for points uniformly distributed within the bounds of the shape.
+ * 
+ * The isInside method is called for each pixel or voxel by the per-voxel fill
+ * paths, and for the extremities of each span by the rasterizers. It is
+ * expected not to allocate any object: the "gc.alloc.rate.norm" metric
+ * reported by the GC profiler should therefore remain close to zero.
+ * 
+ * @author dlegland
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IsInsideBenchmark
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The number of points tested by each invocation of a benchmark method.
+     */
+    static final int POINT_COUNT = 1024;
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Tests whether the points are within a planar shape.
+     * 
+     * @param state
+     *            the shape and the points to test
+     * @return the number of points within the shape
+     */
+    @Benchmark
+    @OperationsPerInvocation(POINT_COUNT)
+    public int isInside2D(Points2D state)
+    {
+        SpanShape2D shape = state.spanShape;
+        double[] coords = state.coords;
+        int count = 0;
+        for (int i = 0; i < coords.length; i += 2)
+        {
+            if (shape.isInside(coords[i], coords[i + 1]))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Tests whether the points are within a 3D shape.
+     * 
+     * @param state
+     *            the shape and the points to test
+     * @return the number of points within the shape
+     */
+    @Benchmark
+    @OperationsPerInvocation(POINT_COUNT)
+    public int isInside3D(Points3D state)
+    {
+        SpanShape3D shape = state.spanShape;
+        double[] coords = state.coords;
+        int count = 0;
+        for (int i = 0; i < coords.length; i += 3)
+        {
+            if (shape.isInside(coords[i], coords[i + 1], coords[i + 2]))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    
+    // ===================================================================
+    // Inner classes
+    
+    /**
+     * A planar shape, and the coordinates of the points to test.
+     */
+    @State(Scope.Thread)
+    public static class Points2D
+    {
+        @Param({"Disk", "Ellipse", "RotatedSquare", "OrientedBox", "Capsule"})
+        public String shape;
+        
+        SpanShape2D spanShape;
+        
+        /**
+         * The coordinates of the points, stored as (x, y) pairs.
+         */
+        double[] coords;
+        
+        @Setup
+        public void setup()
+        {
+            this.spanShape = BenchmarkShapes.createShape2D(shape, 256);
+            Bounds2D bounds = spanShape.bounds();
+            Random random = new Random(42);
+            this.coords = new double[2 * POINT_COUNT];
+            for (int i = 0; i < coords.length; i += 2)
+            {
+                coords[i] = bounds.minX() + random.nextDouble() * (bounds.maxX() - bounds.minX());
+                coords[i + 1] = bounds.minY() + random.nextDouble() * (bounds.maxY() - bounds.minY());
+            }
+        }
+    }
+    
+    /**
+     * A 3D shape, and the coordinates of the points to test.
+     */
+    @State(Scope.Thread)
+    public static class Points3D
+    {
+        @Param({"Ball", "Ellipsoid", "Cube", "Cuboid", "Cylinder", "CenteredCylinder", "Capsule"})
+        public String shape;
+        
+        SpanShape3D spanShape;
+        
+        /**
+         * The coordinates of the points, stored as (x, y, z) triplets.
+         */
+        double[] coords;
+        
+        @Setup
+        public void setup()
+        {
+            this.spanShape = BenchmarkShapes.createShape3D(shape, 256);
+            Bounds3D bounds = spanShape.bounds();
+            Random random = new Random(42);
+            this.coords = new double[3 * POINT_COUNT];
+            for (int i = 0; i < coords.length; i += 3)
+            {
+                coords[i] = bounds.minX() + random.nextDouble() * (bounds.maxX() - bounds.minX());
+                coords[i + 1] = bounds.minY() + random.nextDouble() * (bounds.maxY() - bounds.minY());
+                coords[i + 2] = bounds.minZ() + random.nextDouble() * (bounds.maxZ() - bounds.minZ());
+            }
+        }
+    }
+}
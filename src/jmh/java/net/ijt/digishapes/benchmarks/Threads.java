@@ -0,0 +1,21 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The number of threads used by the parallel fill paths. The value zero
+ * corresponds to all the available processors.
+ * 
+ * @author dlegland
+ */
+@State(Scope.Benchmark)
+public class Threads
+{
+    @Param({"1", "2", "4", "0"})
+    public int threads;
+}
@@ -0,0 +1,17 @@
+/**
+ * JMH benchmarks of the fill paths of the library, for each shape class and
+ * for 8-, 16- and 32-bit images.
+ * 
+ * The benchmarks are compiled only with the "benchmarks" Maven profile, that
+ * builds a self-contained jar. The GC profiler is enabled by default, so that
+ * the allocation rate is reported together with the execution time:
+ * 
+ * <pre>{@code
+ * mvn -P benchmarks package
+ * java -jar target/benchmarks.jar
+ * java -jar target/benchmarks.jar Fill3DBenchmark -p size=256 -p threads=1,0
+ * }</pre>
+ * 
+ * @author dlegland
+ */
+package net.ijt.digishapes.benchmarks;
\ No newline at end of file
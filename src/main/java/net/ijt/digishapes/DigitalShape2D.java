@@ -0,0 +1,40 @@
+/**
+ * 
+ */
+package net.ijt.digishapes;
+
+import net.ijt.geometry.geom2d.Bounds2D;
+
+/**
+ * A planar shape that can be digitized into an image. The digitization
+ * retains the pixels whose centers are within the shape.
+ * 
+ * Shapes that can also compute their intersection with a horizontal line
+ * should implement the SpanShape2D interface, so that the rasterizer can fill
+ * them row by row.
+ * 
+ * @see net.ijt.digishapes.raster.SpanShape2D
+ * @see net.ijt.digishapes.raster.ShapeRasterizer
+ * 
+ * @author dlegland
+ */
+public interface DigitalShape2D
+{
+    /**
+     * Returns the bounds of this shape.
+     * 
+     * @return the bounds of this shape
+     */
+    public Bounds2D bounds();
+    
+    /**
+     * Checks if the specified point is contained within this shape.
+     * 
+     * @param x
+     *            the x-coordinate of the point to test
+     * @param y
+     *            the y-coordinate of the point to test
+     * @return true is the point is within this shape.
+     */
+    public boolean isInside(double x, double y);
+}
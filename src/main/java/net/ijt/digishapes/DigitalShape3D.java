@@ -0,0 +1,42 @@
+/**
+ * 
+ */
+package net.ijt.digishapes;
+
+import net.ijt.geometry.geom3d.Bounds3D;
+
+/**
+ * A 3D shape that can be digitized into an image stack. The digitization
+ * retains the voxels whose centers are within the shape.
+ * 
+ * Shapes that can also compute their intersection with a line parallel to
+ * the X-axis should implement the SpanShape3D interface, so that the
+ * rasterizer can fill them row by row.
+ * 
+ * @see net.ijt.digishapes.raster.SpanShape3D
+ * @see net.ijt.digishapes.raster.ShapeRasterizer
+ * 
+ * @author dlegland
+ */
+public interface DigitalShape3D
+{
+    /**
+     * Returns the bounds of this shape.
+     * 
+     * @return the bounds of this shape
+     */
+    public Bounds3D bounds();
+    
+    /**
+     * Checks if the specified point is contained within this shape.
+     * 
+     * @param x
+     *            the x-coordinate of the point to test
+     * @param y
+     *            the y-coordinate of the point to test
+     * @param z
+     *            the z-coordinate of the point to test
+     * @return true is the point is within this shape.
+     */
+    public boolean isInside(double x, double y, double z);
+}
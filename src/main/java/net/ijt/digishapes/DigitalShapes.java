@@ -0,0 +1,514 @@
+/**
+ * 
+ */
+package net.ijt.digishapes;
+
+import java.util.concurrent.CancellationException;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+import net.ijt.digishapes.raster.CoverageRasterizer;
+import net.ijt.digishapes.raster.CoverageShape2D;
+import net.ijt.digishapes.raster.CoverageShape3D;
+import net.ijt.digishapes.raster.ShapeRasterizer;
+import net.ijt.digishapes.util.FillProgress;
+
+/**
+ * Programmatic entry point for digitizing shapes, that does not depend on
+ * the graphical user interface of ImageJ.
+ * 
+ * The methods of this class accept ImageJ images (ImagePlus, ImageStack or
+ * ImageProcessor), or raw pixel arrays, and do not show dialogs, update the
+ * display nor access the current image. They do not keep any state, so they
+ * can be called concurrently from several threads, as long as each thread
+ * writes into its own image. When the image is displayed, the display must be
+ * refreshed by the caller.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * // render a ball into a new 8-bits stack
+ * ImageStack stack = DigitalShapes.render(new Ball3D(50, 50, 50, 20), 100, 100, 100, 8, 255);
+ * 
+ * // fill an ellipse into a raw array
+ * float[] pixels = new float[200 * 100];
+ * DigitalShapes.fill(pixels, 200, 100, new Ellipse2DAdapter(100, 50, 80, 30, 0), 1.0);
+ * }</pre>
+ * 
+ * @see ShapeRasterizer
+ * 
+ * @author dlegland
+ */
+public class DigitalShapes
+{
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private DigitalShapes()
+    {
+    }
+    
+    
+    // ===================================================================
+    // Planar shapes
+    
+    /**
+     * Fills the pixels of the current processor of the image whose centers
+     * are within the specified shape.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     */
+    public static final void fill(ImagePlus image, DigitalShape2D shape, double value, int nThreads)
+    {
+        ShapeRasterizer.fill(image.getProcessor(), shape, value, nThreads);
+    }
+    
+    /**
+     * Fills the pixels of the image whose centers are within the specified
+     * shape.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels within the shape
+     */
+    public static final void fill(ImageProcessor image, DigitalShape2D shape, double value)
+    {
+        ShapeRasterizer.fill(image, shape, value, 1);
+    }
+    
+    /**
+     * Fills the pixels of the image whose centers are within the specified
+     * shape, using several threads when the shape supports it.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     */
+    public static final void fill(ImageProcessor image, DigitalShape2D shape, double value, int nThreads)
+    {
+        ShapeRasterizer.fill(image, shape, value, nThreads);
+    }
+    
+    /**
+     * Fills the elements of a raw pixel array whose centers are within the
+     * specified shape. The array is modified in place.
+     * 
+     * @param pixels
+     *            the pixel array, that must be an array of byte, short,
+     *            float or int (for RGB images)
+     * @param sizeX
+     *            the width of the plane
+     * @param sizeY
+     *            the height of the plane
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels within the shape
+     */
+    public static final void fill(Object pixels, int sizeX, int sizeY, DigitalShape2D shape, double value)
+    {
+        ShapeRasterizer.fill(wrap(pixels, sizeX, sizeY), shape, value, 1);
+    }
+    
+    /**
+     * Creates a new image containing the digitization of the specified
+     * shape.
+     * 
+     * @param shape
+     *            the shape to digitize
+     * @param sizeX
+     *            the width of the image
+     * @param sizeY
+     *            the height of the image
+     * @param bitDepth
+     *            the bit depth of the image: 8, 16, 24 (RGB) or 32
+     * @param value
+     *            the value to assign to the pixels within the shape
+     * @return a new image containing the shape
+     */
+    public static final ImageProcessor render(DigitalShape2D shape, int sizeX, int sizeY, int bitDepth, double value)
+    {
+        ImageProcessor image = createProcessor(sizeX, sizeY, bitDepth);
+        ShapeRasterizer.fill(image, shape, value, 1);
+        return image;
+    }
+    
+    
+    // ===================================================================
+    // 3D shapes
+    
+    /**
+     * Fills the voxels of the image whose centers are within the specified
+     * shape.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     */
+    public static final void fill(ImagePlus image, DigitalShape3D shape, double value, int nThreads)
+    {
+        ShapeRasterizer.fill(image.getStack(), shape, value, nThreads);
+    }
+    
+    /**
+     * Fills the voxels of the image whose centers are within the specified
+     * shape, while reporting the progress after each slice. The fill can be
+     * canceled between two slices by the progress object.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @param progress
+     *            the object notified of the progress, that can cancel the
+     *            fill
+     * @throws CancellationException
+     *             if the fill was canceled. Each slice is then either
+     *             completely filled or left unchanged.
+     */
+    public static final void fill(ImagePlus image, DigitalShape3D shape, double value, int nThreads, FillProgress progress)
+    {
+        ShapeRasterizer.fill(image.getStack(), shape, value, nThreads, progress);
+    }
+    
+    /**
+     * Fills the voxels of the image whose centers are within the specified
+     * shape.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     */
+    public static final void fill(ImageStack image, DigitalShape3D shape, double value)
+    {
+        ShapeRasterizer.fill(image, shape, value, 1);
+    }
+    
+    /**
+     * Fills the voxels of the image whose centers are within the specified
+     * shape, using several threads when the shape supports it.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     */
+    public static final void fill(ImageStack image, DigitalShape3D shape, double value, int nThreads)
+    {
+        ShapeRasterizer.fill(image, shape, value, nThreads);
+    }
+    
+    /**
+     * Fills the voxels of the image whose centers are within the specified
+     * shape, while reporting the progress after each slice. The fill can be
+     * canceled between two slices by the progress object.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @param progress
+     *            the object notified of the progress, that can cancel the
+     *            fill
+     * @throws CancellationException
+     *             if the fill was canceled. Each slice is then either
+     *             completely filled or left unchanged.
+     */
+    public static final void fill(ImageStack image, DigitalShape3D shape, double value, int nThreads, FillProgress progress)
+    {
+        ShapeRasterizer.fill(image, shape, value, nThreads, progress);
+    }
+    
+    /**
+     * Fills the elements of raw slice arrays whose centers are within the
+     * specified shape. The arrays are modified in place.
+     * 
+     * @param slices
+     *            the pixel arrays of the slices, that must all be arrays of
+     *            byte, short, float or int (for RGB images)
+     * @param sizeX
+     *            the width of the slices
+     * @param sizeY
+     *            the height of the slices
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     */
+    public static final void fill(Object[] slices, int sizeX, int sizeY, DigitalShape3D shape, double value, int nThreads)
+    {
+        ImageStack stack = new ImageStack(sizeX, sizeY);
+        for (Object pixels : slices)
+        {
+            // check the type and the size of the array
+            wrap(pixels, sizeX, sizeY);
+            stack.addSlice(null, pixels);
+        }
+        ShapeRasterizer.fill(stack, shape, value, nThreads);
+    }
+    
+    /**
+     * Creates a new image containing the digitization of the specified
+     * shape.
+     * 
+     * @param shape
+     *            the shape to digitize
+     * @param sizeX
+     *            the size of the image in the X direction
+     * @param sizeY
+     *            the size of the image in the Y direction
+     * @param sizeZ
+     *            the size of the image in the Z direction
+     * @param bitDepth
+     *            the bit depth of the image: 8, 16, 24 (RGB) or 32
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @return a new image containing the shape
+     */
+    public static final ImageStack render(DigitalShape3D shape, int sizeX, int sizeY, int sizeZ, int bitDepth, double value)
+    {
+        ImageStack image = new ImageStack(sizeX, sizeY);
+        for (int z = 0; z < sizeZ; z++)
+        {
+            image.addSlice(null, createProcessor(sizeX, sizeY, bitDepth).getPixels());
+        }
+        ShapeRasterizer.fill(image, shape, value, 1);
+        return image;
+    }
+    
+    
+    // ===================================================================
+    // Partial area and partial volume images
+    
+    /**
+     * Fills the pixels of the image with the fraction of their area covered
+     * by the shape, multiplied by the fill value. The coverage is estimated
+     * with samples x samples sub-pixels, only for the pixels crossing the
+     * boundary of the shape.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels fully within the shape
+     * @param samples
+     *            the number of samples along each direction of a pixel
+     * @see CoverageRasterizer
+     */
+    public static final void fillCoverage(ImageProcessor image, DigitalShape2D shape, double value, int samples)
+    {
+        CoverageRasterizer.fill(image, shape, value, samples);
+    }
+    
+    /**
+     * Fills the voxels of the image with the fraction of their volume covered
+     * by the shape, multiplied by the fill value. The coverage is estimated
+     * with samples x samples x samples sub-voxels, only for the voxels
+     * crossing the boundary of the shape.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels fully within the shape
+     * @param samples
+     *            the number of samples along each direction of a voxel
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @see CoverageRasterizer
+     */
+    public static final void fillCoverage(ImageStack image, DigitalShape3D shape, double value, int samples, int nThreads)
+    {
+        CoverageRasterizer.fill(image, shape, value, samples, nThreads);
+    }
+    
+    /**
+     * Fills the voxels of the image with the fraction of their volume covered
+     * by the shape, multiplied by the fill value, while reporting the progress
+     * after each slice. The fill can be canceled between two slices by the
+     * progress object.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels fully within the shape
+     * @param samples
+     *            the number of samples along each direction of a voxel
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @param progress
+     *            the object notified of the progress, that can cancel the
+     *            fill
+     * @throws CancellationException
+     *             if the fill was canceled. Each slice is then either
+     *             completely filled or left unchanged.
+     */
+    public static final void fillCoverage(ImageStack image, DigitalShape3D shape, double value, int samples, int nThreads, FillProgress progress)
+    {
+        CoverageRasterizer.fill(image, shape, value, samples, nThreads, progress);
+    }
+    
+    /**
+     * Fills the pixels of the image with the exact fraction of their area
+     * covered by the shape, multiplied by the fill value.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels fully within the shape
+     * @see CoverageRasterizer
+     */
+    public static final void fillExactCoverage(ImageProcessor image, CoverageShape2D shape, double value)
+    {
+        CoverageRasterizer.fillExact(image, shape, value);
+    }
+    
+    /**
+     * Fills the voxels of the image with the exact fraction of their volume
+     * covered by the shape, multiplied by the fill value.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels fully within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @throws IllegalArgumentException
+     *             if the shape does not provide exact coverage
+     * @see CoverageRasterizer
+     */
+    public static final void fillExactCoverage(ImageStack image, CoverageShape3D shape, double value, int nThreads)
+    {
+        CoverageRasterizer.fillExact(image, shape, value, nThreads);
+    }
+    
+    /**
+     * Fills the voxels of the image with the exact fraction of their volume
+     * covered by the shape, multiplied by the fill value, while reporting the
+     * progress after each slice. The fill can be canceled between two slices
+     * by the progress object.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels fully within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @param progress
+     *            the object notified of the progress, that can cancel the
+     *            fill
+     * @throws IllegalArgumentException
+     *             if the shape does not provide exact coverage
+     * @throws CancellationException
+     *             if the fill was canceled. Each slice is then either
+     *             completely filled or left unchanged.
+     */
+    public static final void fillExactCoverage(ImageStack image, CoverageShape3D shape, double value, int nThreads, FillProgress progress)
+    {
+        CoverageRasterizer.fillExact(image, shape, value, nThreads, progress);
+    }
+    
+    
+    // ===================================================================
+    // Utility methods
+    
+    private static final ImageProcessor createProcessor(int sizeX, int sizeY, int bitDepth)
+    {
+        switch (bitDepth)
+        {
+            case 8: return new ByteProcessor(sizeX, sizeY);
+            case 16: return new ShortProcessor(sizeX, sizeY);
+            case 24: return new ColorProcessor(sizeX, sizeY);
+            case 32: return new FloatProcessor(sizeX, sizeY);
+            default: throw new IllegalArgumentException("Unsupported bit depth: " + bitDepth);
+        }
+    }
+    
+    /**
+     * Creates an image processor that shares the specified pixel array.
+     */
+    private static final ImageProcessor wrap(Object pixels, int sizeX, int sizeY)
+    {
+        int length = sizeX * sizeY;
+        if (pixels instanceof byte[] && ((byte[]) pixels).length == length)
+        {
+            return new ByteProcessor(sizeX, sizeY, (byte[]) pixels);
+        }
+        if (pixels instanceof short[] && ((short[]) pixels).length == length)
+        {
+            return new ShortProcessor(sizeX, sizeY, (short[]) pixels, null);
+        }
+        if (pixels instanceof float[] && ((float[]) pixels).length == length)
+        {
+            return new FloatProcessor(sizeX, sizeY, (float[]) pixels);
+        }
+        if (pixels instanceof int[] && ((int[]) pixels).length == length)
+        {
+            return new ColorProcessor(sizeX, sizeY, (int[]) pixels);
+        }
+        throw new IllegalArgumentException("Requires a byte, short, float or int array with " + length + " elements");
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import ij.process.ImageProcessor;
+import net.ijt.digishapes.util.SliceConsumer;
+
+/**
+ * Forwards slices to another consumer within a background thread, so that
+ * the computation of a slice overlaps the writing of the previous ones.
+ * 
+ * The slices are stored within a bounded queue: when the queue is full, the
+ * producer waits until a slice has been written. The memory used is thus
+ * limited to the capacity of the queue plus the slice being written. The
+ * slices are kept by reference, so the producer must not modify a slice
+ * after having sent it, as is the case for the renderers of this library.
+ * 
+ * If the target consumer throws an exception, it is re-thrown to the
+ * producer by the next call to accept() or by close(). The close() method
+ * waits until all the slices have been forwarded, and closes the target
+ * consumer if it is closeable.
+ * 
+ * @see BigTiffSliceWriter
+ * @see RawSliceWriter
+ * 
+ * @author dlegland
+ */
+public class AsyncSliceWriter implements SliceConsumer, Closeable
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The consumer receiving the slices within the background thread.
+     */
+    final SliceConsumer target;
+    
+    /**
+     * The slices waiting to be forwarded.
+     */
+    final ArrayBlockingQueue<Slice> queue;
+    
+    /**
+     * The thread forwarding the slices to the target.
+     */
+    final Thread worker;
+    
+    /**
+     * The first error thrown by the target, or null.
+     */
+    volatile Throwable error = null;
+    
+    boolean closed = false;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new asynchronous writer, and starts its background thread.
+     * 
+     * @param target
+     *            the consumer receiving the slices
+     * @param capacity
+     *            the maximum number of slices waiting to be forwarded
+     */
+    public AsyncSliceWriter(SliceConsumer target, int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.target = target;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.worker = new Thread(this::forwardSlices, "AsyncSliceWriter");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Adds the slice to the queue, waiting until space is available.
+     * 
+     * @throws IllegalStateException
+     *             if the writer is closed, or if the target consumer failed
+     *             to process a previous slice
+     */
+    @Override
+    public void accept(int z, ImageProcessor slice)
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("Writer is closed");
+        }
+        checkError();
+        try
+        {
+            queue.put(new Slice(z, slice));
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the writer", ex);
+        }
+    }
+    
+    /**
+     * Waits until all the slices have been forwarded, stops the background
+     * thread, and closes the target consumer if it is closeable.
+     * 
+     * @throws IOException
+     *             if the target could not process a slice or could not be
+     *             closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        
+        try
+        {
+            queue.put(Slice.END);
+            worker.join();
+        }
+        catch (InterruptedException ex)
+        {
+            worker.interrupt();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the writer");
+        }
+        finally
+        {
+            if (target instanceof Closeable)
+            {
+                ((Closeable) target).close();
+            }
+        }
+        
+        if (error != null)
+        {
+            if (error.getCause() instanceof IOException)
+            {
+                throw (IOException) error.getCause();
+            }
+            throw new IOException("Could not write slices", error);
+        }
+    }
+    
+    /**
+     * The main loop of the background thread. After an error, the remaining
+     * slices are discarded, so that the producer is never blocked.
+     */
+    private void forwardSlices()
+    {
+        while (true)
+        {
+            Slice slice;
+            try
+            {
+                slice = queue.take();
+            }
+            catch (InterruptedException ex)
+            {
+                return;
+            }
+            
+            if (slice == Slice.END)
+            {
+                return;
+            }
+            if (error == null)
+            {
+                try
+                {
+                    target.accept(slice.z, slice.processor);
+                }
+                catch (Throwable ex)
+                {
+                    error = ex;
+                }
+            }
+        }
+    }
+    
+    private void checkError()
+    {
+        if (error != null)
+        {
+            throw new IllegalStateException("Could not write slices", error);
+        }
+    }
+    
+    
+    // ===================================================================
+    // Inner classes
+    
+    /**
+     * A slice waiting in the queue, together with its index.
+     */
+    private static final class Slice
+    {
+        /**
+         * The marker of the end of the stream.
+         */
+        static final Slice END = new Slice(-1, null);
+        
+        final int z;
+        final ImageProcessor processor;
+        
+        Slice(int z, ImageProcessor processor)
+        {
+            this.z = z;
+            this.processor = processor;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import ij.process.ImageProcessor;
+import net.ijt.digishapes.util.SliceConsumer;
+
+/**
+ * Writes the slices of a 3D image into a BigTIFF file, as soon as they are
+ * received.
+ * 
+ * Each slice is stored as an uncompressed image of the file, made of a single
+ * strip. The pixel data of the slice is written at the end of the file,
+ * followed by its image file directory (IFD), and the link from the previous
+ * IFD is updated. The memory used by the writer is therefore limited to a
+ * single slice, and the file remains readable if the writing is interrupted.
+ * 
+ * The BigTIFF format uses 64-bits offsets, making it possible to write files
+ * larger than 4GB. It can be read by the Bio-Formats importer of ImageJ/Fiji.
+ * 
+ * @see AsyncSliceWriter
+ * 
+ * @author dlegland
+ */
+public class BigTiffSliceWriter implements SliceConsumer, Closeable
+{
+    // ===================================================================
+    // Constants
+    
+    private static final short TYPE_SHORT = 3;
+    private static final short TYPE_LONG = 4;
+    private static final short TYPE_LONG8 = 16;
+    
+    /**
+     * The number of entries within each IFD.
+     */
+    private static final int ENTRY_COUNT = 11;
+    
+    /**
+     * The size of an IFD: entry count, entries, and offset of next IFD.
+     */
+    private static final int IFD_SIZE = 8 + ENTRY_COUNT * 20 + 8;
+    
+    
+    // ===================================================================
+    // Class variables
+    
+    final FileChannel channel;
+    final SliceEncoder encoder;
+    
+    /**
+     * The buffer used to write the IFD of each slice.
+     */
+    final ByteBuffer ifd = ByteBuffer.allocate(IFD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    
+    /**
+     * The buffer used to update the link to the next IFD.
+     */
+    final ByteBuffer link = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    
+    /**
+     * The position of the end of the file.
+     */
+    long fileEnd;
+    
+    /**
+     * The position of the offset to update when the next IFD is written.
+     */
+    long nextLinkPosition;
+    
+    /**
+     * The index of the next expected slice.
+     */
+    int nextSlice = 0;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new writer, and writes the header of the file.
+     * 
+     * @param file
+     *            the file to create
+     * @param sizeX
+     *            the width of the slices
+     * @param sizeY
+     *            the height of the slices
+     * @param bitDepth
+     *            the bit depth of the slices: 8, 16, 24 (RGB) or 32
+     * @throws IOException
+     *             if the file can not be created
+     */
+    public BigTiffSliceWriter(File file, int sizeX, int sizeY, int bitDepth) throws IOException
+    {
+        this.encoder = new SliceEncoder(sizeX, sizeY, bitDepth, ByteOrder.LITTLE_ENDIAN);
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        
+        // BigTIFF header: byte order, version, offset size, and offset of
+        // first IFD (updated when the first slice is written)
+        ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 'I').put((byte) 'I');
+        header.putShort((short) 43);
+        header.putShort((short) 8);
+        header.putShort((short) 0);
+        header.putLong(0);
+        header.flip();
+        writeFully(header, 0);
+        
+        this.fileEnd = 16;
+        this.nextLinkPosition = 8;
+    }
+    
+    
+    // ===================================================================
+    // Implementation of the SliceConsumer interface
+    
+    /**
+     * Writes the slice and its IFD at the end of the file.
+     * 
+     * @throws UncheckedIOException
+     *             if the slice could not be written
+     */
+    @Override
+    public void accept(int z, ImageProcessor slice)
+    {
+        if (z != nextSlice)
+        {
+            throw new IllegalArgumentException("Expected slice " + nextSlice + ", not " + z);
+        }
+        
+        try
+        {
+            long dataOffset = fileEnd;
+            ByteBuffer data = encoder.encode(slice);
+            int dataLength = data.remaining();
+            writeFully(data, dataOffset);
+            
+            // IFDs must start on a word boundary
+            long ifdOffset = dataOffset + dataLength + (dataLength & 1);
+            fillIfd(dataOffset, dataLength);
+            writeFully(ifd, ifdOffset);
+            
+            // link the previous IFD (or the header) to the new IFD
+            link.clear();
+            link.putLong(ifdOffset);
+            link.flip();
+            writeFully(link, nextLinkPosition);
+            
+            this.nextLinkPosition = ifdOffset + IFD_SIZE - 8;
+            this.fileEnd = ifdOffset + IFD_SIZE;
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+        nextSlice++;
+    }
+    
+    /**
+     * Fills the buffer of the IFD, for a slice whose data is stored at the
+     * specified position. Entries are sorted by increasing tag.
+     */
+    private void fillIfd(long dataOffset, int dataLength)
+    {
+        boolean rgb = encoder.bitDepth == 24;
+        int samples = rgb ? 3 : 1;
+        int bitsPerSample = rgb ? 8 : encoder.bitDepth;
+        int sampleFormat = encoder.bitDepth == 32 ? 3 : 1;
+        
+        ifd.clear();
+        ifd.putLong(ENTRY_COUNT);
+        putEntry(256, TYPE_LONG, 1, encoder.sizeX);        // ImageWidth
+        putEntry(257, TYPE_LONG, 1, encoder.sizeY);        // ImageLength
+        putShortsEntry(258, samples, bitsPerSample);       // BitsPerSample
+        putEntry(259, TYPE_SHORT, 1, 1);                   // Compression: none
+        putEntry(262, TYPE_SHORT, 1, rgb ? 2 : 1);         // Photometric
+        putEntry(273, TYPE_LONG8, 1, dataOffset);          // StripOffsets
+        putEntry(277, TYPE_SHORT, 1, samples);             // SamplesPerPixel
+        putEntry(278, TYPE_LONG, 1, encoder.sizeY);        // RowsPerStrip
+        putEntry(279, TYPE_LONG8, 1, dataLength);          // StripByteCounts
+        putEntry(284, TYPE_SHORT, 1, 1);                   // PlanarConfiguration
+        putShortsEntry(339, samples, sampleFormat);        // SampleFormat
+        
+        // no next IFD yet
+        ifd.putLong(0);
+        ifd.flip();
+    }
+    
+    /**
+     * Adds an entry with a single value, stored within the entry.
+     */
+    private void putEntry(int tag, short type, long count, long value)
+    {
+        ifd.putShort((short) tag);
+        ifd.putShort(type);
+        ifd.putLong(count);
+        switch (type)
+        {
+            case TYPE_SHORT: ifd.putShort((short) value).putShort((short) 0).putInt(0); break;
+            case TYPE_LONG: ifd.putInt((int) value).putInt(0); break;
+            default: ifd.putLong(value); break;
+        }
+    }
+    
+    /**
+     * Adds an entry made of one to four identical short values, stored within
+     * the entry.
+     */
+    private void putShortsEntry(int tag, int count, int value)
+    {
+        ifd.putShort((short) tag);
+        ifd.putShort(TYPE_SHORT);
+        ifd.putLong(count);
+        for (int i = 0; i < 4; i++)
+        {
+            ifd.putShort((short) (i < count ? value : 0));
+        }
+    }
+    
+    private void writeFully(ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            position += channel.write(buffer, position);
+        }
+    }
+    
+    /**
+     * @return the number of slices written so far.
+     */
+    public int sliceCount()
+    {
+        return nextSlice;
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
@@ -0,0 +1,752 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+import net.ijt.digishapes.DigitalShape3D;
+import net.ijt.digishapes.raster.BlockLocation;
+import net.ijt.digishapes.raster.BlockShape3D;
+import net.ijt.digishapes.raster.Rasterizer3D;
+import net.ijt.digishapes.raster.SpanShape3D;
+import net.ijt.digishapes.scene.OverlapRule;
+import net.ijt.digishapes.scene.Scene3D;
+import net.ijt.digishapes.util.PixelSink;
+import net.ijt.geometry.geom3d.Bounds3D;
+
+/**
+ * Renders a scene into a directory of compressed chunks, in a layout similar
+ * to the N5 and Zarr formats.
+ * 
+ * The image is split into chunks of constant size (the chunks on the upper
+ * borders of the image may be smaller). The directory contains:
+ * <ul>
+ * <li>an "attributes.json" file describing the dimensions, the chunk size, the
+ * data type and the compression,</li>
+ * <li>one file per non-empty chunk, stored at the path "i/j/k" where i, j and
+ * k are the indices of the chunk along the X, Y and Z axes.</li>
+ * </ul>
+ * Each chunk file starts with a mode byte. Mode 0 is followed by the voxel
+ * values of the chunk, in little-endian byte order, x varying fastest and z
+ * slowest, compressed with the deflate (zlib) algorithm unless compression is
+ * disabled. Mode 1 corresponds to a chunk with a constant value, and is
+ * followed by the encoded value of a single voxel. Chunks without file
+ * contain only zeros.
+ * 
+ * Before rendering, each shape is registered within the chunks crossed by its
+ * bounds. Each chunk is then classified with respect to its shapes: when no
+ * shape touches the chunk, or when the chunk is fully within a shape that is
+ * not partially covered by a later shape, the chunk is stored as a constant
+ * without computing its voxels. Otherwise, the voxels are computed and
+ * compressed. Chunks are processed concurrently.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * ChunkedVolumeWriter writer = new ChunkedVolumeWriter(new File("balls.chunks"), 4096, 4096, 4096, 8, 128);
+ * writer.write(scene, OverlapRule.MAX, 0);
+ * IJ.log(writer.dataChunkCount() + " data chunks, " + writer.constantChunkCount() + " constant chunks");
+ * }</pre>
+ * 
+ * @author dlegland
+ */
+public class ChunkedVolumeWriter
+{
+    // ===================================================================
+    // Constants
+    
+    /**
+     * The mode byte of chunks containing voxel values.
+     */
+    public static final byte MODE_DATA = 0;
+    
+    /**
+     * The mode byte of chunks with a constant value.
+     */
+    public static final byte MODE_CONSTANT = 1;
+    
+    /**
+     * The margin added to the blocks given to the shapes, in voxel units.
+     */
+    private static final double MARGIN = 1e-6;
+    
+    
+    // ===================================================================
+    // Class variables
+    
+    final File directory;
+    
+    /**
+     * The dimensions of the image.
+     */
+    final int sizeX, sizeY, sizeZ;
+    
+    /**
+     * The bit depth of the image: 8, 16, 24 (RGB) or 32.
+     */
+    final int bitDepth;
+    
+    /**
+     * The dimensions of the chunks.
+     */
+    final int chunkSizeX, chunkSizeY, chunkSizeZ;
+    
+    /**
+     * The number of chunks along each axis.
+     */
+    final int nChunksX, nChunksY, nChunksZ;
+    
+    /**
+     * The deflate compression level, between 1 and 9, or 0 to store the
+     * voxels without compression.
+     */
+    int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    
+    final AtomicLong emptyChunkCount = new AtomicLong();
+    final AtomicLong constantChunkCount = new AtomicLong();
+    final AtomicLong dataChunkCount = new AtomicLong();
+    final AtomicLong byteCount = new AtomicLong();
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new writer using cubic chunks.
+     * 
+     * @param directory
+     *            the directory that will contain the chunks
+     * @param sizeX
+     *            the size of the image in the X direction
+     * @param sizeY
+     *            the size of the image in the Y direction
+     * @param sizeZ
+     *            the size of the image in the Z direction
+     * @param bitDepth
+     *            the bit depth of the image: 8, 16, 24 (RGB) or 32
+     * @param chunkSize
+     *            the size of the chunks along each axis
+     */
+    public ChunkedVolumeWriter(File directory, int sizeX, int sizeY, int sizeZ, int bitDepth, int chunkSize)
+    {
+        this(directory, sizeX, sizeY, sizeZ, bitDepth, chunkSize, chunkSize, chunkSize);
+    }
+    
+    /**
+     * Creates a new writer.
+     * 
+     * @param directory
+     *            the directory that will contain the chunks
+     * @param sizeX
+     *            the size of the image in the X direction
+     * @param sizeY
+     *            the size of the image in the Y direction
+     * @param sizeZ
+     *            the size of the image in the Z direction
+     * @param bitDepth
+     *            the bit depth of the image: 8, 16, 24 (RGB) or 32
+     * @param chunkSizeX
+     *            the size of the chunks in the X direction
+     * @param chunkSizeY
+     *            the size of the chunks in the Y direction
+     * @param chunkSizeZ
+     *            the size of the chunks in the Z direction
+     */
+    public ChunkedVolumeWriter(File directory, int sizeX, int sizeY, int sizeZ, int bitDepth, int chunkSizeX, int chunkSizeY, int chunkSizeZ)
+    {
+        if (bitDepth != 8 && bitDepth != 16 && bitDepth != 24 && bitDepth != 32)
+        {
+            throw new IllegalArgumentException("Bit depth must be 8, 16, 24 or 32, not " + bitDepth);
+        }
+        if (chunkSizeX < 1 || chunkSizeY < 1 || chunkSizeZ < 1)
+        {
+            throw new IllegalArgumentException("Chunk sizes must be positive");
+        }
+        SliceEncoder.sliceByteCount(chunkSizeX, chunkSizeY * chunkSizeZ, bitDepth);
+        
+        this.directory = directory;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.bitDepth = bitDepth;
+        this.chunkSizeX = chunkSizeX;
+        this.chunkSizeY = chunkSizeY;
+        this.chunkSizeZ = chunkSizeZ;
+        this.nChunksX = (sizeX + chunkSizeX - 1) / chunkSizeX;
+        this.nChunksY = (sizeY + chunkSizeY - 1) / chunkSizeY;
+        this.nChunksZ = (sizeZ + chunkSizeZ - 1) / chunkSizeZ;
+    }
+    
+    
+    // ===================================================================
+    // Settings
+    
+    /**
+     * Changes the compression level of the chunks containing voxel values.
+     * 
+     * @param level
+     *            the deflate compression level, between 1 (fastest) and 9
+     *            (smallest), -1 for the default level, or 0 to store the
+     *            voxels without compression
+     */
+    public void setCompressionLevel(int level)
+    {
+        if (level < -1 || level > 9)
+        {
+            throw new IllegalArgumentException("Compression level must be between -1 and 9, not " + level);
+        }
+        this.compressionLevel = level;
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Renders the scene into the chunks of the directory, and writes the
+     * attributes file. The chunk files written by a previous rendering into
+     * the same directory are overwritten, or deleted for the empty chunks.
+     * 
+     * @param scene
+     *            the scene to render
+     * @param rule
+     *            the rule used to choose the value of voxels covered by
+     *            several shapes
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @throws IOException
+     *             if the directory or the chunks could not be written
+     */
+    public void write(Scene3D scene, OverlapRule rule, int nThreads) throws IOException
+    {
+        emptyChunkCount.set(0);
+        constantChunkCount.set(0);
+        dataChunkCount.set(0);
+        byteCount.set(0);
+        
+        Files.createDirectories(directory.toPath());
+        writeAttributes();
+        
+        ChunkIndex index = new ChunkIndex(scene, rule);
+        int nChunks = nChunksX * nChunksY * nChunksZ;
+        if (nThreads <= 0)
+        {
+            nThreads = Runtime.getRuntime().availableProcessors();
+        }
+        
+        try
+        {
+            if (nThreads == 1)
+            {
+                for (int c = 0; c < nChunks; c++)
+                {
+                    writeChunk(index, c);
+                }
+                return;
+            }
+            
+            ForkJoinPool pool = new ForkJoinPool(nThreads);
+            try
+            {
+                pool.invoke(new WriteChunksTask(index, 0, nChunks - 1));
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+        catch (UncheckedIOException ex)
+        {
+            throw ex.getCause();
+        }
+    }
+    
+    private void writeAttributes() throws IOException
+    {
+        String dataType = bitDepth == 8 ? "uint8" : bitDepth == 16 ? "uint16" : bitDepth == 24 ? "rgb8" : "float32";
+        String compression = compressionLevel == 0 ? "{\"type\": \"raw\"}"
+                : String.format(Locale.ENGLISH, "{\"type\": \"deflate\", \"level\": %d}", compressionLevel);
+        String json = String.format(Locale.ENGLISH, "{%n"
+                + "    \"format\": \"ijDigiShapes-chunks\",%n"
+                + "    \"version\": 1,%n"
+                + "    \"dimensions\": [%d, %d, %d],%n"
+                + "    \"chunkSize\": [%d, %d, %d],%n"
+                + "    \"dataType\": \"%s\",%n"
+                + "    \"byteOrder\": \"little-endian\",%n"
+                + "    \"compression\": %s,%n"
+                + "    \"fillValue\": 0%n"
+                + "}%n",
+                sizeX, sizeY, sizeZ, chunkSizeX, chunkSizeY, chunkSizeZ, dataType, compression);
+        Files.write(new File(directory, "attributes.json").toPath(), json.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Classifies the chunk with the specified linear index, computes its
+     * voxels if necessary, and writes its file.
+     */
+    private void writeChunk(ChunkIndex index, int c)
+    {
+        int i = c % nChunksX;
+        int j = (c / nChunksX) % nChunksY;
+        int k = c / (nChunksX * nChunksY);
+        int x0 = i * chunkSizeX, x1 = Math.min(x0 + chunkSizeX, sizeX) - 1;
+        int y0 = j * chunkSizeY, y1 = Math.min(y0 + chunkSizeY, sizeY) - 1;
+        int z0 = k * chunkSizeZ, z1 = Math.min(z0 + chunkSizeZ, sizeZ) - 1;
+        
+        // find the last shape fully containing the chunk: the shapes painted
+        // before do not contribute to the chunk
+        int[] shapes = index.chunkShapes(c);
+        BlockLocation[] locations = new BlockLocation[shapes.length];
+        int first = 0;
+        double baseValue = 0;
+        for (int s = 0; s < shapes.length; s++)
+        {
+            locations[s] = index.classify(shapes[s], x0, x1, y0, y1, z0, z1);
+            if (locations[s] == BlockLocation.INSIDE)
+            {
+                first = s + 1;
+                baseValue = index.values[shapes[s]];
+            }
+        }
+        
+        boolean constant = true;
+        for (int s = first; s < shapes.length; s++)
+        {
+            if (locations[s] == BlockLocation.BOUNDARY)
+            {
+                constant = false;
+                break;
+            }
+        }
+        
+        // encode a single voxel to check whether the constant is zero
+        byte[] voxel = encodeValue(baseValue);
+        if (constant)
+        {
+            boolean empty = true;
+            for (byte b : voxel)
+            {
+                empty &= b == 0;
+            }
+            if (empty)
+            {
+                // remove the file possibly written by a previous rendering
+                deleteChunkFile(i, j, k);
+                emptyChunkCount.incrementAndGet();
+                return;
+            }
+            
+            byte[] bytes = new byte[voxel.length + 1];
+            bytes[0] = MODE_CONSTANT;
+            System.arraycopy(voxel, 0, bytes, 1, voxel.length);
+            writeChunkFile(i, j, k, bytes);
+            constantChunkCount.incrementAndGet();
+            return;
+        }
+        
+        // compute the voxels of the chunk, slice by slice
+        int sx = x1 - x0 + 1, sy = y1 - y0 + 1, sz = z1 - z0 + 1;
+        SliceEncoder encoder = new SliceEncoder(sx, sy, bitDepth, ByteOrder.LITTLE_ENDIAN);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(MODE_DATA);
+        Deflater deflater = compressionLevel != 0 ? new Deflater(compressionLevel) : null;
+        byte[] block = new byte[65536];
+        try
+        {
+            for (int z = 0; z < sz; z++)
+            {
+                ImageProcessor slice = createSlice(sx, sy);
+                PixelSink sink = PixelSink.create(slice, baseValue);
+                if (baseValue != 0)
+                {
+                    for (int y = 0; y < sy; y++)
+                    {
+                        sink.fill(y, 0, sx - 1);
+                    }
+                }
+                for (int s = first; s < shapes.length; s++)
+                {
+                    if (locations[s] != BlockLocation.OUTSIDE)
+                    {
+                        sink.setValue(index.values[shapes[s]]);
+                        index.fillSlice(shapes[s], sink, x0, y0, sx, sy, z0 + z);
+                    }
+                }
+                
+                ByteBuffer bytes = encoder.encode(slice);
+                if (deflater == null)
+                {
+                    out.write(bytes.array(), 0, bytes.limit());
+                    continue;
+                }
+                deflater.setInput(bytes.array(), 0, bytes.limit());
+                while (!deflater.needsInput())
+                {
+                    out.write(block, 0, deflater.deflate(block));
+                }
+            }
+            
+            if (deflater != null)
+            {
+                deflater.finish();
+                while (!deflater.finished())
+                {
+                    out.write(block, 0, deflater.deflate(block));
+                }
+            }
+        }
+        finally
+        {
+            if (deflater != null)
+            {
+                deflater.end();
+            }
+        }
+        
+        writeChunkFile(i, j, k, out.toByteArray());
+        dataChunkCount.incrementAndGet();
+    }
+    
+    private void writeChunkFile(int i, int j, int k, byte[] bytes)
+    {
+        Path path = chunkPath(i, j, k);
+        try
+        {
+            Files.createDirectories(path.getParent());
+            Files.write(path, bytes);
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+        byteCount.addAndGet(bytes.length);
+    }
+    
+    private void deleteChunkFile(int i, int j, int k)
+    {
+        try
+        {
+            Files.deleteIfExists(chunkPath(i, j, k));
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+    }
+    
+    private Path chunkPath(int i, int j, int k)
+    {
+        return directory.toPath().resolve(Integer.toString(i)).resolve(Integer.toString(j)).resolve(Integer.toString(k));
+    }
+    
+    /**
+     * Encodes a single voxel with the specified value, using the conversion
+     * rules of the pixel sinks.
+     */
+    private byte[] encodeValue(double value)
+    {
+        ImageProcessor voxel = createSlice(1, 1);
+        PixelSink.create(voxel, value).set(0, 0);
+        ByteBuffer bytes = new SliceEncoder(1, 1, bitDepth, ByteOrder.LITTLE_ENDIAN).encode(voxel);
+        byte[] result = new byte[bytes.limit()];
+        bytes.get(result);
+        return result;
+    }
+    
+    private ImageProcessor createSlice(int width, int height)
+    {
+        switch (bitDepth)
+        {
+            case 8: return new ByteProcessor(width, height);
+            case 16: return new ShortProcessor(width, height);
+            case 24: return new ColorProcessor(width, height);
+            default: return new FloatProcessor(width, height);
+        }
+    }
+    
+    
+    // ===================================================================
+    // Statistics of the last call to write
+    
+    /**
+     * @return the number of chunks containing only zeros, for which no file
+     *         was written.
+     */
+    public long emptyChunkCount()
+    {
+        return emptyChunkCount.get();
+    }
+    
+    /**
+     * @return the number of chunks stored as a constant value.
+     */
+    public long constantChunkCount()
+    {
+        return constantChunkCount.get();
+    }
+    
+    /**
+     * @return the number of chunks whose voxels were computed.
+     */
+    public long dataChunkCount()
+    {
+        return dataChunkCount.get();
+    }
+    
+    /**
+     * @return the total number of bytes of the chunk files.
+     */
+    public long byteCount()
+    {
+        return byteCount.get();
+    }
+    
+    
+    // ===================================================================
+    // Inner classes
+    
+    /**
+     * The shapes of the scene, registered within the chunks crossed by their
+     * bounds, in paint order.
+     */
+    private final class ChunkIndex
+    {
+        final DigitalShape3D[] shapes;
+        final Bounds3D[] bounds;
+        final double[] values;
+        
+        /**
+         * For each chunk, the indices of the shapes whose bounds cross the
+         * chunk, in paint order, or null if there is no shape.
+         */
+        final ArrayList<ArrayList<Integer>> chunkShapes;
+        
+        ChunkIndex(Scene3D scene, OverlapRule rule)
+        {
+            int n = scene.size();
+            this.shapes = new DigitalShape3D[n];
+            this.bounds = new Bounds3D[n];
+            this.values = new double[n];
+            for (int s = 0; s < n; s++)
+            {
+                shapes[s] = scene.shape(s);
+                bounds[s] = shapes[s].bounds();
+                values[s] = scene.value(s);
+            }
+            
+            int nChunks = nChunksX * nChunksY * nChunksZ;
+            this.chunkShapes = new ArrayList<>(nChunks);
+            for (int c = 0; c < nChunks; c++)
+            {
+                chunkShapes.add(null);
+            }
+            
+            for (int s : scene.paintOrder(rule))
+            {
+                // range of chunks containing the voxels whose centers may be
+                // within the bounds, keeping a margin of one voxel
+                Bounds3D box = bounds[s];
+                int i0 = chunkIndex(box.minX() - 1, chunkSizeX, nChunksX);
+                int i1 = chunkIndex(box.maxX() + 1, chunkSizeX, nChunksX);
+                int j0 = chunkIndex(box.minY() - 1, chunkSizeY, nChunksY);
+                int j1 = chunkIndex(box.maxY() + 1, chunkSizeY, nChunksY);
+                int k0 = chunkIndex(box.minZ() - 1, chunkSizeZ, nChunksZ);
+                int k1 = chunkIndex(box.maxZ() + 1, chunkSizeZ, nChunksZ);
+                if (box.maxX() < 0 || box.maxY() < 0 || box.maxZ() < 0
+                        || box.minX() > sizeX || box.minY() > sizeY || box.minZ() > sizeZ)
+                {
+                    continue;
+                }
+                
+                for (int k = k0; k <= k1; k++)
+                {
+                    for (int j = j0; j <= j1; j++)
+                    {
+                        for (int i = i0; i <= i1; i++)
+                        {
+                            int c = (k * nChunksY + j) * nChunksX + i;
+                            ArrayList<Integer> list = chunkShapes.get(c);
+                            if (list == null)
+                            {
+                                list = new ArrayList<>();
+                                chunkShapes.set(c, list);
+                            }
+                            list.add(s);
+                        }
+                    }
+                }
+            }
+        }
+        
+        private int chunkIndex(double coord, int chunkSize, int nChunks)
+        {
+            return (int) Math.min(Math.max(Math.floor(coord / chunkSize), 0), nChunks - 1);
+        }
+        
+        int[] chunkShapes(int c)
+        {
+            ArrayList<Integer> list = chunkShapes.get(c);
+            if (list == null)
+            {
+                return new int[0];
+            }
+            return list.stream().mapToInt(Integer::intValue).toArray();
+        }
+        
+        /**
+         * Classifies the block of voxels [x0, x1] x [y0, y1] x [z0, z1] with
+         * respect to a shape, using the centers of the voxels.
+         */
+        BlockLocation classify(int s, int x0, int x1, int y0, int y1, int z0, int z1)
+        {
+            // the rasterizers do not fill the voxels beyond one voxel from
+            // the bounds of the shape
+            Bounds3D box = bounds[s];
+            if (x1 < Math.floor(box.minX()) - 1 || x0 > Math.ceil(box.maxX())
+                    || y1 < Math.floor(box.minY()) - 1 || y0 > Math.ceil(box.maxY())
+                    || z1 < Math.floor(box.minZ()) - 1 || z0 > Math.ceil(box.maxZ()))
+            {
+                return BlockLocation.OUTSIDE;
+            }
+            if (shapes[s] instanceof BlockShape3D)
+            {
+                return ((BlockShape3D) shapes[s]).classifyBlock(
+                        x0 + 0.5 - MARGIN, x1 + 0.5 + MARGIN,
+                        y0 + 0.5 - MARGIN, y1 + 0.5 + MARGIN,
+                        z0 + 0.5 - MARGIN, z1 + 0.5 + MARGIN);
+            }
+            return BlockLocation.BOUNDARY;
+        }
+        
+        /**
+         * Fills the voxels of the shape with index s within the slice z of
+         * the chunk starting at (x0, y0).
+         */
+        void fillSlice(int s, PixelSink sink, int x0, int y0, int sx, int sy, int z)
+        {
+            DigitalShape3D shape = shapes[s];
+            if (shape instanceof SpanShape3D)
+            {
+                Translation view = new Translation((SpanShape3D) shape, bounds[s], x0, y0);
+                Rasterizer3D.fillSlice(sink, sx, sy, view, z, view.bounds());
+                return;
+            }
+            
+            for (int y = 0; y < sy; y++)
+            {
+                for (int x = 0; x < sx; x++)
+                {
+                    if (shape.isInside(x0 + x + 0.5, y0 + y + 0.5, z + 0.5))
+                    {
+                        sink.set(x, y);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * A view of a shape in the coordinate system of a chunk, translated along
+     * the X and Y axes by integer offsets.
+     */
+    private static final class Translation implements SpanShape3D
+    {
+        final SpanShape3D shape;
+        final Bounds3D bounds;
+        final int dx, dy;
+        
+        Translation(SpanShape3D shape, Bounds3D bounds, int dx, int dy)
+        {
+            this.shape = shape;
+            this.bounds = new Bounds3D(bounds.minX() - dx, bounds.maxX() - dx,
+                    bounds.minY() - dy, bounds.maxY() - dy, bounds.minZ(), bounds.maxZ());
+            this.dx = dx;
+            this.dy = dy;
+        }
+        
+        @Override
+        public Bounds3D bounds()
+        {
+            return bounds;
+        }
+        
+        @Override
+        public boolean isInside(double x, double y, double z)
+        {
+            return shape.isInside(x + dx, y + dy, z);
+        }
+        
+        @Override
+        public boolean lineExtent(double y, double z, double[] extent)
+        {
+            if (!shape.lineExtent(y + dy, z, extent))
+            {
+                return false;
+            }
+            extent[0] -= dx;
+            extent[1] -= dx;
+            return true;
+        }
+    }
+    
+    /**
+     * Writes a range of chunks, by recursively splitting the range into two
+     * halves until a small number of chunks remains.
+     */
+    private final class WriteChunksTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        
+        final ChunkIndex index;
+        
+        /**
+         * The linear indices of the first and last chunks to write
+         * (inclusive).
+         */
+        final int c0, c1;
+        
+        WriteChunksTask(ChunkIndex index, int c0, int c1)
+        {
+            this.index = index;
+            this.c0 = c0;
+            this.c1 = c1;
+        }
+        
+        @Override
+        protected void compute()
+        {
+            if (c1 - c0 < 4)
+            {
+                for (int c = c0; c <= c1; c++)
+                {
+                    writeChunk(index, c);
+                }
+                return;
+            }
+            
+            int cm = (c0 + c1) >>> 1;
+            invokeAll(new WriteChunksTask(index, c0, cm), new WriteChunksTask(index, cm + 1, c1));
+        }
+    }
+}
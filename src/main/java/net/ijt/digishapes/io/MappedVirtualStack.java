@@ -0,0 +1,138 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.io;
+
+import ij.VirtualStack;
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+/**
+ * A virtual stack giving access to the slices of a memory-mapped volume.
+ * 
+ * Each call to getProcessor() reads a copy of the slice from the mapped
+ * file. The modifications of a slice can be written back to the file by
+ * calling setPixels(), so that the volume can be edited within ImageJ
+ * without loading it into memory.
+ * 
+ * @see MappedVolume
+ * 
+ * @author dlegland
+ */
+public class MappedVirtualStack extends VirtualStack
+{
+    // ===================================================================
+    // Class variables
+    
+    final MappedVolume volume;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new virtual stack for the specified volume.
+     * 
+     * @param volume
+     *            the memory-mapped volume
+     */
+    public MappedVirtualStack(MappedVolume volume)
+    {
+        super(volume.getWidth(), volume.getHeight(), null, null);
+        this.volume = volume;
+    }
+    
+    
+    // ===================================================================
+    // Implementation of the VirtualStack methods
+    
+    /**
+     * Reads the slice with the specified index.
+     * 
+     * @param n
+     *            the index of the slice, between 1 and the number of slices
+     * @return a new processor containing a copy of the slice
+     */
+    @Override
+    public ImageProcessor getProcessor(int n)
+    {
+        return volume.readSlice(n - 1);
+    }
+    
+    @Override
+    public Object getPixels(int n)
+    {
+        return getProcessor(n).getPixels();
+    }
+    
+    /**
+     * Writes the pixels of a slice into the mapped file.
+     * 
+     * @param pixels
+     *            the new pixels of the slice
+     * @param n
+     *            the index of the slice, between 1 and the number of slices
+     */
+    @Override
+    public void setPixels(Object pixels, int n)
+    {
+        volume.writeSlice(n - 1, wrap(pixels));
+    }
+    
+    @Override
+    public int getSize()
+    {
+        return volume.getSize();
+    }
+    
+    @Override
+    public String getSliceLabel(int n)
+    {
+        return null;
+    }
+    
+    @Override
+    public int getBitDepth()
+    {
+        return volume.getBitDepth();
+    }
+    
+    /**
+     * Throws an UnsupportedOperationException, as the number of slices is
+     * fixed.
+     */
+    @Override
+    public void deleteSlice(int n)
+    {
+        throw new UnsupportedOperationException("Can not remove slices from a MappedVirtualStack");
+    }
+    
+    /**
+     * Creates an image processor that shares the specified pixel array.
+     */
+    private ImageProcessor wrap(Object pixels)
+    {
+        int sizeX = getWidth();
+        int sizeY = getHeight();
+        if (pixels instanceof byte[])
+        {
+            return new ByteProcessor(sizeX, sizeY, (byte[]) pixels);
+        }
+        if (pixels instanceof short[])
+        {
+            return new ShortProcessor(sizeX, sizeY, (short[]) pixels, null);
+        }
+        if (pixels instanceof float[])
+        {
+            return new FloatProcessor(sizeX, sizeY, (float[]) pixels);
+        }
+        if (pixels instanceof int[])
+        {
+            return new ColorProcessor(sizeX, sizeY, (int[]) pixels);
+        }
+        throw new IllegalArgumentException("Can not manage pixel array of class: " + pixels.getClass().getName());
+    }
+}
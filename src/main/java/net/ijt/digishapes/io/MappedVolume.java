@@ -0,0 +1,518 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CancellationException;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+import net.ijt.digishapes.DigitalShape3D;
+import net.ijt.digishapes.raster.ShapeRasterizer;
+import net.ijt.digishapes.util.FillProgress;
+import net.ijt.digishapes.util.PixelSink;
+
+/**
+ * A 3D image stored within a raw file mapped into memory, that can be filled
+ * with shapes without loading the image into the Java heap.
+ * 
+ * The file contains the slices one after the other, without header, using
+ * little-endian byte order, as written by the RawSliceWriter class. RGB
+ * voxels are stored as three bytes. As a single mapping is limited to 2GB,
+ * the file is mapped as several buffers, each one containing an integer
+ * number of slices. The size of the image is therefore not limited by the
+ * heap size, nor by the maximum size of Java arrays.
+ * 
+ * The shapes are filled by the ShapeRasterizer class, using one pixel sink per
+ * slice that writes spans of voxels directly into the mapped buffers. The
+ * modifications are written to the file by the
+ * operating system, or when calling the force() or close() methods.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * try (MappedVolume volume = MappedVolume.create(new File("big.raw"), 4096, 4096, 4096, 8))
+ * {
+ *     volume.fill(new Ball3D(2048, 2048, 2048, 1500), 255, 0);
+ *     new ImagePlus("big", new MappedVirtualStack(volume)).show();
+ * }
+ * }</pre>
+ * 
+ * @see MappedVirtualStack
+ * 
+ * @author dlegland
+ */
+public class MappedVolume implements Closeable
+{
+    // ===================================================================
+    // Constants
+    
+    /**
+     * The maximum size of a single mapping.
+     */
+    private static final long MAX_MAPPING_SIZE = Integer.MAX_VALUE;
+    
+    
+    // ===================================================================
+    // Class variables
+    
+    final int sizeX;
+    final int sizeY;
+    final int sizeZ;
+    final int bitDepth;
+    
+    /**
+     * The number of bytes used to store a voxel.
+     */
+    final int bytesPerVoxel;
+    
+    /**
+     * The number of bytes used to store a slice.
+     */
+    final int sliceSize;
+    
+    /**
+     * The number of slices within each mapped buffer.
+     */
+    final int slicesPerBuffer;
+    
+    final RandomAccessFile file;
+    final MappedByteBuffer[] buffers;
+    
+    
+    // ===================================================================
+    // Static factories
+    
+    /**
+     * Creates a new file with the specified dimensions, and maps it into
+     * memory. If the file exists, it is overwritten.
+     * 
+     * @param file
+     *            the file to create
+     * @param sizeX
+     *            the size of the image in the X direction
+     * @param sizeY
+     *            the size of the image in the Y direction
+     * @param sizeZ
+     *            the size of the image in the Z direction
+     * @param bitDepth
+     *            the bit depth of the image: 8, 16, 24 (RGB) or 32
+     * @return the mapped volume, initialized with zeros
+     * @throws IOException
+     *             if the file could not be created or mapped
+     */
+    public static final MappedVolume create(File file, int sizeX, int sizeY, int sizeZ, int bitDepth) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            raf.setLength(0);
+            raf.setLength((long) sizeZ * SliceEncoder.sliceByteCount(sizeX, sizeY, bitDepth));
+            return new MappedVolume(raf, sizeX, sizeY, sizeZ, bitDepth);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            raf.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Maps an existing raw file into memory, for reading and writing.
+     * 
+     * @param file
+     *            the file to open
+     * @param sizeX
+     *            the size of the image in the X direction
+     * @param sizeY
+     *            the size of the image in the Y direction
+     * @param sizeZ
+     *            the size of the image in the Z direction
+     * @param bitDepth
+     *            the bit depth of the image: 8, 16, 24 (RGB) or 32
+     * @return the mapped volume
+     * @throws IOException
+     *             if the file could not be mapped, or if its size does not
+     *             match the image dimensions
+     */
+    public static final MappedVolume open(File file, int sizeX, int sizeY, int sizeZ, int bitDepth) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            long expected = (long) sizeZ * SliceEncoder.sliceByteCount(sizeX, sizeY, bitDepth);
+            if (raf.length() != expected)
+            {
+                throw new IOException("File size is " + raf.length() + " bytes, expected " + expected);
+            }
+            return new MappedVolume(raf, sizeX, sizeY, sizeZ, bitDepth);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            raf.close();
+            throw ex;
+        }
+    }
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    private MappedVolume(RandomAccessFile file, int sizeX, int sizeY, int sizeZ, int bitDepth) throws IOException
+    {
+        if (bitDepth != 8 && bitDepth != 16 && bitDepth != 24 && bitDepth != 32)
+        {
+            throw new IllegalArgumentException("Bit depth must be 8, 16, 24 or 32, not " + bitDepth);
+        }
+        this.file = file;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.bitDepth = bitDepth;
+        this.bytesPerVoxel = bitDepth / 8;
+        this.sliceSize = SliceEncoder.sliceByteCount(sizeX, sizeY, bitDepth);
+        this.slicesPerBuffer = (int) Math.max(MAX_MAPPING_SIZE / Math.max(sliceSize, 1), 1);
+        
+        // map the file as a series of buffers containing whole slices
+        FileChannel channel = file.getChannel();
+        int nBuffers = (sizeZ + slicesPerBuffer - 1) / slicesPerBuffer;
+        this.buffers = new MappedByteBuffer[nBuffers];
+        for (int i = 0; i < nBuffers; i++)
+        {
+            int nSlices = Math.min(slicesPerBuffer, sizeZ - i * slicesPerBuffer);
+            long offset = (long) i * slicesPerBuffer * sliceSize;
+            buffers[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset, (long) nSlices * sliceSize);
+        }
+    }
+    
+    
+    // ===================================================================
+    // Filling shapes
+    
+    /**
+     * Fills the voxels whose centers are within the specified shape, using a
+     * single thread.
+     * 
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     */
+    public void fill(DigitalShape3D shape, double value)
+    {
+        fill(shape, value, 1);
+    }
+    
+    /**
+     * Fills the voxels whose centers are within the specified shape, by
+     * processing the slices with several threads.
+     * 
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     */
+    public void fill(DigitalShape3D shape, double value, int nThreads)
+    {
+        fill(shape, value, nThreads, null);
+    }
+    
+    /**
+     * Fills the voxels whose centers are within the specified shape, by
+     * processing the slices with several threads. The progress is reported
+     * after each slice, and the fill can be canceled between two slices.
+     * 
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @param progress
+     *            the object notified of the progress, that can cancel the
+     *            fill, or null
+     * @throws CancellationException
+     *             if the fill was canceled by the progress object. Each slice
+     *             is then either completely filled or left unchanged.
+     * @see ShapeRasterizer
+     */
+    public void fill(DigitalShape3D shape, double value, int nThreads, FillProgress progress)
+    {
+        ShapeRasterizer.fill(z -> createSink(z, value), sizeX, sizeY, sizeZ, shape, nThreads, progress);
+    }
+    
+    /**
+     * Creates a pixel sink writing into the slice with the specified index.
+     * Each sink uses its own view of the mapped buffer, so that several
+     * threads can fill different slices concurrently.
+     * 
+     * @param z
+     *            the index of the slice, starting from 0
+     * @param value
+     *            the initial fill value
+     * @return a new pixel sink writing into the mapped slice
+     */
+    public PixelSink createSink(int z, double value)
+    {
+        checkSliceIndex(z);
+        return new MappedSliceSink(buffers[z / slicesPerBuffer].duplicate(),
+                (z % slicesPerBuffer) * sliceSize, sizeX, bitDepth, value);
+    }
+    
+    
+    // ===================================================================
+    // Access to slices
+    
+    /**
+     * Reads the content of a slice into a new image processor.
+     * 
+     * @param z
+     *            the index of the slice, starting from 0
+     * @return a new processor containing a copy of the slice
+     */
+    public ImageProcessor readSlice(int z)
+    {
+        ByteBuffer slice = sliceBuffer(z);
+        int n = sizeX * sizeY;
+        switch (bitDepth)
+        {
+            case 8:
+            {
+                byte[] pixels = new byte[n];
+                slice.get(pixels);
+                return new ByteProcessor(sizeX, sizeY, pixels);
+            }
+            case 16:
+            {
+                short[] pixels = new short[n];
+                slice.asShortBuffer().get(pixels);
+                return new ShortProcessor(sizeX, sizeY, pixels, null);
+            }
+            case 32:
+            {
+                float[] pixels = new float[n];
+                slice.asFloatBuffer().get(pixels);
+                return new FloatProcessor(sizeX, sizeY, pixels);
+            }
+            default:
+            {
+                int[] pixels = new int[n];
+                for (int i = 0; i < n; i++)
+                {
+                    int r = slice.get() & 0xFF;
+                    int g = slice.get() & 0xFF;
+                    int b = slice.get() & 0xFF;
+                    pixels[i] = 0xff000000 | (r << 16) | (g << 8) | b;
+                }
+                return new ColorProcessor(sizeX, sizeY, pixels);
+            }
+        }
+    }
+    
+    /**
+     * Replaces the content of a slice.
+     * 
+     * @param z
+     *            the index of the slice, starting from 0
+     * @param slice
+     *            the new content of the slice
+     */
+    public void writeSlice(int z, ImageProcessor slice)
+    {
+        ByteBuffer bytes = new SliceEncoder(sizeX, sizeY, bitDepth, ByteOrder.LITTLE_ENDIAN).encode(slice);
+        sliceBuffer(z).put(bytes);
+    }
+    
+    /**
+     * Returns a view on the bytes of the slice z, with little-endian byte
+     * order.
+     */
+    private ByteBuffer sliceBuffer(int z)
+    {
+        checkSliceIndex(z);
+        ByteBuffer buffer = buffers[z / slicesPerBuffer].duplicate();
+        int offset = (z % slicesPerBuffer) * sliceSize;
+        buffer.position(offset);
+        buffer.limit(offset + sliceSize);
+        return buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+    
+    private void checkSliceIndex(int z)
+    {
+        if (z < 0 || z >= sizeZ)
+        {
+            throw new IllegalArgumentException("Slice index out of range: " + z);
+        }
+    }
+    
+    
+    // ===================================================================
+    // Accessors
+    
+    public int getWidth()
+    {
+        return sizeX;
+    }
+    
+    public int getHeight()
+    {
+        return sizeY;
+    }
+    
+    public int getSize()
+    {
+        return sizeZ;
+    }
+    
+    public int getBitDepth()
+    {
+        return bitDepth;
+    }
+    
+    
+    // ===================================================================
+    // Management of the file
+    
+    /**
+     * Writes the modifications of the mapped buffers to the file.
+     */
+    public void force()
+    {
+        for (MappedByteBuffer buffer : buffers)
+        {
+            buffer.force();
+        }
+    }
+    
+    /**
+     * Writes the modifications to the file, and closes the file. The mapped
+     * buffers are released by the garbage collector.
+     * 
+     * @throws IOException
+     *             if the file could not be closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        force();
+        file.close();
+    }
+    
+    
+    // ===================================================================
+    // Inner classes
+    
+    /**
+     * Pixel sink writing into a slice of a mapped buffer. Spans are filled by
+     * bulk copies of a row pattern containing the encoded fill value.
+     */
+    private static final class MappedSliceSink implements PixelSink
+    {
+        final ByteBuffer buffer;
+        
+        /**
+         * The position of the first byte of the slice within the buffer.
+         */
+        final int sliceOffset;
+        
+        final int sizeX;
+        final int bitDepth;
+        final int bytesPerVoxel;
+        
+        /**
+         * The repeated bytes of the fill value. Only the first patternLength
+         * bytes are valid, the pattern being extended when needed.
+         */
+        final byte[] pattern;
+        int patternLength;
+        
+        MappedSliceSink(ByteBuffer buffer, int sliceOffset, int sizeX, int bitDepth, double value)
+        {
+            this.buffer = buffer;
+            this.sliceOffset = sliceOffset;
+            this.sizeX = sizeX;
+            this.bitDepth = bitDepth;
+            this.bytesPerVoxel = bitDepth / 8;
+            this.pattern = new byte[sizeX * bytesPerVoxel];
+            setValue(value);
+        }
+        
+        @Override
+        public void setValue(double value)
+        {
+            // convert the value using the conventions of the array sinks
+            ByteBuffer voxel = ByteBuffer.wrap(pattern, 0, bytesPerVoxel).order(ByteOrder.LITTLE_ENDIAN);
+            switch (bitDepth)
+            {
+                case 8:
+                {
+                    byte[] array = new byte[1];
+                    PixelSink.create(array, 1, value).set(0, 0);
+                    voxel.put(array[0]);
+                    break;
+                }
+                case 16:
+                {
+                    short[] array = new short[1];
+                    PixelSink.create(array, 1, value).set(0, 0);
+                    voxel.putShort(array[0]);
+                    break;
+                }
+                case 32:
+                {
+                    voxel.putFloat((float) value);
+                    break;
+                }
+                default:
+                {
+                    int[] array = new int[1];
+                    PixelSink.create(array, 1, value).set(0, 0);
+                    voxel.put((byte) (array[0] >> 16)).put((byte) (array[0] >> 8)).put((byte) array[0]);
+                    break;
+                }
+            }
+            this.patternLength = bytesPerVoxel;
+        }
+        
+        @Override
+        public void set(int x, int y)
+        {
+            int pos = sliceOffset + (y * sizeX + x) * bytesPerVoxel;
+            for (int i = 0; i < bytesPerVoxel; i++)
+            {
+                buffer.put(pos + i, pattern[i]);
+            }
+        }
+        
+        @Override
+        public void fill(int y, int x0, int x1)
+        {
+            int length = (x1 - x0 + 1) * bytesPerVoxel;
+            while (patternLength < length)
+            {
+                // double the valid part of the pattern
+                int n = Math.min(patternLength, pattern.length - patternLength);
+                System.arraycopy(pattern, 0, pattern, patternLength, n);
+                patternLength += n;
+            }
+            
+            buffer.position(sliceOffset + (y * sizeX + x0) * bytesPerVoxel);
+            buffer.put(pattern, 0, length);
+        }
+    }
+}
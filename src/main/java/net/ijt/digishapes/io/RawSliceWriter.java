@@ -0,0 +1,134 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import ij.process.ImageProcessor;
+import net.ijt.digishapes.util.SliceConsumer;
+
+/**
+ * Writes the slices of a 3D image into a raw file, without header, as soon
+ * as they are received.
+ * 
+ * The slices must be received in increasing order. The resulting file can be
+ * opened with the "File &gt; Import &gt; Raw..." command of ImageJ, using the
+ * image dimensions and the byte order of the writer. RGB slices are written
+ * as three bytes per pixel, in red-green-blue order.
+ * 
+ * @author dlegland
+ */
+public class RawSliceWriter implements SliceConsumer, Closeable
+{
+    // ===================================================================
+    // Class variables
+    
+    final FileChannel channel;
+    final SliceEncoder encoder;
+    
+    /**
+     * The index of the next expected slice.
+     */
+    int nextSlice = 0;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new writer using little-endian byte order.
+     * 
+     * @param file
+     *            the file to create
+     * @param sizeX
+     *            the width of the slices
+     * @param sizeY
+     *            the height of the slices
+     * @param bitDepth
+     *            the bit depth of the slices: 8, 16, 24 (RGB) or 32
+     * @throws IOException
+     *             if the file can not be created
+     */
+    public RawSliceWriter(File file, int sizeX, int sizeY, int bitDepth) throws IOException
+    {
+        this(file, sizeX, sizeY, bitDepth, ByteOrder.LITTLE_ENDIAN);
+    }
+    
+    /**
+     * Creates a new writer.
+     * 
+     * @param file
+     *            the file to create
+     * @param sizeX
+     *            the width of the slices
+     * @param sizeY
+     *            the height of the slices
+     * @param bitDepth
+     *            the bit depth of the slices: 8, 16, 24 (RGB) or 32
+     * @param order
+     *            the byte order of the 16 and 32 bits values
+     * @throws IOException
+     *             if the file can not be created
+     */
+    public RawSliceWriter(File file, int sizeX, int sizeY, int bitDepth, ByteOrder order) throws IOException
+    {
+        this.encoder = new SliceEncoder(sizeX, sizeY, bitDepth, order);
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+    
+    
+    // ===================================================================
+    // Implementation of the SliceConsumer interface
+    
+    /**
+     * Writes the slice at the end of the file.
+     * 
+     * @throws UncheckedIOException
+     *             if the slice could not be written
+     */
+    @Override
+    public void accept(int z, ImageProcessor slice)
+    {
+        if (z != nextSlice)
+        {
+            throw new IllegalArgumentException("Expected slice " + nextSlice + ", not " + z);
+        }
+        
+        try
+        {
+            ByteBuffer buffer = encoder.encode(slice);
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+        nextSlice++;
+    }
+    
+    /**
+     * @return the number of slices written so far.
+     */
+    public int sliceCount()
+    {
+        return nextSlice;
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
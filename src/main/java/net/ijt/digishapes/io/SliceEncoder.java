@@ -0,0 +1,126 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import ij.process.ImageProcessor;
+
+/**
+ * Converts the pixels of slices into bytes, using a buffer allocated once for
+ * all the slices of an image.
+ * 
+ * @author dlegland
+ */
+final class SliceEncoder
+{
+    // ===================================================================
+    // Class variables
+    
+    final int sizeX;
+    final int sizeY;
+    final int bitDepth;
+    
+    /**
+     * The buffer containing the bytes of the last encoded slice.
+     */
+    final ByteBuffer buffer;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new encoder for slices with the specified size and bit
+     * depth.
+     * 
+     * @param sizeX
+     *            the width of the slices
+     * @param sizeY
+     *            the height of the slices
+     * @param bitDepth
+     *            the bit depth of the slices: 8, 16, 24 (RGB) or 32
+     * @param order
+     *            the byte order of the multi-byte values
+     */
+    SliceEncoder(int sizeX, int sizeY, int bitDepth, ByteOrder order)
+    {
+        if (bitDepth != 8 && bitDepth != 16 && bitDepth != 24 && bitDepth != 32)
+        {
+            throw new IllegalArgumentException("Bit depth must be 8, 16, 24 or 32, not " + bitDepth);
+        }
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.bitDepth = bitDepth;
+        this.buffer = ByteBuffer.allocate(sliceByteCount(sizeX, sizeY, bitDepth)).order(order);
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Computes the number of bytes of a slice, checking it can be stored
+     * within a single buffer.
+     */
+    static final int sliceByteCount(int sizeX, int sizeY, int bitDepth)
+    {
+        long count = (long) sizeX * sizeY * (bitDepth / 8);
+        if (count > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Slices larger than 2GB are not supported");
+        }
+        return (int) count;
+    }
+    
+    /**
+     * Converts the pixels of a slice into bytes.
+     * 
+     * @param slice
+     *            the slice to encode
+     * @return the buffer containing the bytes of the slice, ready to be
+     *         written
+     */
+    ByteBuffer encode(ImageProcessor slice)
+    {
+        if (slice.getWidth() != sizeX || slice.getHeight() != sizeY)
+        {
+            throw new IllegalArgumentException("Slice size must be " + sizeX + "x" + sizeY);
+        }
+        
+        buffer.clear();
+        Object pixels = slice.getPixels();
+        if (bitDepth == 8 && pixels instanceof byte[])
+        {
+            buffer.put((byte[]) pixels);
+        }
+        else if (bitDepth == 16 && pixels instanceof short[])
+        {
+            buffer.asShortBuffer().put((short[]) pixels);
+        }
+        else if (bitDepth == 32 && pixels instanceof float[])
+        {
+            buffer.asFloatBuffer().put((float[]) pixels);
+        }
+        else if (bitDepth == 24 && pixels instanceof int[])
+        {
+            for (int rgb : (int[]) pixels)
+            {
+                buffer.put((byte) (rgb >> 16));
+                buffer.put((byte) (rgb >> 8));
+                buffer.put((byte) rgb);
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("Slice does not match the bit depth " + bitDepth);
+        }
+        
+        // the views do not move the position of the buffer
+        buffer.position(0);
+        buffer.limit(buffer.capacity());
+        return buffer;
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * Writing of 3D images slice by slice, for generating images larger than the
+ * available memory.
+ * 
+ * The writers implement the SliceConsumer interface, and can be combined with
+ * an AsyncSliceWriter so that slices are written while the next ones are
+ * computed:
+ * 
+ * <pre>{@code
+ * try (BigTiffSliceWriter writer = new BigTiffSliceWriter(new File("balls.tif"), 4096, 4096, 8);
+ *         AsyncSliceWriter async = new AsyncSliceWriter(writer, 4))
+ * {
+ *     scene.render(4096, 4096, 4096, 8, OverlapRule.MAX, async);
+ * }
+ * }</pre>
+ * 
+ * For repeated modifications of large images, the MappedVolume class fills
+ * shapes directly into a memory-mapped raw file.
+ * 
+ * @author dlegland
+ */
+package net.ijt.digishapes.io;
\ No newline at end of file
@@ -0,0 +1,115 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Flight Recorder event emitted for each fill. This class is only loaded
+ * by the FillMonitor class when the jdk.jfr module is available.
+ * 
+ * The event is disabled by default, so that the recordings that do not ask
+ * for it do not switch the fills to the slower counting path. It can be
+ * enabled with a custom recording configuration, or from the command line
+ * (Java 17 or later):
+ * 
+ * <pre>{@code
+ * java -XX:StartFlightRecording=filename=fills.jfr,+net.ijt.digishapes.Fill#enabled=true ...
+ * jfr print --events net.ijt.digishapes.Fill fills.jfr
+ * }</pre>
+ * 
+ * @author dlegland
+ */
+@Name("net.ijt.digishapes.Fill")
+@Label("Shape Fill")
+@Category("Digital Shapes")
+@Description("Digitization of a shape into an image")
+@Enabled(false)
+@StackTrace(false)
+class FillEvent extends Event
+{
+    /**
+     * The type of the event, used for checking if it is enabled.
+     */
+    private static final EventType TYPE = EventType.getEventType(FillEvent.class);
+    
+    @Label("Shape")
+    String shape;
+    
+    @Label("Strategy")
+    String strategy;
+    
+    @Label("Threads")
+    int threads;
+    
+    @Label("Bounds Volume")
+    double boundsVolume;
+    
+    @Label("Voxels Visited")
+    long visited;
+    
+    @Label("Voxels Tested")
+    long tested;
+    
+    @Label("Voxels Written")
+    long written;
+    
+    @Label("Setup Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long setupTime;
+    
+    @Label("Raster Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long rasterTime;
+    
+    @Label("Display Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long displayTime;
+    
+    @Label("Voxels per Second")
+    double voxelsPerSecond;
+    
+    /**
+     * @return true if the event is enabled within a running recording.
+     */
+    static final boolean isRecorded()
+    {
+        return TYPE.isEnabled();
+    }
+    
+    /**
+     * Emits an event for the specified metrics, if the event is enabled.
+     * 
+     * @param metrics
+     *            the metrics of the fill
+     */
+    static final void emit(FillMetrics metrics)
+    {
+        FillEvent event = new FillEvent();
+        if (!event.shouldCommit())
+        {
+            return;
+        }
+        event.shape = metrics.shape;
+        event.strategy = metrics.strategy;
+        event.threads = metrics.threads;
+        event.boundsVolume = metrics.boundsVolume;
+        event.visited = metrics.visited;
+        event.tested = metrics.tested;
+        event.written = metrics.written;
+        event.setupTime = metrics.setupNanos;
+        event.rasterTime = metrics.rasterNanos;
+        event.displayTime = metrics.displayNanos;
+        event.voxelsPerSecond = metrics.voxelsPerSecond();
+        event.commit();
+    }
+}
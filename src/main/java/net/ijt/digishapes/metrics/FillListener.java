@@ -0,0 +1,41 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.metrics;
+
+/**
+ * Listener notified each time a shape has been digitized while the
+ * monitoring is enabled.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * FillListener listener = metrics -> total.add(metrics.written());
+ * FillMonitor.addListener(listener);
+ * try
+ * {
+ *     // run the batch
+ * }
+ * finally
+ * {
+ *     FillMonitor.removeListener(listener);
+ * }
+ * }</pre>
+ * 
+ * @see FillMonitor
+ * 
+ * @author dlegland
+ */
+@FunctionalInterface
+public interface FillListener
+{
+    /**
+     * Called after a shape has been digitized. The method may be called
+     * concurrently from several threads, and should return quickly, as it is
+     * called by the thread that performed the fill.
+     * 
+     * @param metrics
+     *            the metrics of the fill
+     */
+    public void fillCompleted(FillMetrics metrics);
+}
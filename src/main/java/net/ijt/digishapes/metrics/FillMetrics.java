@@ -0,0 +1,261 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.metrics;
+
+import java.util.Locale;
+
+/**
+ * The measurements collected while digitizing a shape into an image: the
+ * number of voxels processed at each stage, and the time spent in each phase.
+ * 
+ * The counts are expressed in voxels for 3D images, and in pixels for planar
+ * images. The number of visited voxels corresponds to the region of the image
+ * processed by the fill strategy, i.e. the voxels whose centers are within
+ * the bounds of the shape. The ratio between the number of tested voxels and
+ * the number of visited voxels indicates how much the strategy avoids calling
+ * the isInside method of the shape.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * FillMetrics metrics = ShapeRasterizer.measure(image, new Ball3D(100, 100, 100, 80), 255, 0);
+ * IJ.log(String.format("%d voxels written at %.3g voxels/s", metrics.written(), metrics.voxelsPerSecond()));
+ * }</pre>
+ * 
+ * @see FillMonitor
+ * @see net.ijt.digishapes.raster.ShapeRasterizer#measure(ij.ImageStack, net.ijt.digishapes.DigitalShape3D, double, int)
+ * 
+ * @author dlegland
+ */
+public class FillMetrics
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The simple name of the class of the digitized shape.
+     */
+    final String shape;
+    
+    /**
+     * The strategy used for digitizing the shape: "span", "octree" or
+     * "centers".
+     */
+    final String strategy;
+    
+    /**
+     * The number of threads used for digitizing the shape.
+     */
+    final int threads;
+    
+    /**
+     * The volume of the bounding box of the shape (the area for planar
+     * shapes), in voxel units, without clipping to the image.
+     */
+    final double boundsVolume;
+    
+    /**
+     * The number of voxels of the image within the bounds of the shape.
+     */
+    final long visited;
+    
+    /**
+     * The number of calls to the isInside method of the shape.
+     */
+    final long tested;
+    
+    /**
+     * The number of voxels written into the image.
+     */
+    final long written;
+    
+    /**
+     * The time spent for preparing the shape and the image, in nanoseconds.
+     */
+    final long setupNanos;
+    
+    /**
+     * The time spent for digitizing the shape, in nanoseconds.
+     */
+    final long rasterNanos;
+    
+    /**
+     * The time spent for refreshing the display of the image, in nanoseconds,
+     * or zero if the image is not displayed.
+     */
+    final long displayNanos;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new set of metrics.
+     * 
+     * @param shape
+     *            the simple name of the class of the digitized shape
+     * @param strategy
+     *            the strategy used for digitizing the shape
+     * @param threads
+     *            the number of threads used for digitizing the shape
+     * @param boundsVolume
+     *            the volume of the bounding box of the shape
+     * @param visited
+     *            the number of voxels of the image within the bounds of the
+     *            shape
+     * @param tested
+     *            the number of calls to the isInside method of the shape
+     * @param written
+     *            the number of voxels written into the image
+     * @param setupNanos
+     *            the duration of the setup phase, in nanoseconds
+     * @param rasterNanos
+     *            the duration of the digitization, in nanoseconds
+     * @param displayNanos
+     *            the duration of the display refresh, in nanoseconds
+     */
+    public FillMetrics(String shape, String strategy, int threads, double boundsVolume, long visited, long tested,
+            long written, long setupNanos, long rasterNanos, long displayNanos)
+    {
+        this.shape = shape;
+        this.strategy = strategy;
+        this.threads = threads;
+        this.boundsVolume = boundsVolume;
+        this.visited = visited;
+        this.tested = tested;
+        this.written = written;
+        this.setupNanos = setupNanos;
+        this.rasterNanos = rasterNanos;
+        this.displayNanos = displayNanos;
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Returns a copy of these metrics, with the specified duration for the
+     * display refresh.
+     * 
+     * @param displayNanos
+     *            the duration of the display refresh, in nanoseconds
+     * @return the new metrics
+     */
+    public FillMetrics withDisplayTime(long displayNanos)
+    {
+        return new FillMetrics(shape, strategy, threads, boundsVolume, visited, tested, written, setupNanos, rasterNanos, displayNanos);
+    }
+    
+    /**
+     * @return the simple name of the class of the digitized shape.
+     */
+    public String shape()
+    {
+        return shape;
+    }
+    
+    /**
+     * @return the strategy used for digitizing the shape: "span", "octree" or
+     *         "centers".
+     */
+    public String strategy()
+    {
+        return strategy;
+    }
+    
+    /**
+     * @return the number of threads used for digitizing the shape.
+     */
+    public int threads()
+    {
+        return threads;
+    }
+    
+    /**
+     * @return the volume of the bounding box of the shape, in voxel units.
+     */
+    public double boundsVolume()
+    {
+        return boundsVolume;
+    }
+    
+    /**
+     * @return the number of voxels of the image within the bounds of the
+     *         shape.
+     */
+    public long visited()
+    {
+        return visited;
+    }
+    
+    /**
+     * @return the number of calls to the isInside method of the shape.
+     */
+    public long tested()
+    {
+        return tested;
+    }
+    
+    /**
+     * @return the number of voxels written into the image.
+     */
+    public long written()
+    {
+        return written;
+    }
+    
+    /**
+     * @return the duration of the setup phase, in nanoseconds.
+     */
+    public long setupNanos()
+    {
+        return setupNanos;
+    }
+    
+    /**
+     * @return the duration of the digitization, in nanoseconds.
+     */
+    public long rasterNanos()
+    {
+        return rasterNanos;
+    }
+    
+    /**
+     * @return the duration of the display refresh, in nanoseconds.
+     */
+    public long displayNanos()
+    {
+        return displayNanos;
+    }
+    
+    /**
+     * @return the total duration of the three phases, in seconds.
+     */
+    public double elapsedTime()
+    {
+        return (setupNanos + rasterNanos + displayNanos) / 1e9;
+    }
+    
+    /**
+     * Returns the throughput of the fill, computed as the number of visited
+     * voxels divided by the duration of the setup and digitization phases.
+     * 
+     * @return the throughput of the fill, in voxels per second.
+     */
+    public double voxelsPerSecond()
+    {
+        long nanos = setupNanos + rasterNanos;
+        return nanos > 0 ? visited / (nanos / 1e9) : 0.0;
+    }
+    
+    @Override
+    public String toString()
+    {
+        String pattern = "%s (%s, %d thread%s): %d visited, %d tested, %d written, bounds volume %.6g; "
+                + "setup %.3f ms, raster %.3f ms, display %.3f ms; %.4g voxels/s";
+        return String.format(Locale.ENGLISH, pattern, shape, strategy, threads, threads > 1 ? "s" : "",
+                visited, tested, written, boundsVolume,
+                setupNanos / 1e6, rasterNanos / 1e6, displayNanos / 1e6, voxelsPerSecond());
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.metrics;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import ij.IJ;
+
+/**
+ * Collects the metrics of the fills, and dispatches them to the registered
+ * listeners, to the ImageJ Log window, and to Java Flight Recorder.
+ * 
+ * The monitoring is enabled as soon as a listener is registered, the logging
+ * is enabled, or a flight recording includes the "net.ijt.digishapes.Fill"
+ * event. Otherwise, the fills use their fastest path, without counting the
+ * processed voxels.
+ * 
+ * Flight Recorder events are emitted only when the jdk.jfr module is
+ * available, i.e. when running on Java 11 or later.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * FillMonitor.setLogEnabled(true);
+ * DigitalShapes.fill(image, new Ball3D(100, 100, 100, 80), 255, 0);
+ * // the Log window shows the number of voxels tested and written,
+ * // and the duration of each phase
+ * }</pre>
+ * 
+ * @see FillMetrics
+ * @see FillListener
+ * 
+ * @author dlegland
+ */
+public class FillMonitor
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The listeners notified of each fill.
+     */
+    private static final CopyOnWriteArrayList<FillListener> listeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Whether the metrics are written into the ImageJ Log window.
+     */
+    private static volatile boolean logEnabled = false;
+    
+    /**
+     * Whether the Flight Recorder classes can be loaded.
+     */
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private FillMonitor()
+    {
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Adds a listener notified after each fill.
+     * 
+     * @param listener
+     *            the listener to add
+     */
+    public static final void addListener(FillListener listener)
+    {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Removes a listener.
+     * 
+     * @param listener
+     *            the listener to remove
+     */
+    public static final void removeListener(FillListener listener)
+    {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Enables or disables the logging of the metrics into the ImageJ Log
+     * window.
+     * 
+     * @param enabled
+     *            true for writing the metrics of each fill into the Log window
+     */
+    public static final void setLogEnabled(boolean enabled)
+    {
+        logEnabled = enabled;
+    }
+    
+    /**
+     * @return true if the metrics are written into the ImageJ Log window.
+     */
+    public static final boolean isLogEnabled()
+    {
+        return logEnabled;
+    }
+    
+    /**
+     * Checks whether the metrics of the fills need to be collected.
+     * 
+     * @return true if a listener is registered, if the logging is enabled, or
+     *         if the Flight Recorder event is enabled.
+     */
+    public static final boolean isEnabled()
+    {
+        return logEnabled || !listeners.isEmpty() || (JFR_AVAILABLE && FillEvent.isRecorded());
+    }
+    
+    /**
+     * Dispatches the metrics of a fill to the listeners, to the Log window and
+     * to Flight Recorder.
+     * 
+     * @param metrics
+     *            the metrics of the fill
+     */
+    public static final void publish(FillMetrics metrics)
+    {
+        for (FillListener listener : listeners)
+        {
+            listener.fillCompleted(metrics);
+        }
+        if (logEnabled)
+        {
+            IJ.log(metrics.toString());
+        }
+        if (JFR_AVAILABLE)
+        {
+            FillEvent.emit(metrics);
+        }
+    }
+    
+    private static final boolean isJfrAvailable()
+    {
+        try
+        {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        }
+        catch (ClassNotFoundException | LinkageError ex)
+        {
+            return false;
+        }
+    }
+}
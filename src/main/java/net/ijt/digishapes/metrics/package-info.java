@@ -0,0 +1,8 @@
+/**
+ * Instrumentation of the fills: counts of visited, tested and written voxels,
+ * phase timings and throughput, dispatched to listeners, to the ImageJ Log
+ * window, or to Java Flight Recorder.
+ * 
+ * @author dlegland
+ */
+package net.ijt.digishapes.metrics;
\ No newline at end of file
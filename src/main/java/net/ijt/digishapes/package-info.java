@@ -1,5 +1,14 @@
 /**
  * A collection of ImageJ plugins for generating discrete images of geometric
  * shapes.
+ * 
+ * The DigitalShape2D and DigitalShape3D interfaces define the shapes that can
+ * be digitized, using the rasterizers of the raster package. The
+ * DigitalShapes class provides static methods for digitizing shapes without
+ * using the graphical user interface, either as binary images or as partial
+ * area and partial volume images. The coverage of the pixels or voxels is
+ * estimated by supersampling, or computed exactly for disks, balls and boxes
+ * aligned with the axes. The metrics of the fills can be collected
+ * with the FillMonitor class of the metrics package.
  */
 package net.ijt.digishapes;
\ No newline at end of file
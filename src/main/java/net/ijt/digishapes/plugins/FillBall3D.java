@@ -3,13 +3,12 @@
  */
 package net.ijt.digishapes.plugins;
 
-import java.util.Locale;
-
 import ij.IJ;
 import ij.ImagePlus;
-import ij.ImageStack;
+import ij.Prefs;
 import ij.gui.GenericDialog;
 import ij.plugin.PlugIn;
+import net.ijt.digishapes.shapes3d.Ball3D;
 
 /**
  * Fills a ball defined by user parameters on the current 3D image.
@@ -36,6 +35,7 @@ public class FillBall3D implements PlugIn
         gd.addNumericField("Center_Z", 100, 2);
         gd.addNumericField("Radius", 50, 2);
         gd.addNumericField("Fill Value", 255, 0);
+        gd.addNumericField("Threads", Prefs.getThreads(), 0);
 
         gd.showDialog();
         if (gd.wasCanceled())
@@ -47,65 +47,12 @@ public class FillBall3D implements PlugIn
         double centerZ = gd.getNextNumber();
         double radius = gd.getNextNumber();
         float fillValue = (float) gd.getNextNumber();
+        int nThreads = (int) gd.getNextNumber();
         
-//         generate geometric shape
-//        Point3D center = new Point3D(centerX, centerY, centerZ);
-        /// use squared radius to avoid square root computation
-        double radius2 = square(radius);
-        
-        // retrieve image data
-        ImageStack array = imagePlus.getStack();
-        int sizeX = array.getWidth();
-        int sizeY = array.getHeight();
-        int sizeZ = array.getSize();
-        
-        // computation bounds
-        int x0 = Math.max((int) Math.floor(centerX - radius), 0);
-        int x1 = Math.min((int) Math.ceil(centerX + radius), sizeX - 1);
-        int y0 = Math.max((int) Math.floor(centerY - radius), 0);
-        int y1 = Math.min((int) Math.ceil(centerY + radius), sizeY - 1);
-        int z0 = Math.max((int) Math.floor(centerZ - radius), 0);
-        int z1 = Math.min((int) Math.ceil(centerZ + radius), sizeZ - 1);
-        
-        long t0 = System.currentTimeMillis();
-        // iterate over image pixels
-        for (int z = z0; z <= z1; z++)
-        {
-            double z2 = square(z - centerZ + 0.5);
-            for (int y = y0; y <= y1; y++)
-            {
-                // pre-compute distance to z-axis containing point
-                double h2 = z2 + square(y - centerY + 0.5);
-                for (int x = x0; x <= x1; x++)
-                {
-                    if (square(x - centerX + 0.5) + h2 <= radius2)
-                    {
-                        array.setVoxel(x, y, z, fillValue);
-                    }
-                }
-            }
-        }
-        
-        // elapsed time in seconds
-        long t1 = System.currentTimeMillis();
-        double timeInSecs = (t1 - t0) / 1_000.0;
-        
-        // refresh display
-        imagePlus.updateAndDraw();
+        // generate geometric shape
+        Ball3D ball = new Ball3D(centerX, centerY, centerZ, radius);
         
-        // show elapsed time
-        String pattern = "%s: %.3f seconds";
-        String status = String.format(Locale.ENGLISH, pattern, "Fill Ball", timeInSecs);
-        IJ.showStatus(status);
-    }
-    
-    private static final double square(double x)
-    {
-        return x * x;
+        // fill the voxels within the shape
+        FillPlugins.fill(imagePlus, "Fill Ball", ball, fillValue, nThreads);
     }
-    
-//    private static final double squaredHypot(double x, double y)
-//    {
-//        return x * x + y * y;
-//    }
 }
@@ -5,11 +5,10 @@ package net.ijt.digishapes.plugins;
 
 import ij.IJ;
 import ij.ImagePlus;
+import ij.Prefs;
 import ij.gui.GenericDialog;
 import ij.plugin.PlugIn;
-import ij.process.ImageProcessor;
 import net.ijt.digishapes.shapes2d.Capsule2D;
-import net.ijt.digishapes.util.ImageUtils;
 
 /**
  * Fills a capsule shape defined by user parameters on the current image.
@@ -32,6 +31,7 @@ public class FillCapsule2D implements PlugIn
         gd.addNumericField("Thickness", 20, 2);
         gd.addNumericField("Orientation (degrees)", 30, 2);
         gd.addNumericField("Fill Value", 255, 0);
+        gd.addNumericField("Threads", Prefs.getThreads(), 0);
 
         gd.showDialog();
         if (gd.wasCanceled())
@@ -44,18 +44,12 @@ public class FillCapsule2D implements PlugIn
         double thickness = gd.getNextNumber();
         double orient = gd.getNextNumber();
         float fillValue = (float) gd.getNextNumber();
+        int nThreads = (int) gd.getNextNumber();
         
         // generate geometric shape
         Capsule2D box = new Capsule2D(centerX, centerY, sideLength, thickness * 0.5, orient);
         
-        // retrieve image data
-        ImageProcessor array = imagePlus.getProcessor();
-        
-        // iterate over image pixels
-        ImageUtils.fill(array, (x,y) -> box.isInside(x + 0.5, y + 0.5), fillValue);
-        
-        // refresh display
-        imagePlus.updateImage();
-        imagePlus.updateAndDraw();
+        // fill the pixels within the shape
+        FillPlugins.fill(imagePlus, "Fill Capsule", box, fillValue, nThreads);
     }
 }
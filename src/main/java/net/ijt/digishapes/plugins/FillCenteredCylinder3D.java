@@ -3,15 +3,13 @@
  */
 package net.ijt.digishapes.plugins;
 
-import java.util.Locale;
-
 import ij.IJ;
 import ij.ImagePlus;
 import ij.ImageStack;
+import ij.Prefs;
 import ij.gui.GenericDialog;
 import ij.plugin.PlugIn;
 import net.ijt.digishapes.shapes3d.CenteredCylinder3D;
-import net.ijt.geometry.geom3d.Bounds3D;
 import net.ijt.geometry.geom3d.Point3D;
 
 /**
@@ -50,6 +48,7 @@ public class FillCenteredCylinder3D implements PlugIn
         gd.addNumericField("Euler_Angle_Y (degrees)", 0, 2);
         gd.addNumericField("Euler_Angle_Z (degrees)", 0, 2);
         gd.addNumericField("Fill Value", 255, 0);
+        gd.addNumericField("Threads", Prefs.getThreads(), 0);
 
         gd.showDialog();
         if (gd.wasCanceled())
@@ -65,48 +64,13 @@ public class FillCenteredCylinder3D implements PlugIn
         double eulerAngleY = gd.getNextNumber();
         double eulerAngleZ = gd.getNextNumber();
         float fillValue = (float) gd.getNextNumber();
+        int nThreads = (int) gd.getNextNumber();
         
-        long t0 = System.currentTimeMillis();
-
         // generate geometric shape
         Point3D center = new Point3D(cx, cy, cz);
         CenteredCylinder3D cyl = new CenteredCylinder3D(center, length, radius, eulerAngleX, eulerAngleY, eulerAngleZ);
         
-        // computation bounds
-        Bounds3D bounds = cyl.bounds();
-        int x0 = Math.max((int) Math.floor(bounds.minX()), 0);
-        int x1 = Math.min((int) Math.ceil(bounds.maxX()), sizeX - 1);
-        int y0 = Math.max((int) Math.floor(bounds.minY()), 0);
-        int y1 = Math.min((int) Math.ceil(bounds.maxY()), sizeY - 1);
-        int z0 = Math.max((int) Math.floor(bounds.minZ()), 0);
-        int z1 = Math.min((int) Math.ceil(bounds.maxZ()), sizeZ - 1);
-        
-        // iterate over image voxels
-        for (int z = z0; z <= z1; z++)
-        {
-            for (int y = y0; y <= y1; y++)
-            {
-                for (int x = x0; x <= x1; x++)
-                {
-                    if (cyl.isInside(x + 0.5, y + 0.5, z + 0.5))
-                    {
-                        array.setVoxel(x, y, z, fillValue);
-                    }
-                }
-            }
-        }
-
-        
-        // elapsed time in seconds
-        long t1 = System.currentTimeMillis();
-        double timeInSecs = (t1 - t0) / 1_000.0;
-        
-        // refresh display
-        imagePlus.updateAndDraw();
-        
-        // show elapsed time
-        String pattern = "%s: %.3f seconds";
-        String status = String.format(Locale.ENGLISH, pattern, "Fill Cylinder", timeInSecs);
-        IJ.showStatus(status);
+        // fill the voxels within the shape
+        FillPlugins.fill(imagePlus, "Fill Cylinder", cyl, fillValue, nThreads);
     }
 }
@@ -3,15 +3,12 @@
  */
 package net.ijt.digishapes.plugins;
 
-import java.util.Locale;
-
 import ij.IJ;
 import ij.ImagePlus;
-import ij.ImageStack;
+import ij.Prefs;
 import ij.gui.GenericDialog;
 import ij.plugin.PlugIn;
 import net.ijt.digishapes.shapes3d.Cube3D;
-import net.ijt.geometry.geom3d.Bounds3D;
 
 /**
  * Fills a Cube defined by user parameters on the current 3D image.
@@ -41,6 +38,7 @@ public class FillCube3D implements PlugIn
         gd.addNumericField("Euler_Angle_Y (degrees)", 0, 2);
         gd.addNumericField("Euler_Angle_Z (degrees)", 0, 2);
         gd.addNumericField("Fill Value", 255, 0);
+        gd.addNumericField("Threads", Prefs.getThreads(), 0);
 
         gd.showDialog();
         if (gd.wasCanceled())
@@ -55,53 +53,12 @@ public class FillCube3D implements PlugIn
         double eulerAngleY = gd.getNextNumber();
         double eulerAngleZ = gd.getNextNumber();
         float fillValue = (float) gd.getNextNumber();
-        
-        long t0 = System.currentTimeMillis();
-
-        // retrieve image data
-        ImageStack array = imagePlus.getStack();
-        int sizeX = array.getWidth();
-        int sizeY = array.getHeight();
-        int sizeZ = array.getSize();
+        int nThreads = (int) gd.getNextNumber();
         
         // generate geometric shape
         Cube3D cube = new Cube3D(centerX, centerY, centerZ, sideLength, eulerAngleX, eulerAngleY, eulerAngleZ);
         
-        // computation bounds
-        Bounds3D bounds = cube.bounds();
-        int x0 = Math.max((int) Math.floor(bounds.minX()), 0);
-        int x1 = Math.min((int) Math.ceil(bounds.maxX()), sizeX - 1);
-        int y0 = Math.max((int) Math.floor(bounds.minY()), 0);
-        int y1 = Math.min((int) Math.ceil(bounds.maxY()), sizeY - 1);
-        int z0 = Math.max((int) Math.floor(bounds.minZ()), 0);
-        int z1 = Math.min((int) Math.ceil(bounds.maxZ()), sizeZ - 1);
-        
-        // iterate over image voxels
-        for (int z = z0; z <= z1; z++)
-        {
-            for (int y = y0; y <= y1; y++)
-            {
-                for (int x = x0; x <= x1; x++)
-                {
-                    if (cube.isInside(x + 0.5, y + 0.5, z + 0.5))
-                    {
-                        array.setVoxel(x, y, z, fillValue);
-                    }
-                }
-            }
-        }
-
-        
-        // elapsed time in seconds
-        long t1 = System.currentTimeMillis();
-        double timeInSecs = (t1 - t0) / 1_000.0;
-        
-        // refresh display
-        imagePlus.updateAndDraw();
-        
-        // show elapsed time
-        String pattern = "%s: %.3f seconds";
-        String status = String.format(Locale.ENGLISH, pattern, "Fill Cube", timeInSecs);
-        IJ.showStatus(status);
+        // fill the voxels within the shape
+        FillPlugins.fill(imagePlus, "Fill Cube", cube, fillValue, nThreads);
     }
 }
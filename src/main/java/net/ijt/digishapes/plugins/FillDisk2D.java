@@ -5,11 +5,10 @@ package net.ijt.digishapes.plugins;
 
 import ij.IJ;
 import ij.ImagePlus;
+import ij.Prefs;
 import ij.gui.GenericDialog;
 import ij.plugin.PlugIn;
-import ij.process.ImageProcessor;
-import net.ijt.digishapes.util.ImageUtils;
-import net.ijt.geometry.geom2d.curve.Circle2D;
+import net.ijt.digishapes.shapes2d.Circle2DAdapter;
 
 /**
  * Fills an ellipse defined by user parameters on the current image.
@@ -30,6 +29,7 @@ public class FillDisk2D implements PlugIn
         gd.addNumericField("Center_Y", 100, 2);
         gd.addNumericField("Radius", 50, 2);
         gd.addNumericField("Fill Value", 255, 0);
+        gd.addNumericField("Threads", Prefs.getThreads(), 0);
 
         gd.showDialog();
         if (gd.wasCanceled())
@@ -40,18 +40,12 @@ public class FillDisk2D implements PlugIn
         double centerY = gd.getNextNumber();
         double radius = gd.getNextNumber();
         float fillValue = (float) gd.getNextNumber();
+        int nThreads = (int) gd.getNextNumber();
         
         // generate geometric shape
-        Circle2D disk = new Circle2D(centerX, centerY, radius);
+        Circle2DAdapter disk = new Circle2DAdapter(centerX, centerY, radius);
         
-        // retrieve image data
-        ImageProcessor array = imagePlus.getProcessor();
-        
-        // iterate over image pixels
-        ImageUtils.fill(array, (x,y) -> disk.isInside(x + 0.5, y + 0.5), fillValue);
-        
-        // refresh display
-        imagePlus.updateImage();
-        imagePlus.updateAndDraw();
+        // fill the pixels within the shape
+        FillPlugins.fill(imagePlus, "Fill Disk", disk, fillValue, nThreads);
     }
 }
@@ -5,11 +5,10 @@ package net.ijt.digishapes.plugins;
 
 import ij.IJ;
 import ij.ImagePlus;
+import ij.Prefs;
 import ij.gui.GenericDialog;
 import ij.plugin.PlugIn;
-import ij.process.ImageProcessor;
-import net.ijt.digishapes.util.ImageUtils;
-import net.ijt.geometry.geom2d.curve.Ellipse2D;
+import net.ijt.digishapes.shapes2d.Ellipse2DAdapter;
 
 /**
  * Fills an ellipse defined by user parameters on the current image.
@@ -32,6 +31,7 @@ public class FillEllipse2D implements PlugIn
         gd.addNumericField("Minor Semi-Axis", 20, 2);
         gd.addNumericField("Orientation (degrees)", 30, 2);
         gd.addNumericField("Fill Value", 255, 0);
+        gd.addNumericField("Threads", Prefs.getThreads(), 0);
 
         gd.showDialog();
         if (gd.wasCanceled())
@@ -44,18 +44,12 @@ public class FillEllipse2D implements PlugIn
         double semiAxis2 = gd.getNextNumber();
         double orient = gd.getNextNumber();
         float fillValue = (float) gd.getNextNumber();
+        int nThreads = (int) gd.getNextNumber();
         
         // generate geometric shape
-        Ellipse2D elli = new Ellipse2D(centerX, centerY, semiAxis1, semiAxis2, orient);
+        Ellipse2DAdapter elli = new Ellipse2DAdapter(centerX, centerY, semiAxis1, semiAxis2, orient);
         
-        // retrieve image data
-        ImageProcessor array = imagePlus.getProcessor();
-        
-        // iterate over image pixels
-        ImageUtils.fill(array, (x,y) -> elli.isInside(x + 0.5, y + 0.5), fillValue);
-        
-        // refresh display
-        imagePlus.updateImage();
-        imagePlus.updateAndDraw();
+        // fill the pixels within the shape
+        FillPlugins.fill(imagePlus, "Fill Ellipse", elli, fillValue, nThreads);
     }
 }
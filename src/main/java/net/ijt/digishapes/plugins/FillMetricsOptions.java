@@ -0,0 +1,34 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.plugins;
+
+import ij.gui.GenericDialog;
+import ij.plugin.PlugIn;
+import net.ijt.digishapes.metrics.FillMonitor;
+
+/**
+ * Enables or disables the logging of the metrics of each fill into the
+ * ImageJ Log window: number of voxels visited, tested and written, and
+ * duration of the setup, raster and display phases.
+ * 
+ * @see FillMonitor
+ * 
+ * @author dlegland
+ */
+public class FillMetricsOptions implements PlugIn
+{
+    @Override
+    public void run(String arg)
+    {
+        // create the dialog
+        GenericDialog gd = new GenericDialog("Fill Metrics");
+        gd.addCheckbox("Log_Fill_Metrics", FillMonitor.isLogEnabled());
+        
+        gd.showDialog();
+        if (gd.wasCanceled())
+            return;
+        
+        FillMonitor.setLogEnabled(gd.getNextBoolean());
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.plugins;
+
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+
+import ij.IJ;
+import ij.ImagePlus;
+import net.ijt.digishapes.DigitalShape2D;
+import net.ijt.digishapes.DigitalShape3D;
+import net.ijt.digishapes.DigitalShapes;
+import net.ijt.digishapes.metrics.FillMetrics;
+import net.ijt.digishapes.metrics.FillMonitor;
+import net.ijt.digishapes.raster.CoverageRasterizer;
+import net.ijt.digishapes.raster.CoverageShape2D;
+import net.ijt.digishapes.raster.CoverageShape3D;
+import net.ijt.digishapes.raster.ShapeRasterizer;
+import net.ijt.digishapes.util.FillProgress;
+import net.ijt.digishapes.util.ImageJFillProgress;
+
+/**
+ * Shared implementation of the fill plugins: fills a shape into the current
+ * image, refreshes the display, and shows the duration of the fill in the
+ * status bar. The fills of 3D shapes show their progress, and can be canceled
+ * with the Escape key. When the FillMonitor is enabled, the metrics of the fill,
+ * including the duration of the display refresh, are also published.
+ * 
+ * When the number of samples set by the FillRenderingOptions plugin is greater
+ * than one, the shapes are rendered as partial area or partial volume images,
+ * and no metrics are collected. When the exact coverage option is set, the
+ * shapes that provide exact coverage (disks, balls, and boxes aligned with
+ * the axes) are rendered with the exact fraction of each pixel or voxel
+ * covered by the shape, and the other shapes use the number of samples.
+ * 
+ * @see FillMonitor
+ * @see CoverageRasterizer
+ * 
+ * @author dlegland
+ */
+class FillPlugins
+{
+    /**
+     * The number of samples along each direction of a pixel or voxel for
+     * estimating the coverage, or 1 for binary images.
+     */
+    private static volatile int samples = 1;
+    
+    /**
+     * Whether the shapes that provide exact coverage are rendered as partial
+     * area or partial volume images with exact coverage.
+     */
+    private static volatile boolean exactCoverage = false;
+    
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private FillPlugins()
+    {
+    }
+    
+    /**
+     * Changes the number of samples along each direction of a pixel or voxel
+     * used by the subsequent fills.
+     * 
+     * @param samples
+     *            the number of samples, or 1 to fill binary images
+     */
+    static final void setSamples(int samples)
+    {
+        if (samples < 1)
+        {
+            throw new IllegalArgumentException("Number of samples must be at least 1, not " + samples);
+        }
+        FillPlugins.samples = samples;
+    }
+    
+    /**
+     * @return the number of samples along each direction of a pixel or voxel,
+     *         or 1 for binary images.
+     */
+    static final int getSamples()
+    {
+        return samples;
+    }
+    
+    /**
+     * Changes whether the shapes that provide exact coverage are rendered with
+     * the exact fraction of each pixel or voxel covered by the shape.
+     * 
+     * @param exactCoverage
+     *            true to compute exact coverage whenever possible
+     */
+    static final void setExactCoverage(boolean exactCoverage)
+    {
+        FillPlugins.exactCoverage = exactCoverage;
+    }
+    
+    /**
+     * @return true if the shapes that provide exact coverage are rendered with
+     *         the exact fraction of each pixel or voxel covered by the shape.
+     */
+    static final boolean isExactCoverage()
+    {
+        return exactCoverage;
+    }
+    
+    /**
+     * Fills a planar shape into the current processor of the image, and
+     * refreshes the display.
+     * 
+     * @param imagePlus
+     *            the image to fill
+     * @param name
+     *            the name of the operation, shown in the status bar
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels within the shape
+     * @param nThreads
+     *            the number of threads to use
+     */
+    static final void fill(ImagePlus imagePlus, String name, DigitalShape2D shape, double value, int nThreads)
+    {
+        int samples = FillPlugins.samples;
+        long t0 = System.nanoTime();
+        FillMetrics metrics = null;
+        if (exactCoverage && shape instanceof CoverageShape2D)
+        {
+            DigitalShapes.fillExactCoverage(imagePlus.getProcessor(), (CoverageShape2D) shape, value);
+        }
+        else if (samples > 1)
+        {
+            DigitalShapes.fillCoverage(imagePlus.getProcessor(), shape, value, samples);
+        }
+        else if (FillMonitor.isEnabled())
+        {
+            metrics = ShapeRasterizer.measure(imagePlus.getProcessor(), shape, value, nThreads);
+        }
+        else
+        {
+            DigitalShapes.fill(imagePlus, shape, value, nThreads);
+        }
+        long t1 = System.nanoTime();
+        
+        // refresh display
+        imagePlus.updateImage();
+        imagePlus.updateAndDraw();
+        long t2 = System.nanoTime();
+        
+        complete(name, metrics, t1 - t0, t2 - t1);
+    }
+    
+    /**
+     * Fills a 3D shape into the stack of the image, and refreshes the
+     * display.
+     * 
+     * @param imagePlus
+     *            the image to fill
+     * @param name
+     *            the name of the operation, shown in the status bar
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @param nThreads
+     *            the number of threads to use
+     */
+    static final void fill(ImagePlus imagePlus, String name, DigitalShape3D shape, double value, int nThreads)
+    {
+        // the fill can be interrupted with the Escape key
+        IJ.resetEscape();
+        FillProgress progress = new ImageJFillProgress();
+        
+        int samples = FillPlugins.samples;
+        long t0 = System.nanoTime();
+        FillMetrics metrics = null;
+        try
+        {
+            if (exactCoverage && CoverageRasterizer.hasExactCoverage(shape))
+            {
+                DigitalShapes.fillExactCoverage(imagePlus.getStack(), (CoverageShape3D) shape, value, nThreads, progress);
+            }
+            else if (samples > 1)
+            {
+                DigitalShapes.fillCoverage(imagePlus.getStack(), shape, value, samples, nThreads, progress);
+            }
+            else if (FillMonitor.isEnabled())
+            {
+                metrics = ShapeRasterizer.measure(imagePlus.getStack(), shape, value, nThreads, progress);
+            }
+            else
+            {
+                DigitalShapes.fill(imagePlus, shape, value, nThreads, progress);
+            }
+        }
+        catch (CancellationException ex)
+        {
+            // show the slices filled before the cancellation
+            IJ.showProgress(1.0);
+            IJ.resetEscape();
+            imagePlus.updateAndDraw();
+            IJ.showStatus(name + ": canceled");
+            return;
+        }
+        long t1 = System.nanoTime();
+        
+        // refresh display
+        imagePlus.updateAndDraw();
+        long t2 = System.nanoTime();
+        
+        complete(name, metrics, t1 - t0, t2 - t1);
+    }
+    
+    /**
+     * Publishes the metrics if they were collected, and shows the duration
+     * of the fill.
+     */
+    private static final void complete(String name, FillMetrics metrics, long fillNanos, long displayNanos)
+    {
+        if (metrics != null)
+        {
+            FillMonitor.publish(metrics.withDisplayTime(displayNanos));
+        }
+        
+        // show elapsed time
+        String pattern = "%s: %.3f seconds";
+        String status = String.format(Locale.ENGLISH, pattern, name, fillNanos / 1e9);
+        IJ.showStatus(status);
+    }
+}
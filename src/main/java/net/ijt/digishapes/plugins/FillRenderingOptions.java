@@ -0,0 +1,48 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.plugins;
+
+import ij.IJ;
+import ij.gui.GenericDialog;
+import ij.plugin.PlugIn;
+import net.ijt.digishapes.raster.CoverageRasterizer;
+
+/**
+ * Chooses how the fill plugins render the shapes: either as binary images,
+ * by testing the center of each pixel or voxel, or as partial area / partial
+ * volume images, by estimating the fraction of each boundary pixel or voxel
+ * covered by the shape with N samples along each direction. The disks, balls
+ * and boxes aligned with the axes can also be rendered with the exact
+ * coverage of each pixel or voxel.
+ * 
+ * @see CoverageRasterizer
+ * 
+ * @author dlegland
+ */
+public class FillRenderingOptions implements PlugIn
+{
+    @Override
+    public void run(String arg)
+    {
+        // create the dialog
+        GenericDialog gd = new GenericDialog("Fill Rendering");
+        gd.addNumericField("Supersampling", FillPlugins.getSamples(), 0);
+        gd.addMessage("Use 1 for binary images, or N > 1 for partial volume\nimages using N x N x N samples per boundary voxel.");
+        gd.addCheckbox("Exact coverage (disks, balls, aligned boxes)", FillPlugins.isExactCoverage());
+        
+        gd.showDialog();
+        if (gd.wasCanceled())
+            return;
+        
+        int samples = (int) gd.getNextNumber();
+        boolean exactCoverage = gd.getNextBoolean();
+        if (samples < 1)
+        {
+            IJ.error("Fill Rendering", "Supersampling must be at least 1");
+            return;
+        }
+        FillPlugins.setSamples(samples);
+        FillPlugins.setExactCoverage(exactCoverage);
+    }
+}
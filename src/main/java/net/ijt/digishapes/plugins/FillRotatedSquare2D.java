@@ -5,11 +5,10 @@ package net.ijt.digishapes.plugins;
 
 import ij.IJ;
 import ij.ImagePlus;
+import ij.Prefs;
 import ij.gui.GenericDialog;
 import ij.plugin.PlugIn;
-import ij.process.ImageProcessor;
-import net.ijt.digishapes.util.ImageUtils;
-import net.ijt.geometry.polygon2d.OrientedBox2D;
+import net.ijt.digishapes.shapes2d.OrientedBox2DAdapter;
 
 /**
  * Fills a rotated square defined by user parameters on the current image.
@@ -31,6 +30,7 @@ public class FillRotatedSquare2D implements PlugIn
         gd.addNumericField("Side_Length", 60, 2);
         gd.addNumericField("Orientation (degrees)", 30, 2);
         gd.addNumericField("Fill Value", 255, 0);
+        gd.addNumericField("Threads", Prefs.getThreads(), 0);
 
         gd.showDialog();
         if (gd.wasCanceled())
@@ -42,18 +42,12 @@ public class FillRotatedSquare2D implements PlugIn
         double sideLength = gd.getNextNumber();
         double orient = gd.getNextNumber();
         float fillValue = (float) gd.getNextNumber();
+        int nThreads = (int) gd.getNextNumber();
         
         // generate geometric shape
-        OrientedBox2D box = new OrientedBox2D(centerX, centerY, sideLength, sideLength, orient);
+        OrientedBox2DAdapter box = new OrientedBox2DAdapter(centerX, centerY, sideLength, sideLength, orient);
         
-        // retrieve image data
-        ImageProcessor array = imagePlus.getProcessor();
-        
-        // iterate over image pixels
-        ImageUtils.fill(array, (x,y) -> box.isInside(x + 0.5, y + 0.5), fillValue);
-        
-        // refresh display
-        imagePlus.updateImage();
-        imagePlus.updateAndDraw();
+        // fill the pixels within the shape
+        FillPlugins.fill(imagePlus, "Fill Rotated Square", box, fillValue, nThreads);
     }
 }
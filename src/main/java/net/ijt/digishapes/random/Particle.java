@@ -0,0 +1,409 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.random;
+
+import net.ijt.digishapes.DigitalShape3D;
+import net.ijt.digishapes.raster.SpanShape3D;
+import net.ijt.digishapes.shapes3d.Ball3D;
+import net.ijt.digishapes.shapes3d.Capsule3D;
+import net.ijt.digishapes.shapes3d.Cuboid3D;
+import net.ijt.geometry.geom3d.AffineTransform3D;
+import net.ijt.geometry.geom3d.Bounds3D;
+import net.ijt.geometry.geom3d.Point3D;
+
+/**
+ * A shape placed within a random population, together with the geometric
+ * model used for overlap tests.
+ * 
+ * Balls and capsules are modeled as the set of points within a given distance
+ * of a segment, and cuboids as oriented boxes, allowing exact overlap tests
+ * between balls, capsules and cuboids. The overlaps involving other shapes,
+ * or a capsule and a cuboid, are detected by comparing the occupancy of the
+ * two shapes on the rows of voxels within the intersection of their bounds.
+ * 
+ * @author dlegland
+ */
+final class Particle
+{
+    // ===================================================================
+    // Constants
+    
+    private static final int SWEPT_SPHERE = 0;
+    private static final int BOX = 1;
+    private static final int OTHER = 2;
+    
+    
+    // ===================================================================
+    // Class variables
+    
+    final DigitalShape3D shape;
+    final Bounds3D bounds;
+    final double volume;
+    
+    /**
+     * The type of geometric model: SWEPT_SPHERE, BOX or OTHER.
+     */
+    final int type;
+    
+    /**
+     * For swept spheres, the two extremities of the segment. For boxes, the
+     * center is stored in p.
+     */
+    final double[] p, q;
+    
+    /**
+     * For swept spheres, the distance to the segment.
+     */
+    final double radius;
+    
+    /**
+     * For boxes, the three unit vectors of the box axes, and the half-lengths
+     * of the box along each axis.
+     */
+    final double[][] axes;
+    final double[] halfSizes;
+    
+    /**
+     * The index of the last query of the spatial hash that visited this
+     * particle, used to avoid testing a particle several times.
+     */
+    int stamp = 0;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    Particle(DigitalShape3D shape)
+    {
+        this.shape = shape;
+        this.bounds = shape.bounds();
+        
+        if (shape instanceof Ball3D)
+        {
+            Ball3D ball = (Ball3D) shape;
+            this.type = SWEPT_SPHERE;
+            this.p = coords(ball.center());
+            this.q = p;
+            this.radius = ball.radius();
+            this.axes = null;
+            this.halfSizes = null;
+            this.volume = ball.volume();
+        }
+        else if (shape instanceof Capsule3D)
+        {
+            Capsule3D capsule = (Capsule3D) shape;
+            this.type = SWEPT_SPHERE;
+            this.p = coords(capsule.point1());
+            this.q = coords(capsule.point2());
+            this.radius = capsule.radius();
+            this.axes = null;
+            this.halfSizes = null;
+            this.volume = capsule.volume();
+        }
+        else if (shape instanceof Cuboid3D)
+        {
+            Cuboid3D cuboid = (Cuboid3D) shape;
+            this.type = BOX;
+            this.p = coords(cuboid.center());
+            this.q = null;
+            this.radius = 0;
+            AffineTransform3D rot = cuboid.orientation().asTransform();
+            this.axes = new double[][] {
+                coords(rot.transform(new Point3D(1, 0, 0))),
+                coords(rot.transform(new Point3D(0, 1, 0))),
+                coords(rot.transform(new Point3D(0, 0, 1)))};
+            this.halfSizes = new double[] {
+                cuboid.sideLength1() * 0.5,
+                cuboid.sideLength2() * 0.5,
+                cuboid.sideLength3() * 0.5};
+            this.volume = cuboid.volume();
+        }
+        else
+        {
+            this.type = OTHER;
+            this.p = null;
+            this.q = null;
+            this.radius = 0;
+            this.axes = null;
+            this.halfSizes = null;
+            this.volume = digitalVolume(shape, bounds);
+        }
+    }
+    
+    
+    // ===================================================================
+    // Overlap tests
+    
+    /**
+     * Checks if this particle overlaps another particle.
+     * 
+     * @param other
+     *            the other particle
+     * @return true if the two particles overlap
+     */
+    boolean overlaps(Particle other)
+    {
+        if (!boundsIntersect(this.bounds, other.bounds))
+        {
+            return false;
+        }
+        
+        if (this.type == SWEPT_SPHERE && other.type == SWEPT_SPHERE)
+        {
+            double r = this.radius + other.radius;
+            return squaredSegmentDistance(this.p, this.q, other.p, other.q) <= r * r;
+        }
+        if (this.type == BOX && other.type == BOX)
+        {
+            return boxesOverlap(this, other);
+        }
+        if (this.type == BOX && other.type == SWEPT_SPHERE && other.p == other.q)
+        {
+            return squaredBoxDistance(this, other.p) <= other.radius * other.radius;
+        }
+        if (other.type == BOX && this.type == SWEPT_SPHERE && this.p == this.q)
+        {
+            return squaredBoxDistance(other, this.p) <= this.radius * this.radius;
+        }
+        return occupancyOverlap(this.shape, other.shape, this.bounds, other.bounds);
+    }
+    
+    static final boolean boundsIntersect(Bounds3D b1, Bounds3D b2)
+    {
+        return b1.minX() <= b2.maxX() && b2.minX() <= b1.maxX()
+                && b1.minY() <= b2.maxY() && b2.minY() <= b1.maxY()
+                && b1.minZ() <= b2.maxZ() && b2.minZ() <= b1.maxZ();
+    }
+    
+    /**
+     * Computes the squared distance between two segments [p1 q1] and [p2 q2],
+     * following the algorithm described in "Real-Time Collision Detection",
+     * by C. Ericson.
+     */
+    private static final double squaredSegmentDistance(double[] p1, double[] q1, double[] p2, double[] q2)
+    {
+        double[] d1 = sub(q1, p1);
+        double[] d2 = sub(q2, p2);
+        double[] r = sub(p1, p2);
+        double a = dot(d1, d1);
+        double e = dot(d2, d2);
+        double f = dot(d2, r);
+        
+        double s, t;
+        if (a == 0 && e == 0)
+        {
+            // both segments degenerate into points
+            s = 0;
+            t = 0;
+        }
+        else if (a == 0)
+        {
+            s = 0;
+            t = clamp(f / e);
+        }
+        else
+        {
+            double c = dot(d1, r);
+            if (e == 0)
+            {
+                t = 0;
+                s = clamp(-c / a);
+            }
+            else
+            {
+                double b = dot(d1, d2);
+                double denom = a * e - b * b;
+                s = denom != 0 ? clamp((b * f - c * e) / denom) : 0;
+                t = (b * s + f) / e;
+                if (t < 0)
+                {
+                    t = 0;
+                    s = clamp(-c / a);
+                }
+                else if (t > 1)
+                {
+                    t = 1;
+                    s = clamp((b - c) / a);
+                }
+            }
+        }
+        
+        double dist2 = 0;
+        for (int i = 0; i < 3; i++)
+        {
+            double d = (p1[i] + d1[i] * s) - (p2[i] + d2[i] * t);
+            dist2 += d * d;
+        }
+        return dist2;
+    }
+    
+    /**
+     * Checks if two oriented boxes overlap, using the separating axis
+     * theorem on the fifteen candidate axes.
+     */
+    private static final boolean boxesOverlap(Particle box1, Particle box2)
+    {
+        double[] a = box1.halfSizes;
+        double[] b = box2.halfSizes;
+        
+        // rotation expressing box2 in the basis of box1
+        double[][] rot = new double[3][3];
+        double[][] absRot = new double[3][3];
+        for (int i = 0; i < 3; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                rot[i][j] = dot(box1.axes[i], box2.axes[j]);
+                // add a small value to handle parallel edges
+                absRot[i][j] = Math.abs(rot[i][j]) + 1e-12;
+            }
+        }
+        
+        // translation in the basis of box1
+        double[] dc = sub(box2.p, box1.p);
+        double[] t = new double[] {dot(dc, box1.axes[0]), dot(dc, box1.axes[1]), dot(dc, box1.axes[2])};
+        
+        // axes of box1
+        for (int i = 0; i < 3; i++)
+        {
+            double rb = b[0] * absRot[i][0] + b[1] * absRot[i][1] + b[2] * absRot[i][2];
+            if (Math.abs(t[i]) > a[i] + rb) return false;
+        }
+        
+        // axes of box2
+        for (int j = 0; j < 3; j++)
+        {
+            double ra = a[0] * absRot[0][j] + a[1] * absRot[1][j] + a[2] * absRot[2][j];
+            double tj = t[0] * rot[0][j] + t[1] * rot[1][j] + t[2] * rot[2][j];
+            if (Math.abs(tj) > ra + b[j]) return false;
+        }
+        
+        // cross products of axes
+        for (int i = 0; i < 3; i++)
+        {
+            int i1 = (i + 1) % 3;
+            int i2 = (i + 2) % 3;
+            for (int j = 0; j < 3; j++)
+            {
+                int j1 = (j + 1) % 3;
+                int j2 = (j + 2) % 3;
+                double ra = a[i1] * absRot[i2][j] + a[i2] * absRot[i1][j];
+                double rb = b[j1] * absRot[i][j2] + b[j2] * absRot[i][j1];
+                double dist = t[i2] * rot[i1][j] - t[i1] * rot[i2][j];
+                if (Math.abs(dist) > ra + rb) return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Computes the squared distance between a point and an oriented box.
+     */
+    private static final double squaredBoxDistance(Particle box, double[] point)
+    {
+        double[] dc = sub(point, box.p);
+        double dist2 = 0;
+        for (int i = 0; i < 3; i++)
+        {
+            double d = Math.abs(dot(dc, box.axes[i])) - box.halfSizes[i];
+            if (d > 0)
+            {
+                dist2 += d * d;
+            }
+        }
+        return dist2;
+    }
+    
+    /**
+     * Checks if two shapes share a point on the rows of voxel centers within
+     * the intersection of their bounds. For span shapes, the extents of the
+     * two shapes are compared on each row, otherwise the voxel centers are
+     * tested.
+     */
+    private static final boolean occupancyOverlap(DigitalShape3D shape1, DigitalShape3D shape2, Bounds3D b1, Bounds3D b2)
+    {
+        double xmin = Math.max(b1.minX(), b2.minX());
+        double xmax = Math.min(b1.maxX(), b2.maxX());
+        int y0 = (int) Math.floor(Math.max(b1.minY(), b2.minY()) - 0.5);
+        int y1 = (int) Math.ceil(Math.min(b1.maxY(), b2.maxY()) - 0.5);
+        int z0 = (int) Math.floor(Math.max(b1.minZ(), b2.minZ()) - 0.5);
+        int z1 = (int) Math.ceil(Math.min(b1.maxZ(), b2.maxZ()) - 0.5);
+        
+        boolean spans = shape1 instanceof SpanShape3D && shape2 instanceof SpanShape3D;
+        double[] ext1 = new double[2];
+        double[] ext2 = new double[2];
+        for (int z = z0; z <= z1; z++)
+        {
+            for (int y = y0; y <= y1; y++)
+            {
+                if (spans)
+                {
+                    if (((SpanShape3D) shape1).lineExtent(y + 0.5, z + 0.5, ext1)
+                            && ((SpanShape3D) shape2).lineExtent(y + 0.5, z + 0.5, ext2)
+                            && ext1[0] <= ext2[1] && ext2[0] <= ext1[1])
+                    {
+                        return true;
+                    }
+                    continue;
+                }
+                
+                for (int x = (int) Math.floor(xmin - 0.5); x <= (int) Math.ceil(xmax - 0.5); x++)
+                {
+                    if (shape1.isInside(x + 0.5, y + 0.5, z + 0.5) && shape2.isInside(x + 0.5, y + 0.5, z + 0.5))
+                    {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Estimates the volume of a shape by counting the voxel centers within
+     * the shape.
+     */
+    private static final double digitalVolume(DigitalShape3D shape, Bounds3D bounds)
+    {
+        long count = 0;
+        for (int z = (int) Math.floor(bounds.minZ()); z <= (int) Math.ceil(bounds.maxZ()); z++)
+        {
+            for (int y = (int) Math.floor(bounds.minY()); y <= (int) Math.ceil(bounds.maxY()); y++)
+            {
+                for (int x = (int) Math.floor(bounds.minX()); x <= (int) Math.ceil(bounds.maxX()); x++)
+                {
+                    if (shape.isInside(x + 0.5, y + 0.5, z + 0.5))
+                    {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+    
+    
+    // ===================================================================
+    // Utility methods
+    
+    private static final double[] coords(Point3D point)
+    {
+        return new double[] {point.x(), point.y(), point.z()};
+    }
+    
+    private static final double[] sub(double[] v1, double[] v2)
+    {
+        return new double[] {v1[0] - v2[0], v1[1] - v2[1], v1[2] - v2[2]};
+    }
+    
+    private static final double dot(double[] v1, double[] v2)
+    {
+        return v1[0] * v2[0] + v1[1] * v2[1] + v1[2] * v2[2];
+    }
+    
+    private static final double clamp(double t)
+    {
+        return Math.min(Math.max(t, 0.0), 1.0);
+    }
+}
@@ -0,0 +1,274 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.random;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.ijt.digishapes.DigitalShape3D;
+import net.ijt.geometry.geom3d.Bounds3D;
+
+/**
+ * Generates random populations of 3D shapes within a box-shaped domain, with
+ * a controlled volume fraction.
+ * 
+ * Two models are available:
+ * <ul>
+ * <li>the Random Sequential Adsorption (RSA) model, that places shapes at
+ * random positions, and rejects the shapes that overlap a shape already
+ * placed,</li>
+ * <li>the Boolean model, that places shapes at random positions without any
+ * overlap constraint.</li>
+ * </ul>
+ * 
+ * For the RSA model, the candidate shapes are compared only to the shapes
+ * referenced by the cells of a spatial hash overlapped by their bounds, so
+ * that the cost of each overlap check does not depend on the number of placed
+ * shapes. Pairs of balls, capsules and cuboids are compared with exact
+ * geometric tests, other pairs by comparing their digital occupancy.
+ * 
+ * The shapes are centered within the domain, but may extend beyond its
+ * bounds. The volume fraction is computed as the ratio of the total volume of
+ * the shapes over the volume of the domain.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * PopulationGenerator3D generator = new PopulationGenerator3D(256, 256, 256, 42L);
+ * List<DigitalShape3D> shapes = generator.randomSequentialAdsorption(ShapeSampler.balls(5, 10), 0.30, 10000);
+ * 
+ * LabelRenderer3D renderer = new LabelRenderer3D();
+ * shapes.forEach(renderer::add);
+ * ImageStack labels = LabelRenderer3D.createLabelStack(256, 256, 256, renderer.labelCount());
+ * renderer.render(labels, OverlapRule.LAST_WINS, 0);
+ * }</pre>
+ * 
+ * @see ShapeSampler
+ * @see net.ijt.digishapes.scene.LabelRenderer3D
+ * @see net.ijt.digishapes.scene.Scene3D
+ * 
+ * @author dlegland
+ */
+public class PopulationGenerator3D
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The domain containing the centers of the shapes.
+     */
+    final Bounds3D domain;
+    
+    /**
+     * The random number generator used for the positions and the parameters
+     * of the shapes.
+     */
+    final Random random;
+    
+    /**
+     * The size of the cells of the spatial hash, or zero to use the largest
+     * size of the bounds of the first shape.
+     */
+    double cellSize = 0;
+    
+    /**
+     * The volume fraction of the last generated population.
+     */
+    double volumeFraction = 0;
+    
+    /**
+     * The number of candidate shapes rejected during the last generation.
+     */
+    int rejectedCount = 0;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new generator for an image domain with the specified size.
+     * 
+     * @param sizeX
+     *            the size of the domain in the X direction
+     * @param sizeY
+     *            the size of the domain in the Y direction
+     * @param sizeZ
+     *            the size of the domain in the Z direction
+     * @param seed
+     *            the seed of the random number generator
+     */
+    public PopulationGenerator3D(int sizeX, int sizeY, int sizeZ, long seed)
+    {
+        this(new Bounds3D(0, sizeX, 0, sizeY, 0, sizeZ), seed);
+    }
+    
+    /**
+     * Creates a new generator for the specified domain.
+     * 
+     * @param domain
+     *            the domain containing the centers of the shapes
+     * @param seed
+     *            the seed of the random number generator
+     */
+    public PopulationGenerator3D(Bounds3D domain, long seed)
+    {
+        this.domain = domain;
+        this.random = new Random(seed);
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Changes the size of the cells of the spatial hash used to detect the
+     * overlaps. The best performance is usually obtained with cells slightly
+     * larger than the typical size of the shapes.
+     * 
+     * @param cellSize
+     *            the size of the cells, or zero to use the size of the first
+     *            generated shape
+     */
+    public void setCellSize(double cellSize)
+    {
+        if (cellSize < 0)
+        {
+            throw new IllegalArgumentException("Cell size must be positive or zero, not " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+    
+    /**
+     * Generates a population of non-overlapping shapes, using the Random
+     * Sequential Adsorption model. The generation stops when the volume
+     * fraction reaches the target value, or when the specified number of
+     * consecutive candidates has been rejected.
+     * 
+     * @param sampler
+     *            the sampler used to create the shapes
+     * @param targetFraction
+     *            the target volume fraction, between 0 and 1
+     * @param maxAttempts
+     *            the maximum number of consecutive rejected candidates
+     * @return the list of accepted shapes, in the order of their placement
+     */
+    public List<DigitalShape3D> randomSequentialAdsorption(ShapeSampler sampler, double targetFraction, int maxAttempts)
+    {
+        checkFraction(targetFraction);
+        double targetVolume = targetFraction * domainVolume();
+        
+        ArrayList<DigitalShape3D> shapes = new ArrayList<>();
+        SpatialHash3D hash = null;
+        double totalVolume = 0;
+        int failures = 0;
+        this.rejectedCount = 0;
+        
+        while (totalVolume < targetVolume && failures < maxAttempts)
+        {
+            Particle particle = new Particle(samplePosition(sampler));
+            if (hash == null)
+            {
+                hash = new SpatialHash3D(cellSize > 0 ? cellSize : maxSize(particle.bounds));
+            }
+            
+            if (hash.overlapsAny(particle))
+            {
+                failures++;
+                this.rejectedCount++;
+                continue;
+            }
+            
+            hash.insert(particle);
+            shapes.add(particle.shape);
+            totalVolume += particle.volume;
+            failures = 0;
+        }
+        
+        this.volumeFraction = totalVolume / domainVolume();
+        return shapes;
+    }
+    
+    /**
+     * Generates a population of possibly overlapping shapes, using the
+     * Boolean model. Shapes are added until the expected volume fraction of
+     * their union, computed as <code>1 - exp(-V_shapes / V_domain)</code>,
+     * reaches the target value.
+     * 
+     * @param sampler
+     *            the sampler used to create the shapes
+     * @param targetFraction
+     *            the target volume fraction of the union of the shapes,
+     *            between 0 and 1 (exclusive)
+     * @return the list of generated shapes
+     */
+    public List<DigitalShape3D> booleanModel(ShapeSampler sampler, double targetFraction)
+    {
+        checkFraction(targetFraction);
+        if (targetFraction >= 1.0)
+        {
+            throw new IllegalArgumentException("Volume fraction of a Boolean model must be smaller than 1");
+        }
+        double targetVolume = -Math.log(1.0 - targetFraction) * domainVolume();
+        
+        ArrayList<DigitalShape3D> shapes = new ArrayList<>();
+        double totalVolume = 0;
+        this.rejectedCount = 0;
+        while (totalVolume < targetVolume)
+        {
+            Particle particle = new Particle(samplePosition(sampler));
+            shapes.add(particle.shape);
+            totalVolume += particle.volume;
+        }
+        
+        this.volumeFraction = 1.0 - Math.exp(-totalVolume / domainVolume());
+        return shapes;
+    }
+    
+    /**
+     * @return the volume fraction of the last generated population. For the
+     *         Boolean model, this is the expected volume fraction of the
+     *         union of the shapes.
+     */
+    public double volumeFraction()
+    {
+        return volumeFraction;
+    }
+    
+    /**
+     * @return the number of candidate shapes rejected during the last
+     *         generation.
+     */
+    public int rejectedCount()
+    {
+        return rejectedCount;
+    }
+    
+    private DigitalShape3D samplePosition(ShapeSampler sampler)
+    {
+        double x = domain.minX() + random.nextDouble() * (domain.maxX() - domain.minX());
+        double y = domain.minY() + random.nextDouble() * (domain.maxY() - domain.minY());
+        double z = domain.minZ() + random.nextDouble() * (domain.maxZ() - domain.minZ());
+        return sampler.sample(random, x, y, z);
+    }
+    
+    private double domainVolume()
+    {
+        return (domain.maxX() - domain.minX()) * (domain.maxY() - domain.minY()) * (domain.maxZ() - domain.minZ());
+    }
+    
+    private static final double maxSize(Bounds3D bounds)
+    {
+        double size = Math.max(bounds.maxX() - bounds.minX(), bounds.maxY() - bounds.minY());
+        return Math.max(Math.max(size, bounds.maxZ() - bounds.minZ()), 1.0);
+    }
+    
+    private static final void checkFraction(double fraction)
+    {
+        if (!(fraction >= 0 && fraction <= 1))
+        {
+            throw new IllegalArgumentException("Volume fraction must be between 0 and 1, not " + fraction);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.random;
+
+import java.util.Random;
+
+import net.ijt.digishapes.DigitalShape3D;
+import net.ijt.digishapes.shapes3d.Ball3D;
+import net.ijt.digishapes.shapes3d.Capsule3D;
+import net.ijt.digishapes.shapes3d.Cuboid3D;
+import net.ijt.geometry.geom3d.Point3D;
+
+/**
+ * Creates random shapes centered at a given position, by drawing the shape
+ * parameters from a random number generator. Using a seeded generator makes
+ * the generated populations reproducible.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * ShapeSampler sampler = ShapeSampler.balls(5.0, 10.0);
+ * DigitalShape3D ball = sampler.sample(new Random(42), 50, 50, 50);
+ * }</pre>
+ * 
+ * @see PopulationGenerator3D
+ * 
+ * @author dlegland
+ */
+@FunctionalInterface
+public interface ShapeSampler
+{
+    // ===================================================================
+    // Static factories
+    
+    /**
+     * Creates a sampler for balls with a radius uniformly distributed
+     * between the specified bounds.
+     * 
+     * @param minRadius
+     *            the minimum radius of the balls
+     * @param maxRadius
+     *            the maximum radius of the balls
+     * @return a new sampler of balls
+     */
+    public static ShapeSampler balls(double minRadius, double maxRadius)
+    {
+        return (random, x, y, z) -> new Ball3D(x, y, z, uniform(random, minRadius, maxRadius));
+    }
+    
+    /**
+     * Creates a sampler for capsules with uniformly distributed length and
+     * radius, and a uniformly distributed orientation.
+     * 
+     * @param minLength
+     *            the minimum length of the capsules, without the end caps
+     * @param maxLength
+     *            the maximum length of the capsules, without the end caps
+     * @param minRadius
+     *            the minimum radius of the capsules
+     * @param maxRadius
+     *            the maximum radius of the capsules
+     * @return a new sampler of capsules
+     */
+    public static ShapeSampler capsules(double minLength, double maxLength, double minRadius, double maxRadius)
+    {
+        return (random, x, y, z) ->
+        {
+            double length = uniform(random, minLength, maxLength);
+            double radius = uniform(random, minRadius, maxRadius);
+            double[] angles = randomEulerAngles(random);
+            return new Capsule3D(new Point3D(x, y, z), length, radius, angles[0], angles[1], angles[2]);
+        };
+    }
+    
+    /**
+     * Creates a sampler for cuboids with side lengths uniformly distributed
+     * between the specified bounds, and a uniformly distributed orientation.
+     * 
+     * @param minSide
+     *            the minimum side length of the cuboids
+     * @param maxSide
+     *            the maximum side length of the cuboids
+     * @return a new sampler of cuboids
+     */
+    public static ShapeSampler cuboids(double minSide, double maxSide)
+    {
+        return (random, x, y, z) ->
+        {
+            double side1 = uniform(random, minSide, maxSide);
+            double side2 = uniform(random, minSide, maxSide);
+            double side3 = uniform(random, minSide, maxSide);
+            double[] angles = randomEulerAngles(random);
+            return new Cuboid3D(x, y, z, side1, side2, side3, angles[0], angles[1], angles[2]);
+        };
+    }
+    
+    /**
+     * Draws a value uniformly distributed between two bounds.
+     * 
+     * @param random
+     *            the random number generator
+     * @param min
+     *            the lower bound
+     * @param max
+     *            the upper bound
+     * @return a random value between the two bounds
+     */
+    public static double uniform(Random random, double min, double max)
+    {
+        return min + (max - min) * random.nextDouble();
+    }
+    
+    /**
+     * Draws three Euler angles, in degrees, corresponding to a rotation
+     * uniformly distributed over the space of rotations. The angles around
+     * the X and Z axes are uniform, and the angle around the Y axis follows
+     * the arc sine of a uniform value.
+     * 
+     * @param random
+     *            the random number generator
+     * @return the three Euler angles, in degrees, in XYZ order
+     */
+    public static double[] randomEulerAngles(Random random)
+    {
+        double angleX = 360.0 * random.nextDouble();
+        double angleY = Math.toDegrees(Math.asin(2.0 * random.nextDouble() - 1.0));
+        double angleZ = 360.0 * random.nextDouble();
+        return new double[] {angleX, angleY, angleZ};
+    }
+    
+    
+    // ===================================================================
+    // Interface methods
+    
+    /**
+     * Creates a new random shape centered at the specified position.
+     * 
+     * @param random
+     *            the random number generator used to draw the parameters
+     * @param x
+     *            the x-coordinate of the center of the shape
+     * @param y
+     *            the y-coordinate of the center of the shape
+     * @param z
+     *            the z-coordinate of the center of the shape
+     * @return a new random shape
+     */
+    public DigitalShape3D sample(Random random, double x, double y, double z);
+}
@@ -0,0 +1,142 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.random;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import net.ijt.geometry.geom3d.Bounds3D;
+
+/**
+ * A uniform grid of cubic cells indexed by a hash map, used to retrieve the
+ * particles whose bounds are close to a candidate particle.
+ * 
+ * Each particle is referenced by all the cells overlapped by its bounds.
+ * Queries visit the cells overlapped by the bounds of the candidate, and mark
+ * the visited particles with the index of the query, so that each neighbor is
+ * tested only once.
+ * 
+ * @author dlegland
+ */
+final class SpatialHash3D
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The side length of the cells.
+     */
+    final double cellSize;
+    
+    /**
+     * The lists of particles within each non empty cell, indexed by the key
+     * of the cell.
+     */
+    final HashMap<Long, ArrayList<Particle>> cells = new HashMap<>();
+    
+    /**
+     * The index of the last query.
+     */
+    int queryStamp = 0;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    SpatialHash3D(double cellSize)
+    {
+        if (!(cellSize > 0))
+        {
+            throw new IllegalArgumentException("Cell size must be positive, not " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Adds a particle to all the cells overlapped by its bounds.
+     * 
+     * @param particle
+     *            the particle to add
+     */
+    void insert(Particle particle)
+    {
+        Bounds3D bounds = particle.bounds;
+        int i0 = cellIndex(bounds.minX()), i1 = cellIndex(bounds.maxX());
+        int j0 = cellIndex(bounds.minY()), j1 = cellIndex(bounds.maxY());
+        int k0 = cellIndex(bounds.minZ()), k1 = cellIndex(bounds.maxZ());
+        for (int k = k0; k <= k1; k++)
+        {
+            for (int j = j0; j <= j1; j++)
+            {
+                for (int i = i0; i <= i1; i++)
+                {
+                    cells.computeIfAbsent(key(i, j, k), c -> new ArrayList<>()).add(particle);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Checks if the specified particle overlaps one of the particles already
+     * stored within the spatial hash.
+     * 
+     * @param particle
+     *            the candidate particle
+     * @return true if the particle overlaps a stored particle
+     */
+    boolean overlapsAny(Particle particle)
+    {
+        int stamp = ++queryStamp;
+        
+        Bounds3D bounds = particle.bounds;
+        int i0 = cellIndex(bounds.minX()), i1 = cellIndex(bounds.maxX());
+        int j0 = cellIndex(bounds.minY()), j1 = cellIndex(bounds.maxY());
+        int k0 = cellIndex(bounds.minZ()), k1 = cellIndex(bounds.maxZ());
+        for (int k = k0; k <= k1; k++)
+        {
+            for (int j = j0; j <= j1; j++)
+            {
+                for (int i = i0; i <= i1; i++)
+                {
+                    ArrayList<Particle> cell = cells.get(key(i, j, k));
+                    if (cell == null)
+                    {
+                        continue;
+                    }
+                    for (Particle neighbor : cell)
+                    {
+                        if (neighbor.stamp == stamp)
+                        {
+                            continue;
+                        }
+                        neighbor.stamp = stamp;
+                        if (particle.overlaps(neighbor))
+                        {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    
+    private int cellIndex(double coord)
+    {
+        return (int) Math.floor(coord / cellSize);
+    }
+    
+    /**
+     * Packs the indices of a cell into a single key, using 21 bits for each
+     * index.
+     */
+    private static final long key(int i, int j, int k)
+    {
+        return ((i & 0x1FFFFFL) << 42) | ((j & 0x1FFFFFL) << 21) | (k & 0x1FFFFFL);
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * Generation of random populations of shapes, for simulating granular or
+ * porous media with a controlled volume fraction.
+ * 
+ * @author dlegland
+ */
+package net.ijt.digishapes.random;
\ No newline at end of file
@@ -0,0 +1,23 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+/**
+ * The location of a block of voxels with respect to a shape.
+ * 
+ * @see BlockShape3D
+ * 
+ * @author dlegland
+ */
+public enum BlockLocation
+{
+    /** All the points of the block are within the shape. */
+    INSIDE,
+    
+    /** All the points of the block are outside of the shape. */
+    OUTSIDE,
+    
+    /** The block may contain points inside and outside of the shape. */
+    BOUNDARY;
+}
@@ -0,0 +1,47 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+import net.ijt.digishapes.DigitalShape3D;
+
+/**
+ * A 3D shape that can classify axis-aligned blocks as being fully inside,
+ * fully outside, or crossing the boundary of the shape. This allows the
+ * octree rasterizer to fill or skip large blocks of voxels without testing
+ * each voxel.
+ * 
+ * The classification must be conservative: a block can be classified as
+ * BOUNDARY even if it is fully inside or fully outside, but never as INSIDE
+ * or OUTSIDE if this is not the case.
+ * 
+ * The ShapeRasterizer class uses the octree rasterizer only for the shapes
+ * that do not also implement SpanShape3D, as filling the rows from their
+ * extents is faster. The octree rasterizer can still be called directly.
+ * 
+ * @see OctreeRasterizer3D
+ * 
+ * @author dlegland
+ */
+public interface BlockShape3D extends DigitalShape3D
+{
+    /**
+     * Classifies the axis-aligned block with the specified extent with
+     * respect to this shape.
+     * 
+     * @param xmin
+     *            the minimum x-coordinate of the block
+     * @param xmax
+     *            the maximum x-coordinate of the block
+     * @param ymin
+     *            the minimum y-coordinate of the block
+     * @param ymax
+     *            the maximum y-coordinate of the block
+     * @param zmin
+     *            the minimum z-coordinate of the block
+     * @param zmax
+     *            the maximum z-coordinate of the block
+     * @return the location of the block with respect to the shape
+     */
+    public BlockLocation classifyBlock(double xmin, double xmax, double ymin, double ymax, double zmin, double zmax);
+}
@@ -0,0 +1,253 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+/**
+ * Closed-form expressions of the area or volume of the intersection of simple
+ * shapes with axis-aligned regions, used by shapes to compute their exact
+ * coverage.
+ * 
+ * The disk and ball functions consider a shape centered at the origin, and
+ * the "corner" region of the points whose coordinates are all greater than or
+ * equal to given values. The area or volume of the intersection with a pixel
+ * or a voxel is obtained by combining the values for each corner of the pixel
+ * or voxel (inclusion-exclusion).
+ * 
+ * @see CoverageShape2D
+ * @see CoverageShape3D
+ * 
+ * @author dlegland
+ */
+public final class CoverageFunctions
+{
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private CoverageFunctions()
+    {
+    }
+    
+    /**
+     * Computes the length of the intersection of two intervals.
+     * 
+     * @param x0
+     *            the lower bound of the first interval
+     * @param x1
+     *            the upper bound of the first interval
+     * @param min
+     *            the lower bound of the second interval
+     * @param max
+     *            the upper bound of the second interval
+     * @return the length of the intersection, or 0 if the intervals are
+     *         disjoint
+     */
+    public static final double overlap(double x0, double x1, double min, double max)
+    {
+        return Math.max(Math.min(x1, max) - Math.max(x0, min), 0);
+    }
+    
+    /**
+     * Computes the area of the intersection of the disk centered at the
+     * origin with the region of the points (x, y) such that x &gt;= a and
+     * y &gt;= b.
+     * 
+     * @param r
+     *            the radius of the disk
+     * @param a
+     *            the minimum x-coordinate of the region
+     * @param b
+     *            the minimum y-coordinate of the region
+     * @return the area of the intersection
+     */
+    public static final double diskCorner(double r, double a, double b)
+    {
+        if (a >= r || b >= r)
+        {
+            return 0;
+        }
+        a = Math.max(a, -r);
+        b = Math.max(b, -r);
+        
+        // use symmetries to reduce to non negative coordinates:
+        // area{x >= a} = area{all x} - area{x >= -a}
+        if (a < 0)
+        {
+            return 2 * diskCorner(r, 0, b) - diskCorner(r, -a, b);
+        }
+        if (b < 0)
+        {
+            return 2 * diskCorner(r, a, 0) - diskCorner(r, a, -b);
+        }
+        
+        double r2 = r * r;
+        if (a * a + b * b >= r2)
+        {
+            return 0;
+        }
+        double angle = Math.PI / 2 - Math.asin(a / r) - Math.asin(b / r);
+        return 0.5 * r2 * angle - 0.5 * (a * Math.sqrt(r2 - a * a) + b * Math.sqrt(r2 - b * b)) + a * b;
+    }
+    
+    /**
+     * Computes the area of the intersection of the disk centered at the
+     * origin with the region [a, +inf) x [b0, b1].
+     * 
+     * @param r
+     *            the radius of the disk
+     * @param a
+     *            the minimum x-coordinate of the region
+     * @param b0
+     *            the minimum y-coordinate of the region
+     * @param b1
+     *            the maximum y-coordinate of the region
+     * @return the area of the intersection
+     */
+    public static final double diskBand(double r, double a, double b0, double b1)
+    {
+        return diskCorner(r, a, b0) - diskCorner(r, a, b1);
+    }
+    
+    /**
+     * Computes the volume of the intersection of the ball centered at the
+     * origin with the region of the points (x, y, z) such that x &gt;= a,
+     * y &gt;= b and z &gt;= c.
+     * 
+     * @param r
+     *            the radius of the ball
+     * @param a
+     *            the minimum x-coordinate of the region
+     * @param b
+     *            the minimum y-coordinate of the region
+     * @param c
+     *            the minimum z-coordinate of the region
+     * @return the volume of the intersection
+     */
+    public static final double ballCorner(double r, double a, double b, double c)
+    {
+        if (a >= r || b >= r || c >= r)
+        {
+            return 0;
+        }
+        a = Math.max(a, -r);
+        b = Math.max(b, -r);
+        c = Math.max(c, -r);
+        
+        // use symmetries to reduce to non negative coordinates
+        if (a < 0)
+        {
+            return 2 * ballCorner(r, 0, b, c) - ballCorner(r, -a, b, c);
+        }
+        if (b < 0)
+        {
+            return 2 * ballCorner(r, a, 0, c) - ballCorner(r, a, -b, c);
+        }
+        if (c < 0)
+        {
+            return 2 * ballCorner(r, a, b, 0) - ballCorner(r, a, b, -c);
+        }
+        return cornerVolume(r, a, b, c);
+    }
+    
+    /**
+     * Computes the volume of the intersection of the ball centered at the
+     * origin with the region [a, +inf) x [b0, b1] x [c0, c1].
+     * 
+     * @param r
+     *            the radius of the ball
+     * @param a
+     *            the minimum x-coordinate of the region
+     * @param b0
+     *            the minimum y-coordinate of the region
+     * @param b1
+     *            the maximum y-coordinate of the region
+     * @param c0
+     *            the minimum z-coordinate of the region
+     * @param c1
+     *            the maximum z-coordinate of the region
+     * @return the volume of the intersection
+     */
+    public static final double ballBar(double r, double a, double b0, double b1, double c0, double c1)
+    {
+        // use symmetries to work with non negative coordinates, so that each
+        // corner volume is computed without further decomposition
+        if (a < 0)
+        {
+            return 2 * ballBar(r, 0, b0, b1, c0, c1) - ballBar(r, -a, b0, b1, c0, c1);
+        }
+        if (b1 <= 0)
+        {
+            return ballBar(r, a, -b1, -b0, c0, c1);
+        }
+        if (b0 < 0)
+        {
+            return ballBar(r, a, 0, -b0, c0, c1) + ballBar(r, a, 0, b1, c0, c1);
+        }
+        if (c1 <= 0)
+        {
+            return ballBar(r, a, b0, b1, -c1, -c0);
+        }
+        if (c0 < 0)
+        {
+            return ballBar(r, a, b0, b1, 0, -c0) + ballBar(r, a, b0, b1, 0, c1);
+        }
+        return cornerVolume(r, a, b0, c0) - cornerVolume(r, a, b1, c0)
+                - cornerVolume(r, a, b0, c1) + cornerVolume(r, a, b1, c1);
+    }
+    
+    /**
+     * Computes the volume of the corner of the ball for non negative
+     * coordinates a, b and c.
+     */
+    private static final double cornerVolume(double r, double a, double b, double c)
+    {
+        // the section of the region by the plane at height z is the corner
+        // of a disk with radius sqrt(r^2 - z^2), non empty for z < zmax
+        double r2 = r * r;
+        double zmax2 = r2 - a * a - b * b;
+        if (zmax2 <= c * c)
+        {
+            return 0;
+        }
+        
+        // integrate the area of the disk corners between c and zmax. At zmax,
+        // the half-chords sqrt(r^2 - a^2 - z^2) and sqrt(r^2 - b^2 - z^2) are
+        // equal to b and a.
+        double zmax = Math.sqrt(zmax2);
+        double wa = Math.sqrt(Math.max(r2 - a * a - c * c, 0));
+        double wb = Math.sqrt(Math.max(r2 - b * b - c * c, 0));
+        return cornerPrimitive(r, a, b, zmax, b, a) - cornerPrimitive(r, a, b, c, wa, wb);
+    }
+    
+    /**
+     * Primitive with respect to z of the area of the corner x &gt;= a,
+     * y &gt;= b of the disk with radius sqrt(r^2 - z^2), for non negative a
+     * and b. The half-chords wa = sqrt(r^2 - a^2 - z^2) and
+     * wb = sqrt(r^2 - b^2 - z^2) are given by the caller, to avoid rounding
+     * errors at the upper bound of the integration.
+     */
+    private static final double cornerPrimitive(double r, double a, double b, double z, double wa, double wb)
+    {
+        double cubic = r * r * z - z * z * z / 3;
+        return 0.25 * Math.PI * cubic - sidePrimitive(r, a, z, wa, cubic) - sidePrimitive(r, b, z, wb, cubic) + a * b * z;
+    }
+    
+    /**
+     * Primitive of the terms of the corner area that depend on a single side
+     * of the corner: the half-chord term a * sqrt(r^2 - z^2 - a^2) / 2, and
+     * the angular term (r^2 - z^2) * asin(a / sqrt(r^2 - z^2)) / 2, the
+     * latter being integrated by parts. The value w is equal to
+     * sqrt(r^2 - a^2 - z^2).
+     */
+    private static final double sidePrimitive(double r, double a, double z, double w, double cubic)
+    {
+        if (a == 0)
+        {
+            return 0;
+        }
+        double t = Math.atan2(z, w);
+        double r2 = r * r;
+        return 0.5 * cubic * Math.atan2(a, w) + a * t * ((z * z + w * w) / 6 + r2 / 3) + a * z * w / 3
+                - r2 * r * Math.atan2(a * z, r * w) / 3;
+    }
+}
@@ -0,0 +1,810 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+import ij.ImageStack;
+import ij.process.ImageProcessor;
+import net.ijt.digishapes.DigitalShape2D;
+import net.ijt.digishapes.DigitalShape3D;
+import net.ijt.digishapes.util.DoubleDoubleDoublePredicate;
+import net.ijt.digishapes.util.FillProgress;
+import net.ijt.digishapes.util.PixelSink;
+import net.ijt.geometry.geom2d.Bounds2D;
+import net.ijt.geometry.geom3d.Bounds3D;
+
+/**
+ * Digitizes shapes as partial-area or partial-volume images: each pixel or
+ * voxel receives the fill value multiplied by the fraction of its extent
+ * covered by the shape.
+ * 
+ * The coverage is estimated by supersampling: each pixel is split into N x N
+ * sub-pixels (N x N x N sub-voxels in 3D), and the fraction is the proportion
+ * of sub-pixel centers within the shape. For shapes implementing SpanShape2D
+ * or SpanShape3D, the extent of the shape is computed for each row of
+ * sub-pixels (N rows per pixel row, N x N per voxel row). The pixels covered
+ * by all these extents are filled as a single span, the pixels outside of all
+ * extents are skipped, and only the remaining boundary pixels are counted.
+ * The counting is performed analytically from the extents, so the cost grows
+ * with the number of rows and of boundary pixels, and not with the number of
+ * sub-pixels within the shape. Other shapes are supersampled on each pixel
+ * of their bounds.
+ * 
+ * The shapes implementing CoverageShape2D or CoverageShape3D can also be
+ * rendered with their exact coverage using the fillExact methods. The
+ * interior of each row is filled as a span, and the coverage of the boundary
+ * pixels is computed in closed form by the shape, at a fixed cost per pixel.
+ * 
+ * Pixels with a null coverage are left unchanged, other pixels are
+ * overwritten. With N = 1, the result is the binary digitization obtained with
+ * the ShapeRasterizer class.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * ImageStack image = ImageStack.create(200, 200, 200, 32);
+ * // partial volume image of a ball, using 4 x 4 x 4 sub-voxels
+ * CoverageRasterizer.fill(image, new Ball3D(100.3, 100.2, 100.1, 50), 1.0, 4, 0);
+ * }</pre>
+ * 
+ * @see ShapeRasterizer
+ * @see CoverageShape2D
+ * @see CoverageShape3D
+ * 
+ * @author dlegland
+ */
+public class CoverageRasterizer
+{
+    /**
+     * The coverage below which the pixels are considered outside of the
+     * shape, to ignore the rounding errors of the exact coverage computation.
+     */
+    private static final double MIN_COVERAGE = 1e-12;
+    
+    // ===================================================================
+    // Planar shapes
+    
+    /**
+     * Fills the pixels of the image with the fraction of their area covered by
+     * the shape, multiplied by the fill value.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels fully within the shape
+     * @param samples
+     *            the number of samples along each direction of a pixel
+     */
+    public static final void fill(ImageProcessor image, DigitalShape2D shape, double value, int samples)
+    {
+        checkSamples(samples);
+        PixelSink sink = PixelSink.create(image, value);
+        int sizeX = image.getWidth();
+        int sizeY = image.getHeight();
+        if (shape instanceof SpanShape2D)
+        {
+            fill(sink, sizeX, sizeY, (SpanShape2D) shape, value, samples);
+        }
+        else
+        {
+            Bounds2D bounds = shape.bounds();
+            Bounds3D slab = new Bounds3D(bounds.minX(), bounds.maxX(), bounds.minY(), bounds.maxY(), 0, 1);
+            supersampleSlice(sink, sizeX, sizeY, slab, (x, y, z) -> shape.isInside(x, y), 0, value, samples, 1);
+        }
+    }
+    
+    /**
+     * Fills the pixels of a plane with the fraction of their area covered by
+     * the shape, using a pixel sink.
+     * 
+     * @param sink
+     *            the sink used to write the pixels
+     * @param sizeX
+     *            the width of the plane
+     * @param sizeY
+     *            the height of the plane
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels fully within the shape
+     * @param samples
+     *            the number of samples along each direction of a pixel
+     */
+    public static final void fill(PixelSink sink, int sizeX, int sizeY, SpanShape2D shape, double value, int samples)
+    {
+        checkSamples(samples);
+        Bounds2D bounds = shape.bounds();
+        int y0 = (int) Math.max(Math.floor(bounds.minY()), 0);
+        int y1 = (int) Math.min(Math.floor(bounds.maxY()), sizeY - 1);
+        
+        RowCoverage row = new RowCoverage(samples, samples);
+        double[] extent = new double[2];
+        for (int y = y0; y <= y1; y++)
+        {
+            for (int j = 0; j < samples; j++)
+            {
+                double ys = y + (j + 0.5) / samples;
+                if (shape.lineExtent(ys, extent))
+                {
+                    row.add(extent[0], extent[1]);
+                }
+            }
+            row.fill(sink, y, sizeX, value);
+        }
+    }
+    
+    /**
+     * Fills the pixels of the image with the exact fraction of their area
+     * covered by the shape, multiplied by the fill value.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels fully within the shape
+     */
+    public static final void fillExact(ImageProcessor image, CoverageShape2D shape, double value)
+    {
+        fillExact(PixelSink.create(image, value), image.getWidth(), image.getHeight(), shape, value);
+    }
+    
+    /**
+     * Fills the pixels of a plane with the exact fraction of their area
+     * covered by the shape, using a pixel sink.
+     * 
+     * @param sink
+     *            the sink used to write the pixels
+     * @param sizeX
+     *            the width of the plane
+     * @param sizeY
+     *            the height of the plane
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels fully within the shape
+     */
+    public static final void fillExact(PixelSink sink, int sizeX, int sizeY, CoverageShape2D shape, double value)
+    {
+        Bounds2D bounds = shape.bounds();
+        int y0 = (int) Math.max(Math.floor(bounds.minY()), 0);
+        int y1 = (int) Math.min(Math.floor(bounds.maxY()), sizeY - 1);
+        
+        double[] extent = new double[5];
+        double[] coverage = new double[sizeX];
+        for (int y = y0; y <= y1; y++)
+        {
+            if (shape.rowCoverageExtent(y, extent))
+            {
+                int row = y;
+                fillExactRow(sink, y, sizeX, extent, (x0, x1, cov) -> shape.rowCoverage(row, x0, x1, cov), coverage, value);
+            }
+        }
+    }
+    
+    
+    // ===================================================================
+    // 3D shapes
+    
+    /**
+     * Fills the voxels of the image with the fraction of their volume covered
+     * by the shape, multiplied by the fill value.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels fully within the shape
+     * @param samples
+     *            the number of samples along each direction of a voxel
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     */
+    public static final void fill(ImageStack image, DigitalShape3D shape, double value, int samples, int nThreads)
+    {
+        fill(image, shape, value, samples, nThreads, null);
+    }
+    
+    /**
+     * Fills the voxels of the image with the fraction of their volume covered
+     * by the shape, multiplied by the fill value. The progress is reported
+     * after each slice, and the fill can be canceled between two slices.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels fully within the shape
+     * @param samples
+     *            the number of samples along each direction of a voxel
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @param progress
+     *            the object notified of the progress, that can cancel the
+     *            fill, or null
+     * @throws CancellationException
+     *             if the fill was canceled by the progress object. Each slice
+     *             is then either completely filled or left unchanged.
+     */
+    public static final void fill(ImageStack image, DigitalShape3D shape, double value, int samples, int nThreads, FillProgress progress)
+    {
+        fill(z -> PixelSink.create(image, z, value), image.getWidth(), image.getHeight(), image.getSize(), shape, value, samples, nThreads, progress);
+    }
+    
+    /**
+     * Fills the voxels of a volume with the fraction of their volume covered
+     * by the shape, using one pixel sink for each slice, and by processing
+     * the slices with several threads.
+     * 
+     * @param sinks
+     *            the function that creates the sink of the slice with the
+     *            specified index, starting from 0
+     * @param sizeX
+     *            the width of the volume
+     * @param sizeY
+     *            the height of the volume
+     * @param sizeZ
+     *            the number of slices of the volume
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels fully within the shape
+     * @param samples
+     *            the number of samples along each direction of a voxel
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @param progress
+     *            the object notified of the progress, that can cancel the
+     *            fill, or null
+     * @throws CancellationException
+     *             if the fill was canceled by the progress object
+     */
+    public static final void fill(IntFunction<PixelSink> sinks, int sizeX, int sizeY, int sizeZ, DigitalShape3D shape, double value, int samples, int nThreads, FillProgress progress)
+    {
+        checkSamples(samples);
+        Bounds3D bounds = shape.bounds();
+        fillSlices(new SliceFiller(sinks, sizeX, sizeY, shape, bounds, value, samples), bounds, sizeZ, nThreads, progress);
+    }
+    
+    /**
+     * Fills the voxels of the image with the exact fraction of their volume
+     * covered by the shape, multiplied by the fill value.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize, that must provide exact coverage
+     * @param value
+     *            the value to assign to the voxels fully within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @throws IllegalArgumentException
+     *             if the shape does not provide exact coverage
+     */
+    public static final void fillExact(ImageStack image, CoverageShape3D shape, double value, int nThreads)
+    {
+        fillExact(image, shape, value, nThreads, null);
+    }
+    
+    /**
+     * Fills the voxels of the image with the exact fraction of their volume
+     * covered by the shape, multiplied by the fill value. The progress is
+     * reported after each slice, and the fill can be canceled between two
+     * slices.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize, that must provide exact coverage
+     * @param value
+     *            the value to assign to the voxels fully within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @param progress
+     *            the object notified of the progress, that can cancel the
+     *            fill, or null
+     * @throws IllegalArgumentException
+     *             if the shape does not provide exact coverage
+     * @throws CancellationException
+     *             if the fill was canceled by the progress object. Each slice
+     *             is then either completely filled or left unchanged.
+     */
+    public static final void fillExact(ImageStack image, CoverageShape3D shape, double value, int nThreads, FillProgress progress)
+    {
+        fillExact(z -> PixelSink.create(image, z, value), image.getWidth(), image.getHeight(), image.getSize(), shape, value, nThreads, progress);
+    }
+    
+    /**
+     * Fills the voxels of a volume with the exact fraction of their volume
+     * covered by the shape, using one pixel sink for each slice, and by
+     * processing the slices with several threads.
+     * 
+     * @param sinks
+     *            the function that creates the sink of the slice with the
+     *            specified index, starting from 0
+     * @param sizeX
+     *            the width of the volume
+     * @param sizeY
+     *            the height of the volume
+     * @param sizeZ
+     *            the number of slices of the volume
+     * @param shape
+     *            the shape to digitize, that must provide exact coverage
+     * @param value
+     *            the value to assign to the voxels fully within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @param progress
+     *            the object notified of the progress, that can cancel the
+     *            fill, or null
+     * @throws IllegalArgumentException
+     *             if the shape does not provide exact coverage
+     * @throws CancellationException
+     *             if the fill was canceled by the progress object
+     */
+    public static final void fillExact(IntFunction<PixelSink> sinks, int sizeX, int sizeY, int sizeZ, CoverageShape3D shape, double value, int nThreads, FillProgress progress)
+    {
+        if (!shape.hasExactCoverage())
+        {
+            throw new IllegalArgumentException("Shape does not provide exact coverage: " + shape);
+        }
+        Bounds3D bounds = shape.bounds();
+        fillSlices(new SliceFiller(sinks, sizeX, sizeY, shape, bounds, value, 0), bounds, sizeZ, nThreads, progress);
+    }
+    
+    /**
+     * Checks if exact coverage can be computed for the specified shape.
+     * 
+     * @param shape
+     *            the shape to check
+     * @return true if the shape implements CoverageShape3D and provides exact
+     *         coverage
+     */
+    public static final boolean hasExactCoverage(DigitalShape3D shape)
+    {
+        return shape instanceof CoverageShape3D && ((CoverageShape3D) shape).hasExactCoverage();
+    }
+    
+    
+    // ===================================================================
+    // Utility methods
+    
+    /**
+     * Fills the slices whose extent may intersect the bounds of the shape,
+     * with the specified number of threads.
+     */
+    private static final void fillSlices(SliceFiller filler, Bounds3D bounds, int sizeZ, int nThreads, FillProgress progress)
+    {
+        if (nThreads <= 0)
+        {
+            nThreads = Runtime.getRuntime().availableProcessors();
+        }
+        int z0 = (int) Math.max(Math.floor(bounds.minZ()), 0);
+        int z1 = (int) Math.min(Math.floor(bounds.maxZ()), sizeZ - 1);
+        SliceTracker tracker = progress != null ? new SliceTracker(progress, z1 - z0 + 1) : null;
+        
+        if (nThreads == 1)
+        {
+            for (int z = z0; z <= z1; z++)
+            {
+                if (tracker != null && !tracker.proceed())
+                {
+                    break;
+                }
+                filler.fillSlice(z);
+                if (tracker != null)
+                {
+                    tracker.slicesDone(1);
+                }
+            }
+        }
+        else if (z0 <= z1)
+        {
+            ForkJoinPool pool = new ForkJoinPool(nThreads);
+            try
+            {
+                pool.invoke(new FillSlicesTask(filler, z0, z1, tracker));
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+        
+        if (tracker != null)
+        {
+            tracker.checkCanceled();
+        }
+    }
+    
+    /**
+     * Fills a row of pixels from the coverage extent of the shape. The pixels
+     * within the inner extent are filled as a single span, and the coverage of
+     * the other pixels is computed by the shape.
+     */
+    private static final void fillExactRow(PixelSink sink, int y, int sizeX, double[] extent, RowFunction fun, double[] coverage, double value)
+    {
+        // pixels that intersect the shape
+        int x0 = (int) Math.min(Math.max(Math.floor(extent[0]), 0), sizeX);
+        int x1 = (int) Math.min(Math.max(Math.ceil(extent[3]) - 1, -1), sizeX - 1);
+        if (x0 > x1)
+        {
+            return;
+        }
+    
+        // pixels within the inner extent
+        int xi0 = (int) Math.min(Math.max(Math.ceil(extent[1]), x0), x1 + 1);
+        int xi1 = (int) Math.min(Math.max(Math.floor(extent[2]) - 1, xi0 - 1), x1);
+        if (xi0 <= xi1)
+        {
+            sink.setValue(value * extent[4]);
+            sink.fill(y, xi0, xi1);
+            fillExactPixels(sink, y, x0, xi0 - 1, fun, coverage, value);
+            fillExactPixels(sink, y, xi1 + 1, x1, fun, coverage, value);
+        }
+        else
+        {
+            fillExactPixels(sink, y, x0, x1, fun, coverage, value);
+        }
+    }
+    
+    /**
+     * Writes the coverage of the pixels x0 to x1 (inclusive) of a row.
+     */
+    private static final void fillExactPixels(PixelSink sink, int y, int x0, int x1, RowFunction fun, double[] coverage, double value)
+    {
+        if (x0 > x1)
+        {
+            return;
+        }
+        fun.compute(x0, x1, coverage);
+        for (int x = x0; x <= x1; x++)
+        {
+            double c = Math.min(coverage[x - x0], 1.0);
+            if (c > MIN_COVERAGE)
+            {
+                sink.setValue(value * c);
+                sink.set(x, y);
+            }
+        }
+    }
+    
+    private static final void checkSamples(int samples)
+    {
+        if (samples < 1)
+        {
+            throw new IllegalArgumentException("Number of samples must be at least 1, not " + samples);
+        }
+    }
+    
+    /**
+     * Computes the coverage of each voxel of the slice within the bounds by
+     * testing each sub-voxel center with the predicate.
+     */
+    private static final void supersampleSlice(PixelSink sink, int sizeX, int sizeY, Bounds3D bounds,
+            DoubleDoubleDoublePredicate fun, int z, double value, int samples, int samplesZ)
+    {
+        int x0 = (int) Math.max(Math.floor(bounds.minX()), 0);
+        int x1 = (int) Math.min(Math.floor(bounds.maxX()), sizeX - 1);
+        int y0 = (int) Math.max(Math.floor(bounds.minY()), 0);
+        int y1 = (int) Math.min(Math.floor(bounds.maxY()), sizeY - 1);
+        double total = (double) samples * samples * samplesZ;
+        
+        for (int y = y0; y <= y1; y++)
+        {
+            for (int x = x0; x <= x1; x++)
+            {
+                int count = 0;
+                for (int k = 0; k < samplesZ; k++)
+                {
+                    double zs = z + (k + 0.5) / samplesZ;
+                    for (int j = 0; j < samples; j++)
+                    {
+                        double ys = y + (j + 0.5) / samples;
+                        for (int i = 0; i < samples; i++)
+                        {
+                            if (fun.test(x + (i + 0.5) / samples, ys, zs))
+                            {
+                                count++;
+                            }
+                        }
+                    }
+                }
+                if (count > 0)
+                {
+                    sink.setValue(value * count / total);
+                    sink.set(x, y);
+                }
+            }
+        }
+    }
+    
+    
+    // ===================================================================
+    // Inner classes
+    
+    /**
+     * Computes the coverage of a range of pixels within a row.
+     */
+    @FunctionalInterface
+    private interface RowFunction
+    {
+        void compute(int x0, int x1, double[] coverage);
+    }
+    
+    /**
+     * Collects the extents of the shape along the sub-rows of a row of
+     * pixels, and fills the row from these extents.
+     */
+    private static final class RowCoverage
+    {
+        /**
+         * The number of samples along the row within each pixel.
+         */
+        final int samples;
+        
+        /**
+         * The number of sub-rows within the row of pixels.
+         */
+        final int rowCount;
+        
+        /**
+         * The extents of the non-empty sub-rows.
+         */
+        final double[] xmin, xmax;
+        
+        /**
+         * The number of non-empty sub-rows added since the last fill.
+         */
+        int count = 0;
+        
+        RowCoverage(int samples, int rowCount)
+        {
+            this.samples = samples;
+            this.rowCount = rowCount;
+            this.xmin = new double[rowCount];
+            this.xmax = new double[rowCount];
+        }
+        
+        void add(double x0, double x1)
+        {
+            xmin[count] = x0;
+            xmax[count] = x1;
+            count++;
+        }
+        
+        /**
+         * Fills the row from the extents added since the last call, and
+         * clears the extents.
+         */
+        void fill(PixelSink sink, int y, int sizeX, double value)
+        {
+            if (count == 0)
+            {
+                return;
+            }
+            
+            // union and intersection of the extents
+            double umin = xmin[0], umax = xmax[0];
+            double imin = xmin[0], imax = xmax[0];
+            for (int r = 1; r < count; r++)
+            {
+                umin = Math.min(umin, xmin[r]);
+                umax = Math.max(umax, xmax[r]);
+                imin = Math.max(imin, xmin[r]);
+                imax = Math.min(imax, xmax[r]);
+            }
+            
+            // pixels that contain a sample within the union of the extents
+            double h = 0.5 / samples;
+            int x0 = (int) Math.min(Math.max(Math.ceil(umin - 1 + h), 0), sizeX);
+            int x1 = (int) Math.min(Math.max(Math.floor(umax - h), -1), sizeX - 1);
+            
+            // pixels whose samples are all within each extent
+            int xi0 = x1 + 1;
+            int xi1 = x1;
+            if (count == rowCount)
+            {
+                int xa = (int) Math.min(Math.max(Math.ceil(imin - h), x0), x1 + 1);
+                int xb = (int) Math.min(Math.max(Math.floor(imax - 1 + h), x0 - 1), x1);
+                if (xa <= xb)
+                {
+                    xi0 = xa;
+                    xi1 = xb;
+                    sink.setValue(value);
+                    sink.fill(y, xi0, xi1);
+                }
+            }
+            
+            // count the samples of the boundary pixels
+            double total = (double) samples * rowCount;
+            for (int x = x0; x <= x1; x++)
+            {
+                if (x == xi0)
+                {
+                    x = xi1;
+                    continue;
+                }
+                int n = sampleCount(x);
+                if (n > 0)
+                {
+                    sink.setValue(value * n / total);
+                    sink.set(x, y);
+                }
+            }
+            
+            count = 0;
+        }
+        
+        /**
+         * Counts the samples of the pixel that are within the extents. The
+         * samples of the pixel x are located at x + (i + 0.5) / samples.
+         */
+        private int sampleCount(int x)
+        {
+            int n = 0;
+            for (int r = 0; r < count; r++)
+            {
+                double i0 = Math.max(Math.ceil((xmin[r] - x) * samples - 0.5), 0);
+                double i1 = Math.min(Math.floor((xmax[r] - x) * samples - 0.5), samples - 1);
+                if (i0 <= i1)
+                {
+                    n += (int) (i1 - i0) + 1;
+                }
+            }
+            return n;
+        }
+    }
+    
+    /**
+     * Computes the coverage of the voxels of a slice, keeping the parameters
+     * shared by all the slices.
+     */
+    private static final class SliceFiller
+    {
+        final IntFunction<PixelSink> sinks;
+        final int sizeX, sizeY;
+        final DigitalShape3D shape;
+        final Bounds3D bounds;
+        final double value;
+        
+        /**
+         * The number of samples along each direction of a voxel, or 0 for
+         * computing the exact coverage.
+         */
+        final int samples;
+        
+        SliceFiller(IntFunction<PixelSink> sinks, int sizeX, int sizeY, DigitalShape3D shape, Bounds3D bounds, double value, int samples)
+        {
+            this.sinks = sinks;
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.shape = shape;
+            this.bounds = bounds;
+            this.value = value;
+            this.samples = samples;
+        }
+        
+        void fillSlice(int z)
+        {
+            PixelSink sink = sinks.apply(z);
+            if (samples == 0)
+            {
+                fillExactSlice(sink, z);
+                return;
+            }
+            if (!(shape instanceof SpanShape3D))
+            {
+                supersampleSlice(sink, sizeX, sizeY, bounds, shape::isInside, z, value, samples, samples);
+                return;
+            }
+            
+            SpanShape3D spanShape = (SpanShape3D) shape;
+            int y0 = (int) Math.max(Math.floor(bounds.minY()), 0);
+            int y1 = (int) Math.min(Math.floor(bounds.maxY()), sizeY - 1);
+            
+            RowCoverage row = new RowCoverage(samples, samples * samples);
+            double[] extent = new double[2];
+            for (int y = y0; y <= y1; y++)
+            {
+                for (int k = 0; k < samples; k++)
+                {
+                    double zs = z + (k + 0.5) / samples;
+                    for (int j = 0; j < samples; j++)
+                    {
+                        double ys = y + (j + 0.5) / samples;
+                        if (spanShape.lineExtent(ys, zs, extent))
+                        {
+                            row.add(extent[0], extent[1]);
+                        }
+                    }
+                }
+                row.fill(sink, y, sizeX, value);
+            }
+        }
+        
+        private void fillExactSlice(PixelSink sink, int z)
+        {
+            CoverageShape3D coverageShape = (CoverageShape3D) shape;
+            int y0 = (int) Math.max(Math.floor(bounds.minY()), 0);
+            int y1 = (int) Math.min(Math.floor(bounds.maxY()), sizeY - 1);
+            
+            double[] extent = new double[5];
+            double[] coverage = new double[sizeX];
+            for (int y = y0; y <= y1; y++)
+            {
+                if (coverageShape.rowCoverageExtent(y, z, extent))
+                {
+                    int row = y;
+                    fillExactRow(sink, y, sizeX, extent, (x0, x1, cov) -> coverageShape.rowCoverage(row, z, x0, x1, cov), coverage, value);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Fills a range of slices, by recursively splitting the range into two
+     * halves until a single slice remains.
+     */
+    private static final class FillSlicesTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        
+        final SliceFiller filler;
+        
+        /**
+         * The indices of the first and last slices to fill (inclusive).
+         */
+        final int z0, z1;
+        
+        /**
+         * The tracker of the processed slices, or null.
+         */
+        final SliceTracker tracker;
+        
+        FillSlicesTask(SliceFiller filler, int z0, int z1, SliceTracker tracker)
+        {
+            this.filler = filler;
+            this.z0 = z0;
+            this.z1 = z1;
+            this.tracker = tracker;
+        }
+        
+        @Override
+        protected void compute()
+        {
+            if (z0 == z1)
+            {
+                if (tracker != null && !tracker.proceed())
+                {
+                    return;
+                }
+                filler.fillSlice(z0);
+                if (tracker != null)
+                {
+                    tracker.slicesDone(1);
+                }
+                return;
+            }
+            
+            int zm = (z0 + z1) >>> 1;
+            invokeAll(new FillSlicesTask(filler, z0, zm, tracker),
+                    new FillSlicesTask(filler, zm + 1, z1, tracker));
+        }
+    }
+}
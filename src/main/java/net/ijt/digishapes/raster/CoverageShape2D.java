@@ -0,0 +1,65 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+import net.ijt.digishapes.DigitalShape2D;
+
+/**
+ * A planar shape that can compute exactly the area of its intersection with
+ * the pixels of a row. This allows the coverage rasterizer to render partial
+ * area images without supersampling: the pixels fully within the shape are
+ * filled as a single span, and the covered fraction is computed only for the
+ * boundary pixels.
+ * 
+ * The pixel with indices (x, y) corresponds to the square
+ * [x, x + 1] x [y, y + 1].
+ * 
+ * @see CoverageRasterizer
+ * @see CoverageFunctions
+ * 
+ * @author dlegland
+ */
+public interface CoverageShape2D extends DigitalShape2D
+{
+    /**
+     * Computes the extent of the intersection of the shape with the band
+     * [y, y + 1] corresponding to a row of pixels. The extent array receives
+     * five values:
+     * <ol>
+     * <li>the minimum x-coordinate of the intersection,</li>
+     * <li>the minimum x-coordinate of the inner part of the intersection,</li>
+     * <li>the maximum x-coordinate of the inner part of the intersection,</li>
+     * <li>the maximum x-coordinate of the intersection,</li>
+     * <li>the fraction of the area covered by the shape for the pixels within
+     * the inner part.</li>
+     * </ol>
+     * All the pixels of the row located within the inner part are covered
+     * with the same fraction. The inner part may be empty.
+     * 
+     * @param y
+     *            the index of the row
+     * @param extent
+     *            the array of five values to update
+     * @return true if the band intersects the shape
+     */
+    public boolean rowCoverageExtent(int y, double[] extent);
+    
+    /**
+     * Computes the fraction of the area of the pixels x0 to x1 (inclusive) of
+     * the row y that is covered by the shape. Computing the fractions of
+     * consecutive pixels in a single call allows sharing the computations at
+     * their common edges.
+     * 
+     * @param y
+     *            the index of the row
+     * @param x0
+     *            the index of the first pixel
+     * @param x1
+     *            the index of the last pixel
+     * @param coverage
+     *            the array receiving the fraction of the pixel x0 + i at
+     *            index i
+     */
+    public void rowCoverage(int y, int x0, int x1, double[] coverage);
+}
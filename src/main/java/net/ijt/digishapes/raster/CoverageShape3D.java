@@ -0,0 +1,78 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+import net.ijt.digishapes.DigitalShape3D;
+
+/**
+ * A 3D shape that can compute exactly the volume of its intersection with
+ * the voxels of a row. This allows the coverage rasterizer to render partial
+ * volume images without supersampling: the voxels fully within the shape are
+ * filled as a single span, and the covered fraction is computed only for the
+ * boundary voxels.
+ * 
+ * The voxel with indices (x, y, z) corresponds to the cube
+ * [x, x + 1] x [y, y + 1] x [z, z + 1].
+ * 
+ * Some shapes provide exact coverage only for specific parameters, for
+ * example when they are aligned with the axes. The coverage methods must be
+ * called only when the hasExactCoverage method returns true.
+ * 
+ * @see CoverageRasterizer
+ * @see CoverageFunctions
+ * 
+ * @author dlegland
+ */
+public interface CoverageShape3D extends DigitalShape3D
+{
+    /**
+     * @return true if the coverage methods of this shape can be used.
+     */
+    public boolean hasExactCoverage();
+    
+    /**
+     * Computes the extent of the intersection of the shape with the bar
+     * [y, y + 1] x [z, z + 1] corresponding to a row of voxels. The extent
+     * array receives five values:
+     * <ol>
+     * <li>the minimum x-coordinate of the intersection,</li>
+     * <li>the minimum x-coordinate of the inner part of the intersection,</li>
+     * <li>the maximum x-coordinate of the inner part of the intersection,</li>
+     * <li>the maximum x-coordinate of the intersection,</li>
+     * <li>the fraction of the volume covered by the shape for the voxels
+     * within the inner part.</li>
+     * </ol>
+     * All the voxels of the row located within the inner part are covered
+     * with the same fraction. The inner part may be empty.
+     * 
+     * @param y
+     *            the y-index of the row
+     * @param z
+     *            the z-index of the row
+     * @param extent
+     *            the array of five values to update
+     * @return true if the bar intersects the shape
+     */
+    public boolean rowCoverageExtent(int y, int z, double[] extent);
+    
+    /**
+     * Computes the fraction of the volume of the voxels x0 to x1 (inclusive)
+     * of the row (y, z) that is covered by the shape. Computing the fractions
+     * of consecutive voxels in a single call allows sharing the computations
+     * at their common faces.
+     * 
+     * @param y
+     *            the y-index of the row
+     * @param z
+     *            the z-index of the row
+     * @param x0
+     *            the index of the first voxel
+     * @param x1
+     *            the index of the last voxel
+     * @param coverage
+     *            the array receiving the fraction of the voxel x0 + i at
+     *            index i
+     */
+    public void rowCoverage(int y, int z, int x0, int x1, double[] coverage);
+}
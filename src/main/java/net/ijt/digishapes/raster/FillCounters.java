@@ -0,0 +1,192 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import net.ijt.digishapes.DigitalShape2D;
+import net.ijt.digishapes.DigitalShape3D;
+import net.ijt.digishapes.util.DoubleDoubleDoublePredicate;
+import net.ijt.digishapes.util.DoubleDoublePredicate;
+import net.ijt.digishapes.util.PixelSink;
+import net.ijt.geometry.geom2d.Bounds2D;
+import net.ijt.geometry.geom3d.Bounds3D;
+
+/**
+ * Counts the calls to the isInside method of a shape, and the pixels written
+ * by a fill, by wrapping the shape and the pixel sinks used by the
+ * rasterizers. The counters can be updated concurrently by several threads.
+ * 
+ * @see ShapeRasterizer#measure(ij.ImageStack, DigitalShape3D, double, int)
+ * 
+ * @author dlegland
+ */
+class FillCounters
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The number of calls to the isInside method of the shape.
+     */
+    final LongAdder tested = new LongAdder();
+    
+    /**
+     * The number of pixels or voxels written into the image.
+     */
+    final LongAdder written = new LongAdder();
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Wraps a planar shape to count the calls to its isInside method.
+     */
+    SpanShape2D wrap(SpanShape2D shape)
+    {
+        return new SpanShape2D()
+        {
+            @Override
+            public Bounds2D bounds()
+            {
+                return shape.bounds();
+            }
+            
+            @Override
+            public boolean isInside(double x, double y)
+            {
+                tested.increment();
+                return shape.isInside(x, y);
+            }
+            
+            @Override
+            public boolean lineExtent(double y, double[] extent)
+            {
+                return shape.lineExtent(y, extent);
+            }
+        };
+    }
+    
+    /**
+     * Wraps a 3D shape to count the calls to its isInside method.
+     */
+    SpanShape3D wrap(SpanShape3D shape)
+    {
+        return new SpanShape3D()
+        {
+            @Override
+            public Bounds3D bounds()
+            {
+                return shape.bounds();
+            }
+            
+            @Override
+            public boolean isInside(double x, double y, double z)
+            {
+                tested.increment();
+                return shape.isInside(x, y, z);
+            }
+            
+            @Override
+            public boolean lineExtent(double y, double z, double[] extent)
+            {
+                return shape.lineExtent(y, z, extent);
+            }
+        };
+    }
+    
+    /**
+     * Wraps a 3D shape to count the calls to its isInside method.
+     */
+    BlockShape3D wrap(BlockShape3D shape)
+    {
+        return new BlockShape3D()
+        {
+            @Override
+            public Bounds3D bounds()
+            {
+                return shape.bounds();
+            }
+            
+            @Override
+            public boolean isInside(double x, double y, double z)
+            {
+                tested.increment();
+                return shape.isInside(x, y, z);
+            }
+            
+            @Override
+            public BlockLocation classifyBlock(double xmin, double xmax, double ymin, double ymax, double zmin, double zmax)
+            {
+                return shape.classifyBlock(xmin, xmax, ymin, ymax, zmin, zmax);
+            }
+        };
+    }
+    
+    /**
+     * Wraps a pixel sink to count the pixels it writes.
+     */
+    PixelSink wrap(PixelSink sink)
+    {
+        return new PixelSink()
+        {
+            @Override
+            public void setValue(double value)
+            {
+                sink.setValue(value);
+            }
+            
+            @Override
+            public void set(int x, int y)
+            {
+                written.increment();
+                sink.set(x, y);
+            }
+            
+            @Override
+            public void fill(int y, int x0, int x1)
+            {
+                written.add(x1 - x0 + 1);
+                sink.fill(y, x0, x1);
+            }
+        };
+    }
+    
+    /**
+     * Creates a predicate that tests if a point is within a planar shape,
+     * and counts the tests and the points within the shape. The points within
+     * the shape are counted as written, as ImageUtils writes a pixel for each
+     * point matching the predicate.
+     */
+    DoubleDoublePredicate predicate(DigitalShape2D shape)
+    {
+        return (double x, double y) -> {
+            tested.increment();
+            boolean inside = shape.isInside(x, y);
+            if (inside)
+            {
+                written.increment();
+            }
+            return inside;
+        };
+    }
+    
+    /**
+     * Creates a predicate that tests if a point is within a 3D shape, and
+     * counts the tests and the points within the shape.
+     */
+    DoubleDoubleDoublePredicate predicate(DigitalShape3D shape)
+    {
+        return (double x, double y, double z) -> {
+            tested.increment();
+            boolean inside = shape.isInside(x, y, z);
+            if (inside)
+            {
+                written.increment();
+            }
+            return inside;
+        };
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+/**
+ * Static methods for computing the intersection of a line with simple
+ * regions, used by shapes to compute their line extents.
+ * 
+ * All methods work on an "extent" array containing the minimum and maximum
+ * values of the parameter along the line. The array is updated in place, and
+ * the methods return true if the resulting extent is not empty.
+ * 
+ * As the extents are used as initial guesses by the rasterizers, they are
+ * slightly enlarged by a relative tolerance. This ensures that rounding errors
+ * do not discard a line that touches the boundary of the region.
+ * 
+ * @author dlegland
+ */
+public final class LineExtents
+{
+    /**
+     * The relative tolerance used to enlarge the extents.
+     */
+    private static final double EPSILON = 1e-12;
+    
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private LineExtents()
+    {
+    }
+    
+    /**
+     * Initializes the extent to the whole line.
+     * 
+     * @param extent
+     *            the extent to initialize
+     */
+    public static final void setInfinite(double[] extent)
+    {
+        extent[0] = Double.NEGATIVE_INFINITY;
+        extent[1] = Double.POSITIVE_INFINITY;
+    }
+    
+    /**
+     * Restricts the extent to the parameters t such that
+     * <code>|a * t + b| &lt;= halfWidth</code>. This corresponds to the
+     * intersection of the line with a slab bounded by two parallel planes.
+     * 
+     * @param a
+     *            the coefficient of the parameter
+     * @param b
+     *            the constant term
+     * @param halfWidth
+     *            the half-width of the slab
+     * @param extent
+     *            the extent to update
+     * @return true if the updated extent is not empty
+     */
+    public static final boolean clipSlab(double a, double b, double halfWidth, double[] extent)
+    {
+        halfWidth += EPSILON * (halfWidth + Math.abs(b));
+        if (a == 0)
+        {
+            // line is parallel to the slab
+            if (Math.abs(b) > halfWidth)
+            {
+                return false;
+            }
+            return extent[0] <= extent[1];
+        }
+        
+        double t0 = (-halfWidth - b) / a;
+        double t1 = (halfWidth - b) / a;
+        if (t0 > t1)
+        {
+            double tmp = t0;
+            t0 = t1;
+            t1 = tmp;
+        }
+        extent[0] = Math.max(extent[0], t0);
+        extent[1] = Math.min(extent[1], t1);
+        return extent[0] <= extent[1];
+    }
+    
+    /**
+     * Computes the parameters t such that
+     * <code>a * t * t + b * t + c &lt;= 1</code>, when <code>a</code> is
+     * positive or zero. This corresponds to the intersection of a line with a
+     * region bounded by a quadric surface (ellipse, ellipsoid, cylinder...),
+     * expressed by its quadratic form. The coefficient <code>a</code> is zero
+     * when the line is parallel to the axis of a cylinder.
+     * 
+     * @param a
+     *            the quadratic coefficient, that must be positive or zero
+     * @param b
+     *            the linear coefficient
+     * @param c
+     *            the constant coefficient
+     * @param extent
+     *            the extent used to store the result
+     * @return true if the extent is not empty
+     */
+    public static final boolean clipQuadric(double a, double b, double c, double[] extent)
+    {
+        if (a == 0)
+        {
+            // linear inequality
+            setInfinite(extent);
+            return clipHalfLine(b, c - 1 - EPSILON * (1 + Math.abs(c)), extent);
+        }
+        
+        double delta = b * b - 4 * a * (c - 1 - EPSILON);
+        if (delta < 0)
+        {
+            return false;
+        }
+        
+        double sqrtDelta = Math.sqrt(delta);
+        extent[0] = (-b - sqrtDelta) / (2 * a);
+        extent[1] = (-b + sqrtDelta) / (2 * a);
+        return true;
+    }
+    
+    /**
+     * Restricts the extent to the parameters t such that
+     * <code>a * t + b &lt;= 0</code>.
+     */
+    private static final boolean clipHalfLine(double a, double b, double[] extent)
+    {
+        if (a == 0)
+        {
+            return b <= 0 && extent[0] <= extent[1];
+        }
+        
+        double t = -b / a;
+        if (a > 0)
+        {
+            extent[1] = Math.min(extent[1], t);
+        }
+        else
+        {
+            extent[0] = Math.max(extent[0], t);
+        }
+        return extent[0] <= extent[1];
+    }
+    
+    /**
+     * Computes the parameters t such that
+     * <code>(t - center)^2 + dist2 &lt;= radius^2</code>. This corresponds to
+     * the intersection of a line with a disk or a ball, where
+     * <code>dist2</code> is the squared distance from the center of the disk
+     * to the line.
+     * 
+     * @param center
+     *            the projection of the center on the line
+     * @param dist2
+     *            the squared distance between the center and the line
+     * @param radius
+     *            the radius of the disk or of the ball
+     * @param extent
+     *            the extent used to store the result
+     * @return true if the extent is not empty
+     */
+    public static final boolean clipDisk(double center, double dist2, double radius, double[] extent)
+    {
+        double h2 = radius * radius - dist2;
+        if (h2 < 0)
+        {
+            if (h2 < -EPSILON * (radius * radius + dist2))
+            {
+                return false;
+            }
+            h2 = 0;
+        }
+        
+        double h = Math.sqrt(h2);
+        extent[0] = center - h;
+        extent[1] = center + h;
+        return true;
+    }
+}
@@ -0,0 +1,256 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.IntFunction;
+
+import ij.ImageStack;
+import net.ijt.digishapes.util.FillProgress;
+import net.ijt.digishapes.util.PixelSink;
+import net.ijt.geometry.geom3d.Bounds3D;
+
+/**
+ * Digitizes 3D shapes by recursive subdivision of their bounding box.
+ * 
+ * Each block of voxels is classified with respect to the shape: blocks fully
+ * inside the shape are filled row by row, blocks fully outside are skipped,
+ * and blocks crossing the boundary are split into up to eight sub-blocks. When
+ * a boundary block becomes small enough, the centers of its voxels are tested
+ * individually. The number of isInside evaluations is therefore proportional
+ * to the surface of the shape rather than to its volume.
+ * 
+ * The block given to the shape is the box containing the centers of the
+ * voxels, enlarged by a small margin, so that the classification is not
+ * affected by the rounding errors of the isInside method. The result is
+ * identical to testing each voxel center at coordinates
+ * (x + 0.5, y + 0.5, z + 0.5).
+ * 
+ * @see BlockShape3D
+ * 
+ * @author dlegland
+ */
+public class OctreeRasterizer3D
+{
+    /**
+     * The maximum number of voxels within a boundary block for testing voxels
+     * individually.
+     */
+    private static final int MAX_LEAF_VOXELS = 64;
+    
+    /**
+     * The margin added to the blocks given to the shapes, in voxel units.
+     */
+    private static final double MARGIN = 1e-6;
+    
+    /**
+     * The number of slices of the slabs processed between two progress
+     * reports.
+     */
+    private static final int SLAB_DEPTH = 16;
+    
+    /**
+     * Fills the voxels of the image whose centers are within the specified
+     * shape.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     */
+    public static final void fill(ImageStack image, BlockShape3D shape, double value)
+    {
+        fill(z -> PixelSink.create(image, z, value), image.getWidth(), image.getHeight(), image.getSize(), shape);
+    }
+    
+    /**
+     * Fills the voxels of a volume whose centers are within the specified
+     * shape, using one pixel sink for each slice.
+     * 
+     * @param sinks
+     *            the function that creates the sink of the slice with the
+     *            specified index, starting from 0
+     * @param sizeX
+     *            the width of the volume
+     * @param sizeY
+     *            the height of the volume
+     * @param sizeZ
+     *            the number of slices of the volume
+     * @param shape
+     *            the shape to digitize
+     */
+    public static final void fill(IntFunction<PixelSink> sinks, int sizeX, int sizeY, int sizeZ, BlockShape3D shape)
+    {
+        fill(sinks, sizeX, sizeY, sizeZ, shape, null);
+    }
+    
+    /**
+     * Fills the voxels of a volume whose centers are within the specified
+     * shape, using one pixel sink for each slice. When a progress object is
+     * specified, the volume is processed by slabs of slices, and the progress
+     * is reported after each slab.
+     * 
+     * @param sinks
+     *            the function that creates the sink of the slice with the
+     *            specified index, starting from 0
+     * @param sizeX
+     *            the width of the volume
+     * @param sizeY
+     *            the height of the volume
+     * @param sizeZ
+     *            the number of slices of the volume
+     * @param shape
+     *            the shape to digitize
+     * @param progress
+     *            the object notified of the progress, that can cancel the
+     *            fill, or null
+     * @throws CancellationException
+     *             if the fill was canceled by the progress object. Each slice
+     *             is then either completely filled or left unchanged.
+     */
+    public static final void fill(IntFunction<PixelSink> sinks, int sizeX, int sizeY, int sizeZ, BlockShape3D shape, FillProgress progress)
+    {
+        // voxels whose center may be within the bounds, keeping a margin of
+        // one voxel for rounding errors
+        Bounds3D bounds = shape.bounds();
+        int x0 = (int) Math.max(Math.floor(bounds.minX()) - 1, 0);
+        int x1 = (int) Math.min(Math.ceil(bounds.maxX()), sizeX - 1);
+        int y0 = (int) Math.max(Math.floor(bounds.minY()) - 1, 0);
+        int y1 = (int) Math.min(Math.ceil(bounds.maxY()), sizeY - 1);
+        int z0 = (int) Math.max(Math.floor(bounds.minZ()) - 1, 0);
+        int z1 = (int) Math.min(Math.ceil(bounds.maxZ()), sizeZ - 1);
+        if (x0 > x1 || y0 > y1 || z0 > z1)
+        {
+            return;
+        }
+        
+        PixelSink[] sliceSinks = new PixelSink[z1 - z0 + 1];
+        for (int z = z0; z <= z1; z++)
+        {
+            sliceSinks[z - z0] = sinks.apply(z);
+        }
+        
+        BlockFiller filler = new BlockFiller(shape, sliceSinks, z0);
+        if (progress == null)
+        {
+            filler.fillBlock(x0, x1, y0, y1, z0, z1);
+            return;
+        }
+        
+        SliceTracker tracker = new SliceTracker(progress, z1 - z0 + 1);
+        for (int za = z0; za <= z1; za += SLAB_DEPTH)
+        {
+            if (!tracker.proceed())
+            {
+                break;
+            }
+            int zb = Math.min(za + SLAB_DEPTH - 1, z1);
+            filler.fillBlock(x0, x1, y0, y1, za, zb);
+            tracker.slicesDone(zb - za + 1);
+        }
+        tracker.checkCanceled();
+    }
+    
+    /**
+     * Keeps the shape and the pixel sinks of the slices during the recursive
+     * processing of the blocks.
+     */
+    private static final class BlockFiller
+    {
+        final BlockShape3D shape;
+        
+        /**
+         * The sinks of the slices, starting from the slice with index z0.
+         */
+        final PixelSink[] sinks;
+        
+        final int z0;
+        
+        BlockFiller(BlockShape3D shape, PixelSink[] sinks, int z0)
+        {
+            this.shape = shape;
+            this.sinks = sinks;
+            this.z0 = z0;
+        }
+        
+        /**
+         * Fills the voxels within the shape for the block of voxels
+         * [x0, x1] x [y0, y1] x [z0, z1] (inclusive).
+         */
+        void fillBlock(int x0, int x1, int y0, int y1, int z0, int z1)
+        {
+            BlockLocation loc = shape.classifyBlock(
+                    x0 + 0.5 - MARGIN, x1 + 0.5 + MARGIN,
+                    y0 + 0.5 - MARGIN, y1 + 0.5 + MARGIN,
+                    z0 + 0.5 - MARGIN, z1 + 0.5 + MARGIN);
+            if (loc == BlockLocation.OUTSIDE)
+            {
+                return;
+            }
+            if (loc == BlockLocation.INSIDE)
+            {
+                for (int z = z0; z <= z1; z++)
+                {
+                    PixelSink sink = sinks[z - this.z0];
+                    for (int y = y0; y <= y1; y++)
+                    {
+                        sink.fill(y, x0, x1);
+                    }
+                }
+                return;
+            }
+            
+            // test each voxel of small boundary blocks
+            if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1) <= MAX_LEAF_VOXELS)
+            {
+                fillVoxels(x0, x1, y0, y1, z0, z1);
+                return;
+            }
+            
+            // split each dimension with more than one voxel into two halves
+            int xm = x0 < x1 ? (x0 + x1) >>> 1 : x1;
+            int ym = y0 < y1 ? (y0 + y1) >>> 1 : y1;
+            int zm = z0 < z1 ? (z0 + z1) >>> 1 : z1;
+            for (int iz = 0; iz < (zm < z1 ? 2 : 1); iz++)
+            {
+                int za = iz == 0 ? z0 : zm + 1;
+                int zb = iz == 0 ? zm : z1;
+                for (int iy = 0; iy < (ym < y1 ? 2 : 1); iy++)
+                {
+                    int ya = iy == 0 ? y0 : ym + 1;
+                    int yb = iy == 0 ? ym : y1;
+                    for (int ix = 0; ix < (xm < x1 ? 2 : 1); ix++)
+                    {
+                        int xa = ix == 0 ? x0 : xm + 1;
+                        int xb = ix == 0 ? xm : x1;
+                        fillBlock(xa, xb, ya, yb, za, zb);
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Tests the center of each voxel within the block.
+         */
+        private void fillVoxels(int x0, int x1, int y0, int y1, int z0, int z1)
+        {
+            for (int z = z0; z <= z1; z++)
+            {
+                PixelSink sink = sinks[z - this.z0];
+                for (int y = y0; y <= y1; y++)
+                {
+                    for (int x = x0; x <= x1; x++)
+                    {
+                        if (shape.isInside(x + 0.5, y + 0.5, z + 0.5))
+                        {
+                            sink.set(x, y);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ij.process.ImageProcessor;
+import net.ijt.digishapes.util.PixelSink;
+import net.ijt.geometry.geom2d.Bounds2D;
+
+/**
+ * Digitizes planar shapes row by row, by filling the span of pixels whose
+ * centers are within the shape.
+ * 
+ * For each row, the extent of the shape is computed analytically, and
+ * converted into a range of pixels. The extremities of the range are then
+ * checked with the isInside method of the shape, so that the result is
+ * identical to testing each pixel center at coordinates (x + 0.5, y + 0.5),
+ * while the number of tests is proportional to the height of the shape.
+ * 
+ * For large images, the rows can be split into bands processed concurrently
+ * by a ForkJoinPool. Each band writes only into its own rows of the pixel
+ * array, so no synchronization is required.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * ImageProcessor image = new ByteProcessor(10000, 10000);
+ * Rasterizer2D.fill(image, new Circle2DAdapter(5000, 5000, 20), 255);
+ * 
+ * // same result, using all available processors
+ * Rasterizer2D.fill(image, new Circle2DAdapter(5000, 5000, 4000), 255, 0);
+ * }</pre>
+ * 
+ * @see SpanShape2D
+ * 
+ * @author dlegland
+ */
+public class Rasterizer2D
+{
+    /**
+     * The minimum number of rows processed by a single task of the parallel
+     * fill.
+     */
+    private static final int MIN_BAND_HEIGHT = 64;
+    
+    /**
+     * Fills the pixels of the image whose centers are within the specified
+     * shape.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels within the shape
+     */
+    public static final void fill(ImageProcessor image, SpanShape2D shape, double value)
+    {
+        fill(PixelSink.create(image, value), image.getWidth(), image.getHeight(), shape);
+    }
+    
+    /**
+     * Fills the pixels of a plane whose centers are within the specified
+     * shape, using a pixel sink.
+     * 
+     * @param sink
+     *            the sink used to write the pixels of the plane
+     * @param sizeX
+     *            the width of the plane
+     * @param sizeY
+     *            the height of the plane
+     * @param shape
+     *            the shape to digitize
+     */
+    public static final void fill(PixelSink sink, int sizeX, int sizeY, SpanShape2D shape)
+    {
+        int[] range = rowRange(shape, sizeY);
+        fillRows(sink, sizeX, shape, range[0], range[1]);
+    }
+    
+    /**
+     * Fills the pixels of the image whose centers are within the specified
+     * shape, by processing bands of rows with several threads.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     */
+    public static final void fill(ImageProcessor image, SpanShape2D shape, double value, int nThreads)
+    {
+        fill(PixelSink.create(image, value), image.getWidth(), image.getHeight(), shape, nThreads);
+    }
+    
+    /**
+     * Fills the pixels of a plane whose centers are within the specified
+     * shape, using a pixel sink and by processing bands of rows with several
+     * threads. The sink must accept concurrent calls for distinct rows.
+     * 
+     * @param sink
+     *            the sink used to write the pixels of the plane
+     * @param sizeX
+     *            the width of the plane
+     * @param sizeY
+     *            the height of the plane
+     * @param shape
+     *            the shape to digitize
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     */
+    public static final void fill(PixelSink sink, int sizeX, int sizeY, SpanShape2D shape, int nThreads)
+    {
+        if (nThreads <= 0)
+        {
+            nThreads = Runtime.getRuntime().availableProcessors();
+        }
+        if (nThreads == 1)
+        {
+            fill(sink, sizeX, sizeY, shape);
+            return;
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(nThreads);
+        try
+        {
+            fill(sink, sizeX, sizeY, shape, pool);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Fills the pixels of the image whose centers are within the specified
+     * shape, by distributing bands of rows over the threads of a
+     * ForkJoinPool.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels within the shape
+     * @param pool
+     *            the pool used to process the bands of rows
+     */
+    public static final void fill(ImageProcessor image, SpanShape2D shape, double value, ForkJoinPool pool)
+    {
+        fill(PixelSink.create(image, value), image.getWidth(), image.getHeight(), shape, pool);
+    }
+    
+    /**
+     * Fills the pixels of a plane whose centers are within the specified
+     * shape, using a pixel sink and by distributing bands of rows over the
+     * threads of a ForkJoinPool.
+     * 
+     * @param sink
+     *            the sink used to write the pixels of the plane
+     * @param sizeX
+     *            the width of the plane
+     * @param sizeY
+     *            the height of the plane
+     * @param shape
+     *            the shape to digitize
+     * @param pool
+     *            the pool used to process the bands of rows
+     */
+    public static final void fill(PixelSink sink, int sizeX, int sizeY, SpanShape2D shape, ForkJoinPool pool)
+    {
+        int[] range = rowRange(shape, sizeY);
+        if (range[0] <= range[1])
+        {
+            pool.invoke(new FillRowsTask(sink, sizeX, shape, range[0], range[1]));
+        }
+    }
+    
+    /**
+     * Computes the indices of the first and last rows whose center may be
+     * within the bounds of the shape, keeping a margin of one pixel for
+     * rounding errors.
+     */
+    private static final int[] rowRange(SpanShape2D shape, int sizeY)
+    {
+        Bounds2D bounds = shape.bounds();
+        int y0 = (int) Math.max(Math.floor(bounds.minY()) - 1, 0);
+        int y1 = (int) Math.min(Math.ceil(bounds.maxY()), sizeY - 1);
+        return new int[] {y0, y1};
+    }
+    
+    /**
+     * Fills the pixels within the shape for the rows between y0 and y1
+     * (inclusive).
+     */
+    private static final void fillRows(PixelSink sink, int sizeX, SpanShape2D shape, int y0, int y1)
+    {
+        double[] extent = new double[2];
+        for (int y = y0; y <= y1; y++)
+        {
+            if (shape.lineExtent(y + 0.5, extent))
+            {
+                fillSpan(sink, shape, y, extent[0], extent[1], sizeX);
+            }
+        }
+    }
+    
+    /**
+     * Fills the span of pixels within the specified row, that corresponds to
+     * the given extent of the shape, after having checked the extremities of
+     * the span with the isInside method of the shape.
+     */
+    private static final void fillSpan(PixelSink sink, SpanShape2D shape, int y, double xmin, double xmax, int sizeX)
+    {
+        double yc = y + 0.5;
+        
+        // range of pixels whose centers are within the extent, clamped to
+        // the image
+        int x0 = (int) Math.min(Math.max(Math.ceil(xmin - 0.5), 0), sizeX);
+        int x1 = (int) Math.min(Math.max(Math.floor(xmax - 0.5), -1), sizeX - 1);
+        
+        if (x0 > x1)
+        {
+            // no pixel center within the extent: check the neighbor pixels
+            // in case of rounding errors
+            if (x1 >= 0 && shape.isInside(x1 + 0.5, yc))
+            {
+                x0 = x1;
+            }
+            else if (x0 < sizeX && shape.isInside(x0 + 0.5, yc))
+            {
+                x1 = x0;
+            }
+            else
+            {
+                return;
+            }
+        }
+        
+        // adjust the first pixel of the span
+        if (shape.isInside(x0 + 0.5, yc) || (x0 > 0 && shape.isInside(x0 - 0.5, yc)))
+        {
+            while (x0 > 0 && shape.isInside(x0 - 0.5, yc))
+            {
+                x0--;
+            }
+        }
+        else
+        {
+            do
+            {
+                x0++;
+            } while (x0 <= x1 && !shape.isInside(x0 + 0.5, yc));
+            
+            if (x0 > x1)
+            {
+                // the span may still start just after the computed extent
+                if (x1 + 1 >= sizeX || !shape.isInside(x1 + 1.5, yc))
+                {
+                    return;
+                }
+                x0 = x1 + 1;
+                x1 = x0;
+            }
+        }
+        
+        // adjust the last pixel of the span
+        if (shape.isInside(x1 + 0.5, yc) || (x1 < sizeX - 1 && shape.isInside(x1 + 1.5, yc)))
+        {
+            while (x1 < sizeX - 1 && shape.isInside(x1 + 1.5, yc))
+            {
+                x1++;
+            }
+        }
+        else
+        {
+            // stops at x0 at the latest, that is within the shape
+            do
+            {
+                x1--;
+            } while (!shape.isInside(x1 + 0.5, yc));
+        }
+        
+        sink.fill(y, x0, x1);
+    }
+    
+    /**
+     * Fills a band of rows, by recursively splitting the band into two halves
+     * until its height is small enough.
+     */
+    private static final class FillRowsTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        
+        final PixelSink sink;
+        final int sizeX;
+        final SpanShape2D shape;
+        
+        /**
+         * The indices of the first and last rows to fill (inclusive).
+         */
+        final int y0, y1;
+        
+        FillRowsTask(PixelSink sink, int sizeX, SpanShape2D shape, int y0, int y1)
+        {
+            this.sink = sink;
+            this.sizeX = sizeX;
+            this.shape = shape;
+            this.y0 = y0;
+            this.y1 = y1;
+        }
+        
+        @Override
+        protected void compute()
+        {
+            if (y1 - y0 < 2 * MIN_BAND_HEIGHT)
+            {
+                fillRows(sink, sizeX, shape, y0, y1);
+                return;
+            }
+            
+            int ym = (y0 + y1) >>> 1;
+            invokeAll(new FillRowsTask(sink, sizeX, shape, y0, ym),
+                    new FillRowsTask(sink, sizeX, shape, ym + 1, y1));
+        }
+    }
+}
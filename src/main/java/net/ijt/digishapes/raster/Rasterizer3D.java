@@ -0,0 +1,387 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+import ij.ImageStack;
+import net.ijt.digishapes.util.FillProgress;
+import net.ijt.digishapes.util.PixelSink;
+import net.ijt.geometry.geom2d.Bounds2D;
+import net.ijt.geometry.geom3d.Bounds3D;
+
+/**
+ * Digitizes 3D shapes row by row, by filling the span of voxels whose centers
+ * are within the shape.
+ * 
+ * Each slice is processed as a planar section of the shape, using the same
+ * algorithm as the {@link Rasterizer2D} class: the extent of each row is
+ * computed analytically, and its extremities are checked with the isInside
+ * method of the shape. The result is therefore identical to testing each
+ * voxel center at coordinates (x + 0.5, y + 0.5, z + 0.5).
+ * 
+ * The slices can also be processed concurrently, using a ForkJoinPool. As
+ * each task writes only into its own slices, no synchronization is required,
+ * and the result is identical to the one obtained with a single thread.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * ImageStack image = ImageStack.create(200, 200, 200, 8);
+ * Rasterizer3D.fill(image, new Ball3D(100, 100, 100, 80), 255);
+ * 
+ * // same result, using all available processors
+ * Rasterizer3D.fill(image, new Ball3D(100, 100, 100, 80), 255, 0);
+ * }</pre>
+ * 
+ * @see SpanShape3D
+ * 
+ * @author dlegland
+ */
+public class Rasterizer3D
+{
+    /**
+     * Fills the voxels of the image whose centers are within the specified
+     * shape.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     */
+    public static final void fill(ImageStack image, SpanShape3D shape, double value)
+    {
+        int sizeX = image.getWidth();
+        int sizeY = image.getHeight();
+        Bounds3D bounds = shape.bounds();
+        int[] range = sliceRange(bounds, image.getSize());
+        for (int z = range[0]; z <= range[1]; z++)
+        {
+            fillSlice(PixelSink.create(image, z, value), sizeX, sizeY, shape, z, bounds);
+        }
+    }
+    
+    /**
+     * Fills the voxels of the image whose centers are within the specified
+     * shape, by processing the slices with several threads.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     */
+    public static final void fill(ImageStack image, SpanShape3D shape, double value, int nThreads)
+    {
+        fill(z -> PixelSink.create(image, z, value), image.getWidth(), image.getHeight(), image.getSize(), shape, nThreads);
+    }
+    
+    /**
+     * Fills the voxels of a volume whose centers are within the specified
+     * shape, using one pixel sink for each slice, and by processing the slices
+     * with several threads.
+     * 
+     * @param sinks
+     *            the function that creates the sink of the slice with the
+     *            specified index, starting from 0
+     * @param sizeX
+     *            the width of the volume
+     * @param sizeY
+     *            the height of the volume
+     * @param sizeZ
+     *            the number of slices of the volume
+     * @param shape
+     *            the shape to digitize
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     */
+    public static final void fill(IntFunction<PixelSink> sinks, int sizeX, int sizeY, int sizeZ, SpanShape3D shape, int nThreads)
+    {
+        fill(sinks, sizeX, sizeY, sizeZ, shape, nThreads, null);
+    }
+    
+    /**
+     * Fills the voxels of a volume whose centers are within the specified
+     * shape, using one pixel sink for each slice, and by processing the slices
+     * with several threads. The progress is reported after each slice, and
+     * the fill can be canceled between two slices.
+     * 
+     * @param sinks
+     *            the function that creates the sink of the slice with the
+     *            specified index, starting from 0
+     * @param sizeX
+     *            the width of the volume
+     * @param sizeY
+     *            the height of the volume
+     * @param sizeZ
+     *            the number of slices of the volume
+     * @param shape
+     *            the shape to digitize
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @param progress
+     *            the object notified of the progress, that can cancel the
+     *            fill, or null
+     * @throws CancellationException
+     *             if the fill was canceled by the progress object. Each slice
+     *             is then either completely filled or left unchanged.
+     */
+    public static final void fill(IntFunction<PixelSink> sinks, int sizeX, int sizeY, int sizeZ, SpanShape3D shape, int nThreads, FillProgress progress)
+    {
+        if (nThreads <= 0)
+        {
+            nThreads = Runtime.getRuntime().availableProcessors();
+        }
+        Bounds3D bounds = shape.bounds();
+        int[] range = sliceRange(bounds, sizeZ);
+        SliceTracker tracker = progress != null ? new SliceTracker(progress, range[1] - range[0] + 1) : null;
+        
+        if (nThreads == 1)
+        {
+            for (int z = range[0]; z <= range[1]; z++)
+            {
+                if (tracker != null && !tracker.proceed())
+                {
+                    break;
+                }
+                fillSlice(sinks.apply(z), sizeX, sizeY, shape, z, bounds);
+                if (tracker != null)
+                {
+                    tracker.slicesDone(1);
+                }
+            }
+        }
+        else if (range[0] <= range[1])
+        {
+            ForkJoinPool pool = new ForkJoinPool(nThreads);
+            try
+            {
+                pool.invoke(new FillSlicesTask(sinks, sizeX, sizeY, shape, bounds, range[0], range[1], tracker));
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+        
+        if (tracker != null)
+        {
+            tracker.checkCanceled();
+        }
+    }
+    
+    /**
+     * Fills the voxels of the image whose centers are within the specified
+     * shape, by distributing the slices over the threads of a ForkJoinPool.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @param pool
+     *            the pool used to process the slices
+     */
+    public static final void fill(ImageStack image, SpanShape3D shape, double value, ForkJoinPool pool)
+    {
+        fill(z -> PixelSink.create(image, z, value), image.getWidth(), image.getHeight(), image.getSize(), shape, pool);
+    }
+    
+    /**
+     * Fills the voxels of a volume whose centers are within the specified
+     * shape, using one pixel sink for each slice, and by distributing the
+     * slices over the threads of a ForkJoinPool.
+     * 
+     * @param sinks
+     *            the function that creates the sink of the slice with the
+     *            specified index, starting from 0
+     * @param sizeX
+     *            the width of the volume
+     * @param sizeY
+     *            the height of the volume
+     * @param sizeZ
+     *            the number of slices of the volume
+     * @param shape
+     *            the shape to digitize
+     * @param pool
+     *            the pool used to process the slices
+     */
+    public static final void fill(IntFunction<PixelSink> sinks, int sizeX, int sizeY, int sizeZ, SpanShape3D shape, ForkJoinPool pool)
+    {
+        Bounds3D bounds = shape.bounds();
+        int[] range = sliceRange(bounds, sizeZ);
+        if (range[0] <= range[1])
+        {
+            pool.invoke(new FillSlicesTask(sinks, sizeX, sizeY, shape, bounds, range[0], range[1], null));
+        }
+    }
+    
+    /**
+     * Fills the voxels of a single slice whose centers are within the
+     * specified shape, using a pixel sink.
+     * 
+     * @param sink
+     *            the sink used to write the pixels of the slice
+     * @param sizeX
+     *            the width of the slice
+     * @param sizeY
+     *            the height of the slice
+     * @param shape
+     *            the shape to digitize
+     * @param z
+     *            the index of the slice, starting from 0
+     */
+    public static final void fillSlice(PixelSink sink, int sizeX, int sizeY, SpanShape3D shape, int z)
+    {
+        fillSlice(sink, sizeX, sizeY, shape, z, shape.bounds());
+    }
+    
+    /**
+     * Fills the voxels of a single slice whose centers are within the
+     * specified shape, using bounds computed beforehand. This avoids
+     * computing the bounds of the shape for each slice.
+     * 
+     * @param sink
+     *            the sink used to write the pixels of the slice
+     * @param sizeX
+     *            the width of the slice
+     * @param sizeY
+     *            the height of the slice
+     * @param shape
+     *            the shape to digitize
+     * @param z
+     *            the index of the slice, starting from 0
+     * @param bounds
+     *            the bounds of the shape
+     */
+    public static final void fillSlice(PixelSink sink, int sizeX, int sizeY, SpanShape3D shape, int z, Bounds3D bounds)
+    {
+        Rasterizer2D.fill(sink, sizeX, sizeY, new Section(shape, z + 0.5, bounds));
+    }
+    
+    /**
+     * Computes the indices of the first and last slices whose center may be
+     * within the bounds of the shape, keeping a margin of one voxel for
+     * rounding errors.
+     */
+    private static final int[] sliceRange(Bounds3D bounds, int sizeZ)
+    {
+        int z0 = (int) Math.max(Math.floor(bounds.minZ()) - 1, 0);
+        int z1 = (int) Math.min(Math.ceil(bounds.maxZ()), sizeZ - 1);
+        return new int[] {z0, z1};
+    }
+    
+    /**
+     * Fills a range of slices, by recursively splitting the range into two
+     * halves until a single slice remains.
+     */
+    private static final class FillSlicesTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        
+        /**
+         * The function that creates the sink of each slice.
+         */
+        final IntFunction<PixelSink> sinks;
+        
+        final int sizeX, sizeY;
+        final SpanShape3D shape;
+        
+        /**
+         * The bounds of the shape, computed once for all the slices.
+         */
+        final Bounds3D bounds;
+        
+        /**
+         * The indices of the first and last slices to fill (inclusive).
+         */
+        final int z0, z1;
+        
+        /**
+         * The tracker of the processed slices, or null.
+         */
+        final SliceTracker tracker;
+        
+        FillSlicesTask(IntFunction<PixelSink> sinks, int sizeX, int sizeY, SpanShape3D shape, Bounds3D bounds, int z0, int z1, SliceTracker tracker)
+        {
+            this.sinks = sinks;
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.shape = shape;
+            this.bounds = bounds;
+            this.z0 = z0;
+            this.z1 = z1;
+            this.tracker = tracker;
+        }
+        
+        @Override
+        protected void compute()
+        {
+            if (z0 == z1)
+            {
+                if (tracker != null && !tracker.proceed())
+                {
+                    return;
+                }
+                fillSlice(sinks.apply(z0), sizeX, sizeY, shape, z0, bounds);
+                if (tracker != null)
+                {
+                    tracker.slicesDone(1);
+                }
+                return;
+            }
+            
+            int zm = (z0 + z1) >>> 1;
+            invokeAll(new FillSlicesTask(sinks, sizeX, sizeY, shape, bounds, z0, zm, tracker),
+                    new FillSlicesTask(sinks, sizeX, sizeY, shape, bounds, zm + 1, z1, tracker));
+        }
+    }
+    
+    /**
+     * The intersection of a 3D shape with a plane orthogonal to the Z-axis.
+     */
+    private static final class Section implements SpanShape2D
+    {
+        final SpanShape3D shape;
+        final double z;
+        final Bounds3D bounds;
+        
+        Section(SpanShape3D shape, double z, Bounds3D bounds)
+        {
+            this.shape = shape;
+            this.z = z;
+            this.bounds = bounds;
+        }
+        
+        @Override
+        public Bounds2D bounds()
+        {
+            return new Bounds2D(bounds.minX(), bounds.maxX(), bounds.minY(), bounds.maxY());
+        }
+        
+        @Override
+        public boolean isInside(double x, double y)
+        {
+            return shape.isInside(x, y, z);
+        }
+        
+        @Override
+        public boolean lineExtent(double y, double[] extent)
+        {
+            return shape.lineExtent(y, z, extent);
+        }
+    }
+}
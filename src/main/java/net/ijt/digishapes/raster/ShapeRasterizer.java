@@ -0,0 +1,469 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.IntFunction;
+
+import ij.ImageStack;
+import ij.process.ImageProcessor;
+import net.ijt.digishapes.DigitalShape2D;
+import net.ijt.digishapes.DigitalShape3D;
+import net.ijt.digishapes.metrics.FillMetrics;
+import net.ijt.digishapes.metrics.FillMonitor;
+import net.ijt.digishapes.util.DoubleDoubleDoublePredicate;
+import net.ijt.digishapes.util.FillProgress;
+import net.ijt.digishapes.util.ImageUtils;
+import net.ijt.digishapes.util.PixelSink;
+import net.ijt.geometry.geom2d.Bounds2D;
+import net.ijt.geometry.geom3d.Bounds3D;
+
+/**
+ * Single entry point for digitizing shapes, that selects the fastest
+ * available strategy for each shape:
+ * <ul>
+ * <li>shapes implementing SpanShape2D or SpanShape3D are filled row by row by
+ * the span rasterizers, possibly using several threads,</li>
+ * <li>3D shapes implementing BlockShape3D but not SpanShape3D are filled by
+ * recursive subdivision of their bounds,</li>
+ * <li>other shapes are digitized by testing the center of each pixel or voxel
+ * within their bounds.</li>
+ * </ul>
+ * In all cases, the result contains the pixels or voxels whose centers are
+ * within the shape.
+ * 
+ * The span strategy is preferred for the shapes implementing both SpanShape3D
+ * and BlockShape3D: it computes a single extent for each row, and can use
+ * several threads, whereas the subdivision is sequential and tests the voxels
+ * of the boundary blocks individually. The subdivision is used for the shapes
+ * that can classify blocks of voxels but cannot compute row extents.
+ * 
+ * When the {@link FillMonitor} is enabled, the fill methods also count the
+ * processed voxels and measure the duration of the fill, and publish the
+ * resulting metrics. The measure methods collect the same metrics, and return
+ * them without publishing.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * ImageStack image = ImageStack.create(200, 200, 200, 8);
+ * DigitalShape3D shape = new Cube3D(100, 100, 100, 80, 30, 0, 0);
+ * ShapeRasterizer.fill(image, shape, 255);
+ * }</pre>
+ * 
+ * @see Rasterizer2D
+ * @see Rasterizer3D
+ * 
+ * @author dlegland
+ */
+public class ShapeRasterizer
+{
+    /**
+     * Fills the pixels of the image whose centers are within the specified
+     * shape.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels within the shape
+     */
+    public static final void fill(ImageProcessor image, DigitalShape2D shape, double value)
+    {
+        fill(image, shape, value, 1);
+    }
+    
+    /**
+     * Fills the pixels of the image whose centers are within the specified
+     * shape, using several threads when the shape supports it.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     */
+    public static final void fill(ImageProcessor image, DigitalShape2D shape, double value, int nThreads)
+    {
+        if (FillMonitor.isEnabled())
+        {
+            FillMonitor.publish(measure(image, shape, value, nThreads));
+            return;
+        }
+        
+        if (shape instanceof SpanShape2D)
+        {
+            Rasterizer2D.fill(image, (SpanShape2D) shape, value, nThreads);
+        }
+        else
+        {
+            ImageUtils.fillCenters(image, shape.bounds(), shape::isInside, (float) value);
+        }
+    }
+    
+    /**
+     * Fills the voxels of the image whose centers are within the specified
+     * shape.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     */
+    public static final void fill(ImageStack image, DigitalShape3D shape, double value)
+    {
+        fill(image, shape, value, 1);
+    }
+    
+    /**
+     * Fills the voxels of the image whose centers are within the specified
+     * shape, using several threads when the shape supports it.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     */
+    public static final void fill(ImageStack image, DigitalShape3D shape, double value, int nThreads)
+    {
+        fill(image, shape, value, nThreads, null);
+    }
+    
+    /**
+     * Fills the voxels of the image whose centers are within the specified
+     * shape, using several threads when the shape supports it. The progress
+     * is reported after each slice or slab of slices, and the fill can be
+     * canceled between two slices.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @param progress
+     *            the object notified of the progress, that can cancel the
+     *            fill, or null
+     * @throws CancellationException
+     *             if the fill was canceled by the progress object. Each slice
+     *             is then either completely filled or left unchanged.
+     */
+    public static final void fill(ImageStack image, DigitalShape3D shape, double value, int nThreads, FillProgress progress)
+    {
+        if (FillMonitor.isEnabled())
+        {
+            FillMonitor.publish(measure(image, shape, value, nThreads, progress));
+            return;
+        }
+        
+        if (shape instanceof SpanShape3D && progress == null)
+        {
+            Rasterizer3D.fill(image, (SpanShape3D) shape, value, nThreads);
+        }
+        else if (shape instanceof SpanShape3D || shape instanceof BlockShape3D)
+        {
+            IntFunction<PixelSink> sinks = z -> PixelSink.create(image, z, value);
+            fill(sinks, image.getWidth(), image.getHeight(), image.getSize(), shape, nThreads, progress);
+        }
+        else
+        {
+            fillCenters(image, shape.bounds(), shape::isInside, value, progress);
+        }
+    }
+    
+    /**
+     * Fills the voxels of a volume whose centers are within the specified
+     * shape, using one pixel sink for each slice. The strategy is chosen as
+     * for images: span shapes are filled with several threads, and the other
+     * shapes are filled using a single thread. The progress is reported after
+     * each slice or slab of slices, and the fill can be canceled between two
+     * slices.
+     * 
+     * Contrary to the methods working on images, this method does not publish
+     * metrics to the FillMonitor.
+     * 
+     * @param sinks
+     *            the function that creates the sink of the slice with the
+     *            specified index, starting from 0
+     * @param sizeX
+     *            the width of the volume
+     * @param sizeY
+     *            the height of the volume
+     * @param sizeZ
+     *            the number of slices of the volume
+     * @param shape
+     *            the shape to digitize
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @param progress
+     *            the object notified of the progress, that can cancel the
+     *            fill, or null
+     * @throws CancellationException
+     *             if the fill was canceled by the progress object. Each slice
+     *             is then either completely filled or left unchanged.
+     */
+    public static final void fill(IntFunction<PixelSink> sinks, int sizeX, int sizeY, int sizeZ, DigitalShape3D shape, int nThreads, FillProgress progress)
+    {
+        if (shape instanceof SpanShape3D)
+        {
+            Rasterizer3D.fill(sinks, sizeX, sizeY, sizeZ, (SpanShape3D) shape, nThreads, progress);
+        }
+        else if (shape instanceof BlockShape3D)
+        {
+            // shapes without row extents
+            OctreeRasterizer3D.fill(sinks, sizeX, sizeY, sizeZ, (BlockShape3D) shape, progress);
+        }
+        else
+        {
+            fillCenters(sinks, sizeX, sizeY, sizeZ, shape, progress);
+        }
+    }
+    
+    /**
+     * Fills the pixels of the image whose centers are within the specified
+     * shape, and returns the metrics of the fill. The result is the same as
+     * for the fill method, but the calls to the isInside method of the shape
+     * and the written pixels are counted, making the fill slightly slower.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the pixels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @return the metrics of the fill
+     */
+    public static final FillMetrics measure(ImageProcessor image, DigitalShape2D shape, double value, int nThreads)
+    {
+        long t0 = System.nanoTime();
+        int sizeX = image.getWidth();
+        int sizeY = image.getHeight();
+        Bounds2D bounds = shape.bounds();
+        double boundsVolume = (bounds.maxX() - bounds.minX()) * (bounds.maxY() - bounds.minY());
+        long visited = centerCount(bounds.minX(), bounds.maxX(), sizeX) * centerCount(bounds.minY(), bounds.maxY(), sizeY);
+        
+        FillCounters counters = new FillCounters();
+        String strategy;
+        int threads = 1;
+        long t1;
+        if (shape instanceof SpanShape2D)
+        {
+            strategy = "span";
+            threads = nThreads > 0 ? nThreads : Runtime.getRuntime().availableProcessors();
+            SpanShape2D spanShape = counters.wrap((SpanShape2D) shape);
+            PixelSink sink = counters.wrap(PixelSink.create(image, value));
+            t1 = System.nanoTime();
+            Rasterizer2D.fill(sink, sizeX, sizeY, spanShape, threads);
+        }
+        else
+        {
+            strategy = "centers";
+            t1 = System.nanoTime();
+            ImageUtils.fillCenters(image, bounds, counters.predicate(shape), (float) value);
+        }
+        long t2 = System.nanoTime();
+        
+        return new FillMetrics(shapeName(shape), strategy, threads, boundsVolume, visited,
+                counters.tested.sum(), counters.written.sum(), t1 - t0, t2 - t1, 0);
+    }
+    
+    /**
+     * Fills the voxels of the image whose centers are within the specified
+     * shape, and returns the metrics of the fill. The result is the same as
+     * for the fill method, but the calls to the isInside method of the shape
+     * and the written voxels are counted, making the fill slightly slower.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @return the metrics of the fill
+     */
+    public static final FillMetrics measure(ImageStack image, DigitalShape3D shape, double value, int nThreads)
+    {
+        return measure(image, shape, value, nThreads, null);
+    }
+    
+    /**
+     * Fills the voxels of the image whose centers are within the specified
+     * shape while reporting the progress, and returns the metrics of the
+     * fill.
+     * 
+     * @param image
+     *            the image to fill
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value to assign to the voxels within the shape
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @param progress
+     *            the object notified of the progress, that can cancel the
+     *            fill, or null
+     * @return the metrics of the fill
+     * @throws CancellationException
+     *             if the fill was canceled by the progress object
+     */
+    public static final FillMetrics measure(ImageStack image, DigitalShape3D shape, double value, int nThreads, FillProgress progress)
+    {
+        long t0 = System.nanoTime();
+        int sizeX = image.getWidth();
+        int sizeY = image.getHeight();
+        int sizeZ = image.getSize();
+        Bounds3D bounds = shape.bounds();
+        double boundsVolume = (bounds.maxX() - bounds.minX()) * (bounds.maxY() - bounds.minY()) * (bounds.maxZ() - bounds.minZ());
+        long visited = centerCount(bounds.minX(), bounds.maxX(), sizeX) * centerCount(bounds.minY(), bounds.maxY(), sizeY)
+                * centerCount(bounds.minZ(), bounds.maxZ(), sizeZ);
+        
+        FillCounters counters = new FillCounters();
+        IntFunction<PixelSink> sinks = z -> counters.wrap(PixelSink.create(image, z, value));
+        String strategy;
+        int threads = 1;
+        long t1;
+        if (shape instanceof SpanShape3D)
+        {
+            strategy = "span";
+            threads = nThreads > 0 ? nThreads : Runtime.getRuntime().availableProcessors();
+            SpanShape3D spanShape = counters.wrap((SpanShape3D) shape);
+            t1 = System.nanoTime();
+            Rasterizer3D.fill(sinks, sizeX, sizeY, sizeZ, spanShape, threads, progress);
+        }
+        else if (shape instanceof BlockShape3D)
+        {
+            // shapes without row extents
+            strategy = "octree";
+            BlockShape3D blockShape = counters.wrap((BlockShape3D) shape);
+            t1 = System.nanoTime();
+            OctreeRasterizer3D.fill(sinks, sizeX, sizeY, sizeZ, blockShape, progress);
+        }
+        else
+        {
+            strategy = "centers";
+            t1 = System.nanoTime();
+            fillCenters(image, bounds, counters.predicate(shape), value, progress);
+        }
+        long t2 = System.nanoTime();
+        
+        return new FillMetrics(shapeName(shape), strategy, threads, boundsVolume, visited,
+                counters.tested.sum(), counters.written.sum(), t1 - t0, t2 - t1, 0);
+    }
+    
+    /**
+     * Fills the voxels whose centers are within the bounds and match the
+     * predicate, slice by slice when a progress object is specified.
+     */
+    private static final void fillCenters(ImageStack image, Bounds3D bounds, DoubleDoubleDoublePredicate fun, double value, FillProgress progress)
+    {
+        if (progress == null)
+        {
+            ImageUtils.fillCenters(image, bounds, fun, value);
+            return;
+        }
+        
+        // same range of slices as ImageUtils
+        int z0 = (int) Math.max(Math.floor(bounds.minZ()), 0);
+        int z1 = (int) Math.min(Math.ceil(bounds.maxZ()), image.getSize() - 1);
+        SliceTracker tracker = new SliceTracker(progress, z1 - z0 + 1);
+        for (int z = z0; z <= z1; z++)
+        {
+            if (!tracker.proceed())
+            {
+                break;
+            }
+            Bounds3D slice = new Bounds3D(bounds.minX(), bounds.maxX(), bounds.minY(), bounds.maxY(), z, z);
+            ImageUtils.fillCenters(image, slice, fun, value);
+            tracker.slicesDone(1);
+        }
+        tracker.checkCanceled();
+    }
+    
+    /**
+     * Fills the voxels whose centers are within the shape, by testing each
+     * voxel within the bounds of the shape, slice by slice.
+     */
+    private static final void fillCenters(IntFunction<PixelSink> sinks, int sizeX, int sizeY, int sizeZ, DigitalShape3D shape, FillProgress progress)
+    {
+        // same range of voxels as ImageUtils
+        Bounds3D bounds = shape.bounds();
+        int x0 = (int) Math.max(Math.floor(bounds.minX()), 0);
+        int x1 = (int) Math.min(Math.ceil(bounds.maxX()), sizeX - 1);
+        int y0 = (int) Math.max(Math.floor(bounds.minY()), 0);
+        int y1 = (int) Math.min(Math.ceil(bounds.maxY()), sizeY - 1);
+        int z0 = (int) Math.max(Math.floor(bounds.minZ()), 0);
+        int z1 = (int) Math.min(Math.ceil(bounds.maxZ()), sizeZ - 1);
+        SliceTracker tracker = progress != null ? new SliceTracker(progress, Math.max(z1 - z0 + 1, 0)) : null;
+        for (int z = z0; z <= z1; z++)
+        {
+            if (tracker != null && !tracker.proceed())
+            {
+                break;
+            }
+            PixelSink sink = sinks.apply(z);
+            for (int y = y0; y <= y1; y++)
+            {
+                for (int x = x0; x <= x1; x++)
+                {
+                    if (shape.isInside(x + 0.5, y + 0.5, z + 0.5))
+                    {
+                        sink.set(x, y);
+                    }
+                }
+            }
+            if (tracker != null)
+            {
+                tracker.slicesDone(1);
+            }
+        }
+        if (tracker != null)
+        {
+            tracker.checkCanceled();
+        }
+    }
+    
+    /**
+     * Returns the simple name of the class of the shape, or its full name for
+     * anonymous classes.
+     */
+    private static final String shapeName(Object shape)
+    {
+        String name = shape.getClass().getSimpleName();
+        return name.isEmpty() ? shape.getClass().getName() : name;
+    }
+    
+    /**
+     * Counts the indices i within [0, size) such that the pixel center i + 0.5
+     * is within the interval [min, max].
+     */
+    private static final long centerCount(double min, double max, int size)
+    {
+        long i0 = (long) Math.max(Math.ceil(min - 0.5), 0);
+        long i1 = (long) Math.min(Math.floor(max - 0.5), size - 1);
+        return Math.max(i1 - i0 + 1, 0);
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.ijt.digishapes.util.FillProgress;
+
+/**
+ * Counts the slices processed by a fill, forwards the progress to a
+ * FillProgress, and remembers whether the fill was canceled. The methods can
+ * be called concurrently by several worker threads.
+ * 
+ * @author dlegland
+ */
+class SliceTracker
+{
+    // ===================================================================
+    // Class variables
+    
+    final FillProgress progress;
+    
+    /**
+     * The total number of slices to process.
+     */
+    final int total;
+    
+    /**
+     * The number of slices processed so far.
+     */
+    final AtomicInteger done = new AtomicInteger();
+    
+    /**
+     * Set to true as soon as a worker has observed the cancellation, so that
+     * the other workers skip their remaining slices.
+     */
+    volatile boolean canceled = false;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    SliceTracker(FillProgress progress, int total)
+    {
+        this.progress = progress;
+        this.total = Math.max(total, 0);
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Checks whether the next slice can be processed.
+     * 
+     * @return false if the fill was canceled
+     */
+    boolean proceed()
+    {
+        if (canceled)
+        {
+            return false;
+        }
+        if (progress.isCanceled())
+        {
+            canceled = true;
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Reports that a number of slices have been processed.
+     * 
+     * @param count
+     *            the number of slices processed since the last call
+     */
+    void slicesDone(int count)
+    {
+        progress.progress(done.addAndGet(count), total);
+    }
+    
+    /**
+     * Throws a CancellationException if the fill was canceled. Called by the
+     * thread that started the fill, once all the workers have completed.
+     */
+    void checkCanceled()
+    {
+        if (canceled)
+        {
+            throw new CancellationException("Fill canceled after " + done.get() + " of " + total + " slices");
+        }
+    }
+}
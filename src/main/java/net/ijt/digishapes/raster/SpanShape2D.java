@@ -0,0 +1,38 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+import net.ijt.digishapes.DigitalShape2D;
+
+/**
+ * A planar shape that can compute analytically its intersection with a
+ * horizontal line. This allows digitizing the shape row by row, with a cost
+ * proportional to its height and area instead of the area of the image.
+ * 
+ * The intersection of the shape with a horizontal line is expected to be a
+ * single interval, as it is the case for convex shapes.
+ * 
+ * @see Rasterizer2D
+ * 
+ * @author dlegland
+ */
+public interface SpanShape2D extends DigitalShape2D
+{
+    /**
+     * Computes the extent of the intersection of this shape with the
+     * horizontal line of equation Y = y.
+     * 
+     * The computed extent is used as an initial guess, and the rasterizer
+     * corrects it by calling the isInside method on the extremity pixels, so
+     * that rounding errors do not change the result of the digitization.
+     * 
+     * @param y
+     *            the y-coordinate of the line
+     * @param extent
+     *            an array with at least two elements, used to store the
+     *            minimum and maximum x-coordinates of the intersection
+     * @return true if the intersection is not empty
+     */
+    public boolean lineExtent(double y, double[] extent);
+}
@@ -0,0 +1,42 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+import net.ijt.digishapes.DigitalShape3D;
+
+/**
+ * A 3D shape that can compute analytically its intersection with a line
+ * parallel to the X-axis. This allows digitizing the shape row by row, with a
+ * constant cost for each row followed by a bulk fill of the voxels within the
+ * shape.
+ * 
+ * The intersection of the shape with a line is expected to be a single
+ * interval, as it is the case for convex shapes.
+ * 
+ * @see Rasterizer3D
+ * 
+ * @author dlegland
+ */
+public interface SpanShape3D extends DigitalShape3D
+{
+    /**
+     * Computes the extent of the intersection of this shape with the line
+     * parallel to the X-axis that contains the points with coordinates y and
+     * z.
+     * 
+     * The computed extent is used as an initial guess, and the rasterizer
+     * corrects it by calling the isInside method on the extremity voxels, so
+     * that rounding errors do not change the result of the digitization.
+     * 
+     * @param y
+     *            the y-coordinate of the line
+     * @param z
+     *            the z-coordinate of the line
+     * @param extent
+     *            an array with at least two elements, used to store the
+     *            minimum and maximum x-coordinates of the intersection
+     * @return true if the intersection is not empty
+     */
+    public boolean lineExtent(double y, double z, double[] extent);
+}
@@ -0,0 +1,5 @@
+/**
+ * Rasterization engines, that convert geometric shapes into digital images
+ * using analytic computation of the pixel spans within each row.
+ */
+package net.ijt.digishapes.raster;
@@ -0,0 +1,213 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.scene;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+
+import ij.ImageStack;
+import ij.measure.ResultsTable;
+import net.ijt.digishapes.DigitalShape3D;
+import net.ijt.geometry.geom3d.Bounds3D;
+
+/**
+ * Renders a batch of shapes into a label image, each shape being assigned a
+ * unique label. Labels are consecutive integers starting from 1, in insertion
+ * order, and the background keeps its original value (usually 0).
+ * 
+ * The maximum number of labels depends on the bit depth of the image: 255
+ * for 8-bit images, 65535 for 16-bit images, and 2^24 for 32-bit images, as
+ * larger integers can not be represented exactly as float values.
+ * 
+ * The rendering relies on the Scene3D class, and therefore uses the span
+ * rasterizers and the slab-parallel processing.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * LabelRenderer3D renderer = new LabelRenderer3D();
+ * for (Ball3D ball : balls)
+ * {
+ *     renderer.add(ball);
+ * }
+ * ImageStack labels = LabelRenderer3D.createLabelStack(512, 512, 512, renderer.labelCount());
+ * renderer.render(labels, OverlapRule.FIRST_WINS, 0);
+ * renderer.createTable().show("Labels");
+ * }</pre>
+ * 
+ * @author dlegland
+ */
+public class LabelRenderer3D
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The shapes to render, the label of a shape being its index plus one.
+     */
+    final ArrayList<DigitalShape3D> shapes = new ArrayList<>();
+    
+    /**
+     * The optional parameters of each shape, used to populate the table of
+     * labels.
+     */
+    final ArrayList<Map<String, Double>> parameters = new ArrayList<>();
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new renderer without any shape.
+     */
+    public LabelRenderer3D()
+    {
+    }
+    
+    
+    // ===================================================================
+    // Static methods
+    
+    /**
+     * Creates a new stack with the smallest bit depth that can represent the
+     * specified number of labels.
+     * 
+     * @param sizeX
+     *            the width of the image
+     * @param sizeY
+     *            the height of the image
+     * @param sizeZ
+     *            the number of slices of the image
+     * @param labelCount
+     *            the number of labels to represent
+     * @return a new 8-bit, 16-bit or 32-bit stack
+     */
+    public static final ImageStack createLabelStack(int sizeX, int sizeY, int sizeZ, int labelCount)
+    {
+        int bitDepth = labelCount <= maxLabel(8) ? 8 : (labelCount <= maxLabel(16) ? 16 : 32);
+        return ImageStack.create(sizeX, sizeY, sizeZ, bitDepth);
+    }
+    
+    /**
+     * Returns the largest label that can be stored in an image with the
+     * specified bit depth.
+     */
+    private static final int maxLabel(int bitDepth)
+    {
+        switch (bitDepth)
+        {
+            case 8: return 255;
+            case 16: return 65535;
+            case 32: return 1 << 24;
+            default:
+                throw new IllegalArgumentException("Label images must be 8, 16 or 32 bits, not " + bitDepth);
+        }
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Adds a shape, and returns the label associated to the shape.
+     * 
+     * @param shape
+     *            the shape to add
+     * @return the label of the shape
+     */
+    public int add(DigitalShape3D shape)
+    {
+        return add(shape, Collections.<String, Double>emptyMap());
+    }
+    
+    /**
+     * Adds a shape together with a set of parameters to display in the table
+     * of labels, and returns the label associated to the shape.
+     * 
+     * @param shape
+     *            the shape to add
+     * @param params
+     *            the parameters of the shape, as a map from parameter name to
+     *            parameter value
+     * @return the label of the shape
+     */
+    public int add(DigitalShape3D shape, Map<String, Double> params)
+    {
+        shapes.add(shape);
+        parameters.add(params);
+        return shapes.size();
+    }
+    
+    /**
+     * @return the number of labels, corresponding to the number of shapes.
+     */
+    public int labelCount()
+    {
+        return shapes.size();
+    }
+    
+    /**
+     * Renders the labels of the shapes into the specified image.
+     * 
+     * @param image
+     *            the label image to fill, with 8, 16 or 32 bits per voxel
+     * @param rule
+     *            the rule used to choose the label of voxels covered by
+     *            several shapes
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     * @throws IllegalArgumentException
+     *             if the number of labels exceeds the capacity of the image
+     */
+    public void render(ImageStack image, OverlapRule rule, int nThreads)
+    {
+        int bitDepth = image.getBitDepth();
+        if (shapes.size() > maxLabel(bitDepth))
+        {
+            throw new IllegalArgumentException(String.format(
+                    "Can not store %d labels in a %d-bit image", shapes.size(), bitDepth));
+        }
+        
+        Scene3D scene = new Scene3D();
+        for (int i = 0; i < shapes.size(); i++)
+        {
+            scene.add(shapes.get(i), i + 1);
+        }
+        scene.render(image, rule, nThreads);
+    }
+    
+    /**
+     * Creates a table with one row per label, containing the class and the
+     * bounds of the corresponding shape, followed by its parameters.
+     * 
+     * @return a new table describing the labels
+     */
+    public ResultsTable createTable()
+    {
+        ResultsTable table = new ResultsTable(shapes.size());
+        for (int i = 0; i < shapes.size(); i++)
+        {
+            DigitalShape3D shape = shapes.get(i);
+            table.setLabel(Integer.toString(i + 1), i);
+            table.setValue("Label", i, i + 1);
+            table.setValue("Shape", i, shape.getClass().getSimpleName());
+            
+            Bounds3D bounds = shape.bounds();
+            table.setValue("XMin", i, bounds.minX());
+            table.setValue("XMax", i, bounds.maxX());
+            table.setValue("YMin", i, bounds.minY());
+            table.setValue("YMax", i, bounds.maxY());
+            table.setValue("ZMin", i, bounds.minZ());
+            table.setValue("ZMax", i, bounds.maxZ());
+            
+            for (Map.Entry<String, Double> param : parameters.get(i).entrySet())
+            {
+                table.setValue(param.getKey(), i, param.getValue());
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.scene;
+
+/**
+ * The rule used to choose the value of the voxels covered by several shapes
+ * of a scene.
+ * 
+ * @see Scene3D
+ * 
+ * @author dlegland
+ */
+public enum OverlapRule
+{
+    /** The value of the last shape added to the scene is retained. */
+    LAST_WINS,
+    
+    /** The value of the first shape added to the scene is retained. */
+    FIRST_WINS,
+    
+    /** The largest value of the shapes containing the voxel is retained. */
+    MAX;
+}
@@ -0,0 +1,471 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ij.ImageStack;
+import net.ijt.digishapes.DigitalShape3D;
+import net.ijt.digishapes.raster.Rasterizer3D;
+import net.ijt.digishapes.raster.SpanShape3D;
+import net.ijt.digishapes.util.PixelSink;
+import net.ijt.digishapes.util.SliceConsumer;
+import net.ijt.geometry.geom3d.Bounds3D;
+
+/**
+ * A collection of 3D shapes associated with fill values, that can be rendered
+ * into an image stack in a single pass.
+ * 
+ * The slices of the image are grouped into slabs of constant thickness. Before
+ * rendering, each shape is registered within the slabs crossed by its bounds,
+ * so that each slice is processed only with the shapes that may intersect it.
+ * The slabs can be processed concurrently by a ForkJoinPool.
+ * 
+ * Within each slice, the shapes are painted in an order that depends on the
+ * overlap rule, and each slice is processed by a single thread. The result
+ * therefore does not depend on thread scheduling. Voxels that do not belong
+ * to any shape keep their original value.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * Scene3D scene = new Scene3D();
+ * scene.add(new Ball3D(50, 50, 50, 30), 1);
+ * scene.add(new Ball3D(80, 50, 50, 30), 2);
+ * ImageStack image = ImageStack.create(200, 200, 200, 8);
+ * scene.render(image, OverlapRule.MAX, 0);
+ * }</pre>
+ * 
+ * Shapes from the ijGeometry library can be added using adapters, for
+ * example the Ellipsoid3DAdapter class.
+ * 
+ * @author dlegland
+ */
+public class Scene3D
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The number of slices within a slab of the spatial index.
+     */
+    private static final int SLAB_SIZE = 16;
+    
+    /**
+     * The shapes of the scene, in insertion order.
+     */
+    final ArrayList<Entry> entries = new ArrayList<>();
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new empty scene.
+     */
+    public Scene3D()
+    {
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Adds a shape to the scene.
+     * 
+     * @param shape
+     *            the shape to add
+     * @param value
+     *            the value used to fill the voxels within the shape
+     */
+    public void add(DigitalShape3D shape, double value)
+    {
+        entries.add(new Entry(shape, value));
+    }
+    
+    /**
+     * @return the number of shapes within this scene.
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+    
+    /**
+     * Returns the shape with the specified index, in insertion order.
+     * 
+     * @param index
+     *            the index of the shape
+     * @return the shape with the specified index
+     */
+    public DigitalShape3D shape(int index)
+    {
+        return entries.get(index).shape;
+    }
+    
+    /**
+     * Returns the fill value of the shape with the specified index, in
+     * insertion order.
+     * 
+     * @param index
+     *            the index of the shape
+     * @return the value used to fill the voxels within the shape
+     */
+    public double value(int index)
+    {
+        return entries.get(index).value;
+    }
+    
+    /**
+     * Renders the shapes of the scene into the image, using a single thread.
+     * 
+     * @param image
+     *            the image to fill
+     * @param rule
+     *            the rule used to choose the value of voxels covered by
+     *            several shapes
+     */
+    public void render(ImageStack image, OverlapRule rule)
+    {
+        render(image, rule, 1);
+    }
+    
+    /**
+     * Renders the shapes of the scene into the image, by processing the
+     * slabs with several threads.
+     * 
+     * @param image
+     *            the image to fill
+     * @param rule
+     *            the rule used to choose the value of voxels covered by
+     *            several shapes
+     * @param nThreads
+     *            the number of threads to use, or zero to use all the
+     *            available processors
+     */
+    public void render(ImageStack image, OverlapRule rule, int nThreads)
+    {
+        if (nThreads <= 0)
+        {
+            nThreads = Runtime.getRuntime().availableProcessors();
+        }
+        if (nThreads == 1)
+        {
+            Index index = new Index(image.getSize(), rule);
+            for (int i = 0; i < index.slabs.size(); i++)
+            {
+                index.renderSlab(image, i);
+            }
+            return;
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(nThreads);
+        try
+        {
+            render(image, rule, pool);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Renders the shapes of the scene into the image, by distributing the
+     * slabs over the threads of a ForkJoinPool.
+     * 
+     * @param image
+     *            the image to fill
+     * @param rule
+     *            the rule used to choose the value of voxels covered by
+     *            several shapes
+     * @param pool
+     *            the pool used to process the slabs
+     */
+    public void render(ImageStack image, OverlapRule rule, ForkJoinPool pool)
+    {
+        Index index = new Index(image.getSize(), rule);
+        if (!index.slabs.isEmpty())
+        {
+            pool.invoke(new RenderSlabsTask(index, image, 0, index.slabs.size() - 1));
+        }
+    }
+    
+    /**
+     * Renders the shapes of the scene slice by slice, and sends each slice to
+     * the consumer as soon as it is computed. Only the current slice is kept
+     * in memory, making it possible to stream images larger than the
+     * available memory to a file.
+     * 
+     * @param sizeX
+     *            the width of the image
+     * @param sizeY
+     *            the height of the image
+     * @param sizeZ
+     *            the number of slices of the image
+     * @param bitDepth
+     *            the bit depth of the slices: 8, 16, 24 (RGB) or 32
+     * @param rule
+     *            the rule used to choose the value of voxels covered by
+     *            several shapes
+     * @param consumer
+     *            the consumer that receives the slices, in increasing order
+     */
+    public void render(int sizeX, int sizeY, int sizeZ, int bitDepth, OverlapRule rule, SliceConsumer consumer)
+    {
+        ShapeVirtualStack stack = new ShapeVirtualStack(this, rule, sizeX, sizeY, sizeZ, bitDepth);
+        for (int z = 0; z < sizeZ; z++)
+        {
+            consumer.accept(z, stack.getProcessor(z + 1));
+        }
+    }
+    
+    /**
+     * Creates the spatial index of the shapes of this scene, for an image
+     * with the specified number of slices.
+     */
+    Index createIndex(int sizeZ, OverlapRule rule)
+    {
+        return new Index(sizeZ, rule);
+    }
+    
+    /**
+     * Returns the indices of the shapes in the order they must be painted,
+     * the last painted shape determining the value of a voxel.
+     * 
+     * @param rule
+     *            the rule used to choose the value of voxels covered by
+     *            several shapes
+     * @return the indices of the shapes, in paint order
+     */
+    public int[] paintOrder(OverlapRule rule)
+    {
+        int n = entries.size();
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++)
+        {
+            order[i] = i;
+        }
+        switch (rule)
+        {
+            case LAST_WINS:
+                break;
+            case FIRST_WINS:
+                Collections.reverse(Arrays.asList(order));
+                break;
+            case MAX:
+                // stable sort, so that shapes with the same value keep
+                // insertion order
+                Arrays.sort(order, Comparator.comparingDouble(i -> entries.get(i).value));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown overlap rule: " + rule);
+        }
+        
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            indices[i] = order[i];
+        }
+        return indices;
+    }
+    
+    /**
+     * Returns the shapes in the order they must be painted.
+     */
+    private List<Entry> paintEntries(OverlapRule rule)
+    {
+        ArrayList<Entry> order = new ArrayList<>(entries.size());
+        for (int index : paintOrder(rule))
+        {
+            order.add(entries.get(index));
+        }
+        return order;
+    }
+    
+    
+    // ===================================================================
+    // Inner classes
+    
+    /**
+     * A shape of the scene, together with its fill value and its bounds.
+     */
+    static final class Entry
+    {
+        final DigitalShape3D shape;
+        final double value;
+        final Bounds3D bounds;
+        
+        Entry(DigitalShape3D shape, double value)
+        {
+            this.shape = shape;
+            this.value = value;
+            this.bounds = shape.bounds();
+        }
+        
+        /**
+         * Fills the voxels of the slice with index z whose centers are within
+         * the shape.
+         */
+        void fillSlice(PixelSink sink, int sizeX, int sizeY, int z)
+        {
+            sink.setValue(value);
+            if (shape instanceof SpanShape3D)
+            {
+                Rasterizer3D.fillSlice(sink, sizeX, sizeY, (SpanShape3D) shape, z, bounds);
+                return;
+            }
+            
+            int x0 = (int) Math.max(Math.floor(bounds.minX()), 0);
+            int x1 = (int) Math.min(Math.ceil(bounds.maxX()), sizeX - 1);
+            int y0 = (int) Math.max(Math.floor(bounds.minY()), 0);
+            int y1 = (int) Math.min(Math.ceil(bounds.maxY()), sizeY - 1);
+            for (int y = y0; y <= y1; y++)
+            {
+                for (int x = x0; x <= x1; x++)
+                {
+                    if (shape.isInside(x + 0.5, y + 0.5, z + 0.5))
+                    {
+                        sink.set(x, y);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * The spatial index of the scene for a given number of slices: the list
+     * of shapes crossing each slab, in paint order.
+     */
+    final class Index
+    {
+        final int sizeZ;
+        
+        /**
+         * For each slab, the shapes whose bounds cross the slab.
+         */
+        final ArrayList<ArrayList<Entry>> slabs = new ArrayList<>();
+        
+        Index(int sizeZ, OverlapRule rule)
+        {
+            this.sizeZ = sizeZ;
+            int nSlabs = (sizeZ + SLAB_SIZE - 1) / SLAB_SIZE;
+            for (int i = 0; i < nSlabs; i++)
+            {
+                slabs.add(new ArrayList<Entry>());
+            }
+            
+            for (Entry entry : paintEntries(rule))
+            {
+                int z0 = firstSlice(entry);
+                int z1 = lastSlice(entry, sizeZ);
+                if (z0 > z1)
+                {
+                    continue;
+                }
+                for (int i = z0 / SLAB_SIZE; i <= z1 / SLAB_SIZE; i++)
+                {
+                    slabs.get(i).add(entry);
+                }
+            }
+        }
+        
+        /**
+         * Renders the slices of the slab with the specified index.
+         */
+        void renderSlab(ImageStack image, int slabIndex)
+        {
+            if (slabs.get(slabIndex).isEmpty())
+            {
+                return;
+            }
+            
+            int zmin = slabIndex * SLAB_SIZE;
+            int zmax = Math.min(zmin + SLAB_SIZE, sizeZ) - 1;
+            for (int z = zmin; z <= zmax; z++)
+            {
+                renderSlice(PixelSink.create(image, z, 0), image.getWidth(), image.getHeight(), z);
+            }
+        }
+        
+        /**
+         * Renders the shapes crossing the slice with index z, using the
+         * specified pixel sink.
+         */
+        void renderSlice(PixelSink sink, int sizeX, int sizeY, int z)
+        {
+            for (Entry entry : slabs.get(z / SLAB_SIZE))
+            {
+                if (z >= firstSlice(entry) && z <= lastSlice(entry, sizeZ))
+                {
+                    entry.fillSlice(sink, sizeX, sizeY, z);
+                }
+            }
+        }
+        
+        /**
+         * Returns the index of the first slice whose center may be within the
+         * bounds of the shape, keeping a margin of one voxel for rounding
+         * errors.
+         */
+        private int firstSlice(Entry entry)
+        {
+            return (int) Math.max(Math.floor(entry.bounds.minZ()) - 1, 0);
+        }
+        
+        /**
+         * Returns the index of the last slice whose center may be within the
+         * bounds of the shape.
+         */
+        private int lastSlice(Entry entry, int sizeZ)
+        {
+            return (int) Math.min(Math.ceil(entry.bounds.maxZ()), sizeZ - 1);
+        }
+    }
+    
+    /**
+     * Renders a range of slabs, by recursively splitting the range into two
+     * halves until a single slab remains.
+     */
+    private static final class RenderSlabsTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        
+        final Index index;
+        final ImageStack image;
+        
+        /**
+         * The indices of the first and last slabs to render (inclusive).
+         */
+        final int s0, s1;
+        
+        RenderSlabsTask(Index index, ImageStack image, int s0, int s1)
+        {
+            this.index = index;
+            this.image = image;
+            this.s0 = s0;
+            this.s1 = s1;
+        }
+        
+        @Override
+        protected void compute()
+        {
+            if (s0 == s1)
+            {
+                index.renderSlab(image, s0);
+                return;
+            }
+            
+            int sm = (s0 + s1) >>> 1;
+            invokeAll(new RenderSlabsTask(index, image, s0, sm), new RenderSlabsTask(index, image, sm + 1, s1));
+        }
+    }
+}
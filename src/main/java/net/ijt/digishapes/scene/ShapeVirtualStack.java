@@ -0,0 +1,266 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.scene;
+
+import ij.VirtualStack;
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+import net.ijt.digishapes.DigitalShape3D;
+import net.ijt.digishapes.util.PixelSink;
+import net.ijt.digishapes.util.SliceCache;
+
+/**
+ * A virtual stack whose slices are computed from a scene of 3D shapes each
+ * time they are requested, instead of being stored in memory.
+ * 
+ * The shapes of the scene are indexed when the stack is created, so that
+ * each slice is computed only with the shapes crossing it, using the span
+ * rasterizer when possible. Later modifications of the scene are not taken
+ * into account. As each call to getProcessor() returns a new processor, the
+ * slices can be requested concurrently, but modifications of the returned
+ * processors are not kept.
+ * 
+ * A slice cache can be enabled to avoid computing several times the slices
+ * revisited by scrolling or by neighborhood filters. In that case,
+ * getProcessor() returns a copy of the cached slice.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * // a 4096^3 ball, without allocating the voxels
+ * ShapeVirtualStack stack = new ShapeVirtualStack(new Ball3D(2048, 2048, 2048, 2000), 255, 4096, 4096, 4096, 8);
+ * stack.enableCache(32, 1L << 30, 2);
+ * new ImagePlus("Ball", stack).show();
+ * }</pre>
+ * 
+ * @see Scene3D
+ * 
+ * @author dlegland
+ */
+public class ShapeVirtualStack extends VirtualStack
+{
+    // ===================================================================
+    // Class variables
+    
+    final int sizeZ;
+    final int bitDepth;
+    
+    /**
+     * The shapes crossing each slab of slices, in paint order.
+     */
+    final Scene3D.Index index;
+    
+    /**
+     * The cache of computed slices, or null if slices are always computed.
+     */
+    SliceCache cache = null;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new virtual stack containing a single shape.
+     * 
+     * @param shape
+     *            the shape to digitize
+     * @param value
+     *            the value of the voxels within the shape
+     * @param sizeX
+     *            the width of the slices
+     * @param sizeY
+     *            the height of the slices
+     * @param sizeZ
+     *            the number of slices
+     * @param bitDepth
+     *            the bit depth of the slices: 8, 16, 24 (RGB) or 32
+     */
+    public ShapeVirtualStack(DigitalShape3D shape, double value, int sizeX, int sizeY, int sizeZ, int bitDepth)
+    {
+        this(singleton(shape, value), OverlapRule.LAST_WINS, sizeX, sizeY, sizeZ, bitDepth);
+    }
+    
+    /**
+     * Creates a new virtual stack containing the shapes of a scene.
+     * 
+     * @param scene
+     *            the scene containing the shapes to digitize
+     * @param rule
+     *            the rule used to choose the value of voxels covered by
+     *            several shapes
+     * @param sizeX
+     *            the width of the slices
+     * @param sizeY
+     *            the height of the slices
+     * @param sizeZ
+     *            the number of slices
+     * @param bitDepth
+     *            the bit depth of the slices: 8, 16, 24 (RGB) or 32
+     */
+    public ShapeVirtualStack(Scene3D scene, OverlapRule rule, int sizeX, int sizeY, int sizeZ, int bitDepth)
+    {
+        super(sizeX, sizeY, null, null);
+        if (bitDepth != 8 && bitDepth != 16 && bitDepth != 24 && bitDepth != 32)
+        {
+            throw new IllegalArgumentException("Unsupported bit depth: " + bitDepth);
+        }
+        this.sizeZ = sizeZ;
+        this.bitDepth = bitDepth;
+        this.index = scene.createIndex(sizeZ, rule);
+    }
+    
+    private static final Scene3D singleton(DigitalShape3D shape, double value)
+    {
+        Scene3D scene = new Scene3D();
+        scene.add(shape, value);
+        return scene;
+    }
+    
+    
+    // ===================================================================
+    // Cache management
+    
+    /**
+     * Enables the caching of the computed slices, replacing the current cache
+     * if any.
+     * 
+     * @param maxSlices
+     *            the maximum number of slices kept in memory
+     * @param maxBytes
+     *            the maximum number of bytes kept in memory
+     * @param prefetchRadius
+     *            the number of slices computed in advance on each side of a
+     *            requested slice, or zero to disable prefetching
+     * @return the new cache, that can be used to monitor its efficiency
+     */
+    public synchronized SliceCache enableCache(int maxSlices, long maxBytes, int prefetchRadius)
+    {
+        disableCache();
+        SliceCache newCache = new SliceCache(z -> renderSlice(z).getPixels(), sizeZ, maxSlices, maxBytes);
+        newCache.setPrefetchRadius(prefetchRadius);
+        this.cache = newCache;
+        return newCache;
+    }
+    
+    /**
+     * Disables the caching of slices, and releases the cached slices.
+     */
+    public synchronized void disableCache()
+    {
+        if (cache != null)
+        {
+            cache.shutdown();
+            cache.clear();
+            cache = null;
+        }
+    }
+    
+    /**
+     * @return the current slice cache, or null if slices are not cached.
+     */
+    public synchronized SliceCache cache()
+    {
+        return cache;
+    }
+    
+    
+    // ===================================================================
+    // Implementation of the VirtualStack methods
+    
+    /**
+     * Computes the slice with the specified index.
+     * 
+     * @param n
+     *            the index of the slice, between 1 and the number of slices
+     * @return a new processor containing the slice
+     */
+    @Override
+    public ImageProcessor getProcessor(int n)
+    {
+        if (n < 1 || n > sizeZ)
+        {
+            throw new IllegalArgumentException("Slice index out of range: " + n);
+        }
+        
+        SliceCache sliceCache = cache();
+        if (sliceCache == null)
+        {
+            return renderSlice(n - 1);
+        }
+        
+        // copy the cached slice, so that modifications do not alter the cache
+        ImageProcessor slice = createSlice(getWidth(), getHeight());
+        Object pixels = sliceCache.get(n - 1);
+        System.arraycopy(pixels, 0, slice.getPixels(), 0, getWidth() * getHeight());
+        return slice;
+    }
+    
+    @Override
+    public Object getPixels(int n)
+    {
+        return getProcessor(n).getPixels();
+    }
+    
+    /**
+     * Does nothing, as the slices are computed from the shapes.
+     */
+    @Override
+    public void setPixels(Object pixels, int n)
+    {
+    }
+    
+    @Override
+    public int getSize()
+    {
+        return sizeZ;
+    }
+    
+    @Override
+    public String getSliceLabel(int n)
+    {
+        return null;
+    }
+    
+    @Override
+    public int getBitDepth()
+    {
+        return bitDepth;
+    }
+    
+    /**
+     * Throws an UnsupportedOperationException, as the number of slices is
+     * fixed.
+     */
+    @Override
+    public void deleteSlice(int n)
+    {
+        throw new UnsupportedOperationException("Can not remove slices from a ShapeVirtualStack");
+    }
+    
+    /**
+     * Computes the slice with index z, starting from 0.
+     */
+    private ImageProcessor renderSlice(int z)
+    {
+        int sizeX = getWidth();
+        int sizeY = getHeight();
+        ImageProcessor slice = createSlice(sizeX, sizeY);
+        index.renderSlice(PixelSink.create(slice, 0), sizeX, sizeY, z);
+        return slice;
+    }
+    
+    private ImageProcessor createSlice(int sizeX, int sizeY)
+    {
+        switch (bitDepth)
+        {
+            case 8: return new ByteProcessor(sizeX, sizeY);
+            case 16: return new ShortProcessor(sizeX, sizeY);
+            case 24: return new ColorProcessor(sizeX, sizeY);
+            default: return new FloatProcessor(sizeX, sizeY);
+        }
+    }
+}
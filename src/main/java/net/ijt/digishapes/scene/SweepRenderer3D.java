@@ -0,0 +1,334 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.scene;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Locale;
+
+import ij.ImageStack;
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+import net.ijt.digishapes.raster.Rasterizer3D;
+import net.ijt.digishapes.raster.SpanShape3D;
+import net.ijt.digishapes.util.PixelSink;
+import net.ijt.digishapes.util.SliceConsumer;
+import net.ijt.geometry.geom3d.Bounds3D;
+
+/**
+ * Renders large collections of shapes, such as clouds of balls or ellipsoids,
+ * by sweeping a plane along the Z-axis.
+ * 
+ * The shapes are sorted according to their first slice. While the plane
+ * advances, the shapes starting at the current slice are added to an active
+ * list, and the shapes ending before the current slice are removed from it.
+ * Each slice is computed by filling the spans of the sections of the active
+ * shapes, and is sent to a SliceConsumer. The memory used by the renderer is
+ * therefore limited to the list of shapes and the current slice, making it
+ * possible to stream the result to a file.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * SweepRenderer3D renderer = new SweepRenderer3D(2048, 2048, 2048, 8);
+ * for (double[] ball : balls)
+ * {
+ *     renderer.add(new Ball3D(ball[0], ball[1], ball[2], ball[3]), 255);
+ * }
+ * renderer.render((int z, ImageProcessor slice) -> writer.write(slice));
+ * IJ.log(String.format("%.3g voxels/s", renderer.voxelsPerSecond()));
+ * }</pre>
+ * 
+ * @author dlegland
+ */
+public class SweepRenderer3D
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The dimensions of the image to generate.
+     */
+    final int sizeX, sizeY, sizeZ;
+    
+    /**
+     * The bit depth of the slices: 8, 16, 24 (RGB) or 32.
+     */
+    final int bitDepth;
+    
+    /**
+     * The shapes to render, in insertion order.
+     */
+    final ArrayList<Entry> entries = new ArrayList<>();
+    
+    /**
+     * The number of voxels generated by the last call to the render method.
+     */
+    long voxelCount = 0;
+    
+    /**
+     * The duration of the last call to the render method, in nanoseconds.
+     */
+    long elapsedNanos = 0;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new renderer for an image with the specified dimensions.
+     * 
+     * @param sizeX
+     *            the width of the image
+     * @param sizeY
+     *            the height of the image
+     * @param sizeZ
+     *            the number of slices of the image
+     * @param bitDepth
+     *            the bit depth of the slices: 8, 16, 24 (RGB) or 32
+     */
+    public SweepRenderer3D(int sizeX, int sizeY, int sizeZ, int bitDepth)
+    {
+        if (bitDepth != 8 && bitDepth != 16 && bitDepth != 24 && bitDepth != 32)
+        {
+            throw new IllegalArgumentException("Bit depth must be 8, 16, 24 or 32, not " + bitDepth);
+        }
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.bitDepth = bitDepth;
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Adds a shape to render.
+     * 
+     * @param shape
+     *            the shape to add
+     * @param value
+     *            the value used to fill the voxels within the shape
+     */
+    public void add(SpanShape3D shape, double value)
+    {
+        entries.add(new Entry(shape, value, entries.size(), sizeZ));
+    }
+    
+    /**
+     * @return the number of shapes to render.
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+    
+    /**
+     * Renders the shapes into the slices of the specified image. The image
+     * must have the dimensions and the bit depth of the renderer. The values
+     * of the voxels outside of the shapes are set to zero.
+     * 
+     * @param image
+     *            the image to fill
+     * @param rule
+     *            the rule used to choose the value of voxels covered by
+     *            several shapes
+     * @throws IllegalArgumentException
+     *             if the dimensions or the bit depth of the image differ from
+     *             those of the renderer
+     */
+    public void render(ImageStack image, OverlapRule rule)
+    {
+        // the pixel arrays of the rendered slices replace those of the image
+        if (image.getWidth() != sizeX || image.getHeight() != sizeY || image.getSize() != sizeZ)
+        {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH, "Image size must be %dx%dx%d, not %dx%dx%d",
+                    sizeX, sizeY, sizeZ, image.getWidth(), image.getHeight(), image.getSize()));
+        }
+        if (image.getBitDepth() != bitDepth)
+        {
+            throw new IllegalArgumentException("Image bit depth must be " + bitDepth + ", not " + image.getBitDepth());
+        }
+        render(rule, (int z, ImageProcessor slice) -> image.setPixels(slice.getPixels(), z + 1));
+    }
+    
+    /**
+     * Renders the shapes slice by slice, using the "last wins" overlap rule.
+     * 
+     * @param consumer
+     *            the consumer that receives the slices, in increasing order
+     */
+    public void render(SliceConsumer consumer)
+    {
+        render(OverlapRule.LAST_WINS, consumer);
+    }
+    
+    /**
+     * Renders the shapes slice by slice, and sends each slice to the
+     * consumer.
+     * 
+     * @param rule
+     *            the rule used to choose the value of voxels covered by
+     *            several shapes
+     * @param consumer
+     *            the consumer that receives the slices, in increasing order
+     */
+    public void render(OverlapRule rule, SliceConsumer consumer)
+    {
+        long t0 = System.nanoTime();
+        
+        // the rank of each shape within the paint order
+        int[] ranks = paintRanks(rule);
+        Comparator<Entry> paintOrder = Comparator.comparingInt(e -> ranks[e.index]);
+        
+        // sort shapes by first slice
+        ArrayList<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingInt(e -> e.z0));
+        int next = 0;
+        
+        ArrayList<Entry> active = new ArrayList<>();
+        for (int z = 0; z < sizeZ; z++)
+        {
+            // remove the shapes that end before the current slice
+            final int zi = z;
+            active.removeIf(e -> e.z1 < zi);
+            
+            // add the shapes that start at the current slice
+            boolean added = false;
+            while (next < sorted.size() && sorted.get(next).z0 <= z)
+            {
+                Entry entry = sorted.get(next++);
+                if (entry.z1 >= z)
+                {
+                    active.add(entry);
+                    added = true;
+                }
+            }
+            if (added)
+            {
+                Collections.sort(active, paintOrder);
+            }
+            
+            // compute the slice
+            ImageProcessor slice = createSlice();
+            PixelSink sink = PixelSink.create(slice, 0);
+            for (Entry entry : active)
+            {
+                sink.setValue(entry.value);
+                Rasterizer3D.fillSlice(sink, sizeX, sizeY, entry.shape, z, entry.bounds);
+            }
+            consumer.accept(z, slice);
+        }
+        
+        this.voxelCount = (long) sizeX * sizeY * sizeZ;
+        this.elapsedNanos = System.nanoTime() - t0;
+    }
+    
+    /**
+     * Computes the rank of each shape within the paint order, the last
+     * painted shape determining the value of a voxel.
+     */
+    private int[] paintRanks(OverlapRule rule)
+    {
+        int n = entries.size();
+        ArrayList<Entry> order = new ArrayList<>(entries);
+        switch (rule)
+        {
+            case LAST_WINS:
+                break;
+            case FIRST_WINS:
+                Collections.reverse(order);
+                break;
+            case MAX:
+                order.sort(Comparator.comparingDouble(e -> e.value));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown overlap rule: " + rule);
+        }
+        
+        int[] ranks = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            ranks[order.get(i).index] = i;
+        }
+        return ranks;
+    }
+    
+    private ImageProcessor createSlice()
+    {
+        switch (bitDepth)
+        {
+            case 8: return new ByteProcessor(sizeX, sizeY);
+            case 16: return new ShortProcessor(sizeX, sizeY);
+            case 24: return new ColorProcessor(sizeX, sizeY);
+            default: return new FloatProcessor(sizeX, sizeY);
+        }
+    }
+    
+    /**
+     * @return the number of voxels generated by the last rendering.
+     */
+    public long voxelCount()
+    {
+        return voxelCount;
+    }
+    
+    /**
+     * @return the duration of the last rendering, in seconds.
+     */
+    public double elapsedTime()
+    {
+        return elapsedNanos / 1e9;
+    }
+    
+    /**
+     * @return the throughput of the last rendering, in voxels per second.
+     */
+    public double voxelsPerSecond()
+    {
+        return elapsedNanos > 0 ? voxelCount / (elapsedNanos / 1e9) : 0.0;
+    }
+    
+    
+    // ===================================================================
+    // Inner classes
+    
+    /**
+     * A shape to render, together with its fill value, its bounds and the
+     * range of slices it may intersect.
+     */
+    static final class Entry
+    {
+        final SpanShape3D shape;
+        final double value;
+        
+        /**
+         * The index of the shape within the insertion order.
+         */
+        final int index;
+        
+        final Bounds3D bounds;
+        
+        /**
+         * The indices of the first and last slices whose center may be within
+         * the bounds of the shape.
+         */
+        final int z0, z1;
+        
+        Entry(SpanShape3D shape, double value, int index, int sizeZ)
+        {
+            this.shape = shape;
+            this.value = value;
+            this.index = index;
+            this.bounds = shape.bounds();
+            this.z0 = (int) Math.max(Math.floor(bounds.minZ()) - 1, 0);
+            this.z1 = (int) Math.min(Math.ceil(bounds.maxZ()), sizeZ - 1);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * Rendering of scenes made of many shapes into a single image, using spatial
+ * indexing to process each slice with only the shapes that cross it.
+ * 
+ * @author dlegland
+ */
+package net.ijt.digishapes.scene;
\ No newline at end of file
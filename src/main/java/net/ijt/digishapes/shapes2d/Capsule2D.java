@@ -3,6 +3,8 @@
  */
 package net.ijt.digishapes.shapes2d;
 
+import net.ijt.digishapes.raster.LineExtents;
+import net.ijt.digishapes.raster.SpanShape2D;
 import net.ijt.digishapes.shapes3d.CenteredCylinder3D;
 import net.ijt.digishapes.shapes3d.Cylinder3D;
 import net.ijt.geometry.geom2d.AffineTransform2D;
@@ -18,7 +20,7 @@ import net.ijt.geometry.geom2d.Point2D;
  * 
  * @author dlegland
  */
-public class Capsule2D
+public class Capsule2D implements SpanShape2D
 {
     // ===================================================================
     // Class variables
@@ -45,6 +47,18 @@ public class Capsule2D
      */
     final double orientation;
     
+    /**
+     * The coefficients of the transform from global coordinates to the local
+     * coordinates of the unit capsule, computed once at construction.
+     */
+    final double m00, m01, m02, m10, m11, m12;
+    
+    /**
+     * The coordinates of the centers of the two end caps, computed once at
+     * construction.
+     */
+    final double x1, y1, x2, y2;
+    
     
     // ===================================================================
     // Constructors
@@ -71,6 +85,26 @@ public class Capsule2D
         this.length = length;
         this.radius = radius;
         this.orientation = rotAngle;
+        
+        // retrieve coefficients of the inverse transform by transforming the
+        // origin and the two unit vectors
+        AffineTransform2D inv = globalToLocalTransform();
+        Point2D o = inv.transform(new Point2D(0, 0));
+        Point2D ex = inv.transform(new Point2D(1, 0));
+        Point2D ey = inv.transform(new Point2D(0, 1));
+        this.m00 = ex.x() - o.x();
+        this.m01 = ey.x() - o.x();
+        this.m02 = o.x();
+        this.m10 = ex.y() - o.y();
+        this.m11 = ey.y() - o.y();
+        this.m12 = o.y();
+        
+        Point2D p1 = point1();
+        Point2D p2 = point2();
+        this.x1 = p1.x();
+        this.y1 = p1.y();
+        this.x2 = p2.x();
+        this.y2 = p2.y();
     }
     
     /**
@@ -106,14 +140,7 @@ public class Capsule2D
      */
     public boolean isInside(Point2D point)
     {
-        // first check if point is within cylinder 
-        Point2D pt = globalToLocalTransform().transform(point);
-        if (Math.abs(pt.y()) > 1) return false;
-        if (pt.x() >= -0.5 && pt.x() <= 0.5) return true;
-        // if not, check within end caps 
-        if (point.distance(point1()) <= radius) return true;
-        if (point.distance(point2()) <= radius) return true;
-        return false;
+        return isInside(point.x(), point.y());
     }
 
     /**
@@ -129,7 +156,54 @@ public class Capsule2D
      */
     public boolean isInside(double x, double y)
     {
-        return isInside(new Point2D(x, y));
+        // first check if point is within the central box 
+        if (Math.abs(m10 * x + m11 * y + m12) > 1) return false;
+        double lx = m00 * x + m01 * y + m02;
+        if (lx >= -0.5 && lx <= 0.5) return true;
+        // if not, check within end caps 
+        double r2 = radius * radius;
+        if (squaredDist(x, y, x1, y1) <= r2) return true;
+        if (squaredDist(x, y, x2, y2) <= r2) return true;
+        return false;
+    }
+    
+    private static final double squaredDist(double x, double y, double xc, double yc)
+    {
+        double dx = x - xc;
+        double dy = y - yc;
+        return dx * dx + dy * dy;
+    }
+    
+    @Override
+    public boolean lineExtent(double y, double[] extent)
+    {
+        double xmin = Double.POSITIVE_INFINITY;
+        double xmax = Double.NEGATIVE_INFINITY;
+        
+        // intersection with the central box
+        LineExtents.setInfinite(extent);
+        if (LineExtents.clipSlab(m00, m01 * y + m02, 0.5, extent)
+                && LineExtents.clipSlab(m10, m11 * y + m12, 1.0, extent))
+        {
+            xmin = extent[0];
+            xmax = extent[1];
+        }
+        
+        // intersection with the end caps
+        if (LineExtents.clipDisk(x1, (y - y1) * (y - y1), radius, extent))
+        {
+            xmin = Math.min(xmin, extent[0]);
+            xmax = Math.max(xmax, extent[1]);
+        }
+        if (LineExtents.clipDisk(x2, (y - y2) * (y - y2), radius, extent))
+        {
+            xmin = Math.min(xmin, extent[0]);
+            xmax = Math.max(xmax, extent[1]);
+        }
+        
+        extent[0] = xmin;
+        extent[1] = xmax;
+        return xmin <= xmax;
     }
     
     /**
@@ -0,0 +1,155 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.shapes2d;
+
+import net.ijt.digishapes.raster.CoverageFunctions;
+import net.ijt.digishapes.raster.CoverageShape2D;
+import net.ijt.digishapes.raster.LineExtents;
+import net.ijt.digishapes.raster.SpanShape2D;
+import net.ijt.geometry.geom2d.Bounds2D;
+import net.ijt.geometry.geom2d.curve.Circle2D;
+
+/**
+ * Wraps a Circle2D from the ijGeometry library to allow digitizing the disk
+ * it encloses row by row.
+ * 
+ * The inclusion test is delegated to the circle, while the extent of each row
+ * is computed from the center and the radius. The area of the disk within each
+ * pixel is computed exactly, for rendering partial area images.
+ * 
+ * @author dlegland
+ */
+public class Circle2DAdapter implements SpanShape2D, CoverageShape2D
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The x-coordinate of the center of the disk.
+     */
+    final double centerX;
+    
+    /**
+     * The y-coordinate of the center of the disk.
+     */
+    final double centerY;
+    
+    /**
+     * The radius of the disk.
+     */
+    final double radius;
+    
+    /**
+     * The wrapped circle.
+     */
+    final Circle2D circle;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new disk from its center and its radius.
+     * 
+     * @param centerX
+     *            the x-coordinate of the center of the disk
+     * @param centerY
+     *            the y-coordinate of the center of the disk
+     * @param radius
+     *            the radius of the disk
+     */
+    public Circle2DAdapter(double centerX, double centerY, double radius)
+    {
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.radius = radius;
+        this.circle = new Circle2D(centerX, centerY, radius);
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * @return the circle wrapped by this adapter.
+     */
+    public Circle2D circle()
+    {
+        return circle;
+    }
+    
+    @Override
+    public Bounds2D bounds()
+    {
+        return new Bounds2D(centerX - radius, centerX + radius, centerY - radius, centerY + radius);
+    }
+    
+    @Override
+    public boolean isInside(double x, double y)
+    {
+        return circle.isInside(x, y);
+    }
+    
+    @Override
+    public boolean lineExtent(double y, double[] extent)
+    {
+        return LineExtents.clipDisk(centerX, (y - centerY) * (y - centerY), radius, extent);
+    }
+    
+    @Override
+    public boolean rowCoverageExtent(int y, double[] extent)
+    {
+        // distances from the center to the nearest and farthest lines of the
+        // band
+        double dy0 = y - centerY;
+        double dy1 = y + 1 - centerY;
+        double near = dy0 > 0 ? dy0 : (dy1 < 0 ? -dy1 : 0);
+        double far = Math.max(-dy0, dy1);
+        double r2 = radius * radius;
+        if (near >= radius)
+        {
+            return false;
+        }
+        
+        double outer = Math.sqrt(r2 - near * near);
+        double inner = far < radius ? Math.sqrt(r2 - far * far) : 0;
+        extent[0] = centerX - outer;
+        extent[1] = centerX - inner;
+        extent[2] = centerX + inner;
+        extent[3] = centerX + outer;
+        extent[4] = 1.0;
+        return true;
+    }
+    
+    @Override
+    public void rowCoverage(int y, int x0, int x1, double[] coverage)
+    {
+        double dy0 = y - centerY;
+        double dy1 = dy0 + 1;
+        
+        // area of the disk part on the right of each pixel boundary, using
+        // the symmetry of the disk to share the values of adjacent pixels
+        double prev = CoverageFunctions.diskBand(radius, Math.abs(x0 - centerX), dy0, dy1);
+        for (int x = x0; x <= x1; x++)
+        {
+            double a0 = x - centerX;
+            double a1 = a0 + 1;
+            double next = CoverageFunctions.diskBand(radius, Math.abs(a1), dy0, dy1);
+            if (a0 >= 0)
+            {
+                coverage[x - x0] = prev - next;
+            }
+            else if (a1 <= 0)
+            {
+                coverage[x - x0] = next - prev;
+            }
+            else
+            {
+                // the pixel contains the center of the disk
+                coverage[x - x0] = 2 * CoverageFunctions.diskBand(radius, 0, dy0, dy1) - prev - next;
+            }
+            prev = next;
+        }
+    }
+}
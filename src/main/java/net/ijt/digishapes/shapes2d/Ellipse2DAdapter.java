@@ -0,0 +1,141 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.shapes2d;
+
+import net.ijt.digishapes.raster.LineExtents;
+import net.ijt.digishapes.raster.SpanShape2D;
+import net.ijt.geometry.geom2d.Bounds2D;
+import net.ijt.geometry.geom2d.curve.Ellipse2D;
+
+/**
+ * Wraps an Ellipse2D from the ijGeometry library to allow digitizing the
+ * region it encloses row by row.
+ * 
+ * The inclusion test is delegated to the ellipse, while the extent of each
+ * row is obtained by solving the quadratic equation of the ellipse.
+ * 
+ * @author dlegland
+ */
+public class Ellipse2DAdapter implements SpanShape2D
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The x-coordinate of the center of the ellipse.
+     */
+    final double centerX;
+    
+    /**
+     * The y-coordinate of the center of the ellipse.
+     */
+    final double centerY;
+    
+    /**
+     * The length of the major semi-axis.
+     */
+    final double semiAxis1;
+    
+    /**
+     * The length of the minor semi-axis.
+     */
+    final double semiAxis2;
+    
+    /**
+     * The orientation of the major axis, in degrees.
+     */
+    final double orientation;
+    
+    /**
+     * The coefficients of the quadratic equation
+     * <code>a * dx^2 + b * dx * dy + c * dy^2 = 1</code> of the ellipse
+     * boundary, relative to its center.
+     */
+    final double a, b, c;
+    
+    /**
+     * The wrapped ellipse.
+     */
+    final Ellipse2D ellipse;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new ellipse from its center, the length of its semi-axes, and
+     * its orientation.
+     * 
+     * @param centerX
+     *            the x-coordinate of the center of the ellipse
+     * @param centerY
+     *            the y-coordinate of the center of the ellipse
+     * @param semiAxis1
+     *            the length of the major semi-axis
+     * @param semiAxis2
+     *            the length of the minor semi-axis
+     * @param orientation
+     *            the orientation of the major axis, in degrees
+     */
+    public Ellipse2DAdapter(double centerX, double centerY, double semiAxis1, double semiAxis2, double orientation)
+    {
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.semiAxis1 = semiAxis1;
+        this.semiAxis2 = semiAxis2;
+        this.orientation = orientation;
+        this.ellipse = new Ellipse2D(centerX, centerY, semiAxis1, semiAxis2, orientation);
+        
+        double theta = Math.toRadians(orientation);
+        double cot = Math.cos(theta);
+        double sit = Math.sin(theta);
+        double r1 = semiAxis1 * semiAxis1;
+        double r2 = semiAxis2 * semiAxis2;
+        this.a = cot * cot / r1 + sit * sit / r2;
+        this.b = 2 * cot * sit * (1 / r1 - 1 / r2);
+        this.c = sit * sit / r1 + cot * cot / r2;
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * @return the ellipse wrapped by this adapter.
+     */
+    public Ellipse2D ellipse()
+    {
+        return ellipse;
+    }
+    
+    @Override
+    public Bounds2D bounds()
+    {
+        double theta = Math.toRadians(orientation);
+        double cot = Math.cos(theta);
+        double sit = Math.sin(theta);
+        double dx = Math.hypot(semiAxis1 * cot, semiAxis2 * sit);
+        double dy = Math.hypot(semiAxis1 * sit, semiAxis2 * cot);
+        return new Bounds2D(centerX - dx, centerX + dx, centerY - dy, centerY + dy);
+    }
+    
+    @Override
+    public boolean isInside(double x, double y)
+    {
+        return ellipse.isInside(x, y);
+    }
+    
+    @Override
+    public boolean lineExtent(double y, double[] extent)
+    {
+        double dy = y - centerY;
+        if (!LineExtents.clipQuadric(a, b * dy, c * dy * dy, extent))
+        {
+            return false;
+        }
+        extent[0] += centerX;
+        extent[1] += centerX;
+        return true;
+    }
+}
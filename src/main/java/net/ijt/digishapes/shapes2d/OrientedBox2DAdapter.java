@@ -0,0 +1,131 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.shapes2d;
+
+import net.ijt.digishapes.raster.LineExtents;
+import net.ijt.digishapes.raster.SpanShape2D;
+import net.ijt.geometry.geom2d.Bounds2D;
+import net.ijt.geometry.polygon2d.OrientedBox2D;
+
+/**
+ * Wraps an OrientedBox2D from the ijGeometry library to allow digitizing it
+ * row by row.
+ * 
+ * The inclusion test is delegated to the box, while the extent of each row is
+ * obtained by clipping the row with the two slabs that define the box.
+ * 
+ * @author dlegland
+ */
+public class OrientedBox2DAdapter implements SpanShape2D
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The x-coordinate of the center of the box.
+     */
+    final double centerX;
+    
+    /**
+     * The y-coordinate of the center of the box.
+     */
+    final double centerY;
+    
+    /**
+     * The length of the box, along its main direction.
+     */
+    final double size1;
+    
+    /**
+     * The width of the box, perpendicular to its main direction.
+     */
+    final double size2;
+    
+    /**
+     * The orientation of the main direction of the box, in degrees.
+     */
+    final double orientation;
+    
+    /**
+     * The cosine and the sine of the orientation.
+     */
+    final double cot, sit;
+    
+    /**
+     * The wrapped box.
+     */
+    final OrientedBox2D box;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new oriented box from its center, its size, and its
+     * orientation.
+     * 
+     * @param centerX
+     *            the x-coordinate of the center of the box
+     * @param centerY
+     *            the y-coordinate of the center of the box
+     * @param size1
+     *            the length of the box, along its main direction
+     * @param size2
+     *            the width of the box, perpendicular to its main direction
+     * @param orientation
+     *            the orientation of the main direction, in degrees
+     */
+    public OrientedBox2DAdapter(double centerX, double centerY, double size1, double size2, double orientation)
+    {
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.size1 = size1;
+        this.size2 = size2;
+        this.orientation = orientation;
+        this.box = new OrientedBox2D(centerX, centerY, size1, size2, orientation);
+        
+        double theta = Math.toRadians(orientation);
+        this.cot = Math.cos(theta);
+        this.sit = Math.sin(theta);
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * @return the box wrapped by this adapter.
+     */
+    public OrientedBox2D box()
+    {
+        return box;
+    }
+    
+    @Override
+    public Bounds2D bounds()
+    {
+        double dx = (Math.abs(cot) * size1 + Math.abs(sit) * size2) * 0.5;
+        double dy = (Math.abs(sit) * size1 + Math.abs(cot) * size2) * 0.5;
+        return new Bounds2D(centerX - dx, centerX + dx, centerY - dy, centerY + dy);
+    }
+    
+    @Override
+    public boolean isInside(double x, double y)
+    {
+        return box.isInside(x, y);
+    }
+    
+    @Override
+    public boolean lineExtent(double y, double[] extent)
+    {
+        // work with coordinates relative to box center
+        double dy = y - centerY;
+        LineExtents.setInfinite(extent);
+        if (!LineExtents.clipSlab(cot, sit * dy, size1 * 0.5, extent)) return false;
+        if (!LineExtents.clipSlab(-sit, cot * dy, size2 * 0.5, extent)) return false;
+        extent[0] += centerX;
+        extent[1] += centerX;
+        return true;
+    }
+}
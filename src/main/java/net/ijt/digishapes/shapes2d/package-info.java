@@ -1,5 +1,6 @@
 /**
  * A collection of 2D shapes, that are not already defined in the ijGeometry
- * library.
+ * library, and adapters that allow digitizing shapes from the ijGeometry
+ * library row by row.
  */
-package net.ijt.digishapes.shapes2d;
\ No newline at end of file
+package net.ijt.digishapes.shapes2d;
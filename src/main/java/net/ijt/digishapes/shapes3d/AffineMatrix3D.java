@@ -0,0 +1,98 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.shapes3d;
+
+import net.ijt.geometry.geom3d.AffineTransform3D;
+import net.ijt.geometry.geom3d.Point3D;
+
+/**
+ * Stores the twelve coefficients of a 3D affine transform, so that the
+ * transform can be applied to primitive coordinates without allocating
+ * points. The coefficients are retrieved once by transforming the origin and
+ * the three unit vectors.
+ * 
+ * @author dlegland
+ */
+final class AffineMatrix3D
+{
+    final double m00, m01, m02, m03;
+    final double m10, m11, m12, m13;
+    final double m20, m21, m22, m23;
+    
+    /**
+     * Creates a new matrix from the coefficients of the specified affine
+     * transform.
+     * 
+     * @param transform
+     *            the affine transform to convert
+     */
+    AffineMatrix3D(AffineTransform3D transform)
+    {
+        Point3D o = transform.transform(new Point3D(0, 0, 0));
+        Point3D ex = transform.transform(new Point3D(1, 0, 0));
+        Point3D ey = transform.transform(new Point3D(0, 1, 0));
+        Point3D ez = transform.transform(new Point3D(0, 0, 1));
+        
+        this.m00 = ex.x() - o.x();
+        this.m01 = ey.x() - o.x();
+        this.m02 = ez.x() - o.x();
+        this.m03 = o.x();
+        this.m10 = ex.y() - o.y();
+        this.m11 = ey.y() - o.y();
+        this.m12 = ez.y() - o.y();
+        this.m13 = o.y();
+        this.m20 = ex.z() - o.z();
+        this.m21 = ey.z() - o.z();
+        this.m22 = ez.z() - o.z();
+        this.m23 = o.z();
+    }
+    
+    /**
+     * @return the x-coordinate of the transformed point
+     */
+    double transformX(double x, double y, double z)
+    {
+        return m00 * x + m01 * y + m02 * z + m03;
+    }
+    
+    /**
+     * @return the y-coordinate of the transformed point
+     */
+    double transformY(double x, double y, double z)
+    {
+        return m10 * x + m11 * y + m12 * z + m13;
+    }
+    
+    /**
+     * @return the z-coordinate of the transformed point
+     */
+    double transformZ(double x, double y, double z)
+    {
+        return m20 * x + m21 * y + m22 * z + m23;
+    }
+    
+    /**
+     * Computes the axis-aligned box that contains the image of the specified
+     * box by this transform.
+     * 
+     * @return an array containing the three coordinates of the center of the
+     *         transformed box, followed by its three half-widths
+     */
+    double[] transformBox(double xmin, double xmax, double ymin, double ymax, double zmin, double zmax)
+    {
+        double xc = (xmin + xmax) * 0.5;
+        double yc = (ymin + ymax) * 0.5;
+        double zc = (zmin + zmax) * 0.5;
+        double hx = (xmax - xmin) * 0.5;
+        double hy = (ymax - ymin) * 0.5;
+        double hz = (zmax - zmin) * 0.5;
+        return new double[] {
+                transformX(xc, yc, zc),
+                transformY(xc, yc, zc),
+                transformZ(xc, yc, zc),
+                Math.abs(m00) * hx + Math.abs(m01) * hy + Math.abs(m02) * hz,
+                Math.abs(m10) * hx + Math.abs(m11) * hy + Math.abs(m12) * hz,
+                Math.abs(m20) * hx + Math.abs(m21) * hy + Math.abs(m22) * hz};
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.shapes3d;
+
+import net.ijt.digishapes.raster.BlockLocation;
+import net.ijt.digishapes.raster.BlockShape3D;
+import net.ijt.digishapes.raster.CoverageFunctions;
+import net.ijt.digishapes.raster.CoverageShape3D;
+import net.ijt.digishapes.raster.LineExtents;
+import net.ijt.digishapes.raster.SpanShape3D;
+import net.ijt.geometry.geom3d.Bounds3D;
+import net.ijt.geometry.geom3d.Point3D;
+
+/**
+ * A 3D ball, defined by its center and its radius.
+ * 
+ * @author dlegland
+ */
+public class Ball3D implements SpanShape3D, BlockShape3D, CoverageShape3D
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The x-coordinate of the center of the ball.
+     */
+    final double centerX;
+    
+    /**
+     * The y-coordinate of the center of the ball.
+     */
+    final double centerY;
+    
+    /**
+     * The z-coordinate of the center of the ball.
+     */
+    final double centerZ;
+    
+    /**
+     * The radius of the ball.
+     */
+    final double radius;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new ball from its center and its radius.
+     * 
+     * @param center
+     *            the center of the ball
+     * @param radius
+     *            the radius of the ball
+     */
+    public Ball3D(Point3D center, double radius)
+    {
+        this(center.x(), center.y(), center.z(), radius);
+    }
+    
+    /**
+     * Creates a new ball from the coordinates of its center and its radius.
+     * 
+     * @param centerX
+     *            the x-coordinate of the center of the ball
+     * @param centerY
+     *            the y-coordinate of the center of the ball
+     * @param centerZ
+     *            the z-coordinate of the center of the ball
+     * @param radius
+     *            the radius of the ball
+     */
+    public Ball3D(double centerX, double centerY, double centerZ, double radius)
+    {
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.centerZ = centerZ;
+        this.radius = radius;
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * @return the center of this ball.
+     */
+    public Point3D center()
+    {
+        return new Point3D(centerX, centerY, centerZ);
+    }
+    
+    /**
+     * @return the radius of this ball.
+     */
+    public double radius()
+    {
+        return radius;
+    }
+    
+    /**
+     * @return the volume of this ball.
+     */
+    public double volume()
+    {
+        return 4.0 * Math.PI * radius * radius * radius / 3.0;
+    }
+    
+    /**
+     * Checks if the specified point is contained within this ball.
+     * 
+     * @param point
+     *            the point to test
+     * @return true is the point is within this ball.
+     */
+    public boolean isInside(Point3D point)
+    {
+        return isInside(point.x(), point.y(), point.z());
+    }
+    
+    @Override
+    public boolean isInside(double x, double y, double z)
+    {
+        double dx = x - centerX;
+        double dy = y - centerY;
+        double dz = z - centerZ;
+        // compare squared radius to avoid square root computation
+        return dx * dx + dy * dy + dz * dz <= radius * radius;
+    }
+    
+    @Override
+    public boolean lineExtent(double y, double z, double[] extent)
+    {
+        double dy = y - centerY;
+        double dz = z - centerZ;
+        return LineExtents.clipDisk(centerX, dy * dy + dz * dz, radius, extent);
+    }
+    
+    @Override
+    public BlockLocation classifyBlock(double xmin, double xmax, double ymin, double ymax, double zmin, double zmax)
+    {
+        // squared distances from the center to the nearest and to the
+        // farthest points of the block
+        double near2 = 0;
+        double far2 = 0;
+        double[] mins = {xmin - centerX, ymin - centerY, zmin - centerZ};
+        double[] maxs = {xmax - centerX, ymax - centerY, zmax - centerZ};
+        for (int i = 0; i < 3; i++)
+        {
+            double d = Math.max(Math.max(mins[i], -maxs[i]), 0);
+            near2 += d * d;
+            double f = Math.max(-mins[i], maxs[i]);
+            far2 += f * f;
+        }
+        double r2 = radius * radius;
+        if (near2 > r2) return BlockLocation.OUTSIDE;
+        return far2 <= r2 ? BlockLocation.INSIDE : BlockLocation.BOUNDARY;
+    }
+    
+    @Override
+    public boolean hasExactCoverage()
+    {
+        return true;
+    }
+    
+    @Override
+    public boolean rowCoverageExtent(int y, int z, double[] extent)
+    {
+        // squared distances from the center line to the nearest and to the
+        // farthest points of the section of the row
+        double near2 = 0;
+        double far2 = 0;
+        double[] mins = {y - centerY, z - centerZ};
+        for (int i = 0; i < 2; i++)
+        {
+            double d = Math.max(Math.max(mins[i], -mins[i] - 1), 0);
+            near2 += d * d;
+            double f = Math.max(-mins[i], mins[i] + 1);
+            far2 += f * f;
+        }
+        double r2 = radius * radius;
+        if (near2 >= r2)
+        {
+            return false;
+        }
+        
+        double outer = Math.sqrt(r2 - near2);
+        double inner = far2 < r2 ? Math.sqrt(r2 - far2) : 0;
+        extent[0] = centerX - outer;
+        extent[1] = centerX - inner;
+        extent[2] = centerX + inner;
+        extent[3] = centerX + outer;
+        extent[4] = 1.0;
+        return true;
+    }
+    
+    @Override
+    public void rowCoverage(int y, int z, int x0, int x1, double[] coverage)
+    {
+        double dy0 = y - centerY;
+        double dy1 = dy0 + 1;
+        double dz0 = z - centerZ;
+        double dz1 = dz0 + 1;
+        
+        // volume of the ball part on the right of each voxel boundary, using
+        // the symmetry of the ball to share the values of adjacent voxels
+        double prev = CoverageFunctions.ballBar(radius, Math.abs(x0 - centerX), dy0, dy1, dz0, dz1);
+        for (int x = x0; x <= x1; x++)
+        {
+            double a0 = x - centerX;
+            double a1 = a0 + 1;
+            double next = CoverageFunctions.ballBar(radius, Math.abs(a1), dy0, dy1, dz0, dz1);
+            if (a0 >= 0)
+            {
+                coverage[x - x0] = prev - next;
+            }
+            else if (a1 <= 0)
+            {
+                coverage[x - x0] = next - prev;
+            }
+            else
+            {
+                // the voxel contains the center of the ball
+                coverage[x - x0] = 2 * CoverageFunctions.ballBar(radius, 0, dy0, dy1, dz0, dz1) - prev - next;
+            }
+            prev = next;
+        }
+    }
+    
+    @Override
+    public Bounds3D bounds()
+    {
+        return new Bounds3D(centerX - radius, centerX + radius, centerY - radius, centerY + radius, centerZ - radius, centerZ + radius);
+    }
+}
@@ -3,6 +3,10 @@
  */
 package net.ijt.digishapes.shapes3d;
 
+import net.ijt.digishapes.raster.BlockLocation;
+import net.ijt.digishapes.raster.BlockShape3D;
+import net.ijt.digishapes.raster.LineExtents;
+import net.ijt.digishapes.raster.SpanShape3D;
 import net.ijt.geometry.geom3d.AffineTransform3D;
 import net.ijt.geometry.geom3d.Bounds3D;
 import net.ijt.geometry.geom3d.Point3D;
@@ -17,7 +21,7 @@ import net.ijt.geometry.geom3d.Rotation3D;
  * 
  * @author dlegland
  */
-public class Capsule3D
+public class Capsule3D implements SpanShape3D, BlockShape3D
 {
     // ===================================================================
     // Class variables
@@ -49,6 +53,18 @@ public class Capsule3D
      */
     final double eulerAngleZ;
     
+    /**
+     * The coefficients of the transform from global coordinates to the local
+     * coordinates of the unit cylinder, computed once at construction.
+     */
+    final AffineMatrix3D globalToLocal;
+    
+    /**
+     * The coordinates of the centers of the two spherical caps, computed once
+     * at construction.
+     */
+    final double x1, y1, z1, x2, y2, z2;
+    
     
     // ===================================================================
     // Constructors
@@ -66,6 +82,51 @@ public class Capsule3D
         this.eulerAngleX = eulerX;
         this.eulerAngleY = eulerY;
         this.eulerAngleZ = eulerZ;
+        this.globalToLocal = new AffineMatrix3D(globalToLocalTransform());
+        
+        Point3D p1 = point1();
+        Point3D p2 = point2();
+        this.x1 = p1.x();
+        this.y1 = p1.y();
+        this.z1 = p1.z();
+        this.x2 = p2.x();
+        this.y2 = p2.y();
+        this.z2 = p2.z();
+    }
+    
+    /**
+     * @return the center of this capsule.
+     */
+    public Point3D center()
+    {
+        return center;
+    }
+    
+    /**
+     * @return the length of this capsule, without the two spherical caps.
+     */
+    public double length()
+    {
+        return length;
+    }
+    
+    /**
+     * @return the radius of this capsule.
+     */
+    public double radius()
+    {
+        return radius;
+    }
+    
+    /**
+     * Computes the volume of this capsule, as the sum of the volumes of the
+     * central cylinder and of a ball with the same radius.
+     * 
+     * @return the volume of this capsule.
+     */
+    public double volume()
+    {
+        return Math.PI * radius * radius * (length + 4.0 * radius / 3.0);
     }
     
     /**
@@ -113,15 +174,7 @@ public class Capsule3D
      */
     public boolean isInside(Point3D point)
     {
-        // first check if point is within cylinder 
-        Point3D pt = globalToLocalTransform().transform(point);
-        double r = Math.hypot(pt.x(), pt.y());
-        if (r > 1) return false;
-        if (pt.z() >= -0.5 && pt.z() <= 0.5) return true;
-        // if not, check within end caps 
-        if (point.distance(point1()) <= radius) return true;
-        if (point.distance(point2()) <= radius) return true;
-        return false;
+        return isInside(point.x(), point.y(), point.z());
     }
 
     /**
@@ -132,12 +185,101 @@ public class Capsule3D
      *            the x-coordinate of the point to test
      * @param y
      *            the y-coordinate of the point to test
+     * @param z
+     *            the z-coordinate of the point to test
      * @return true is the point is within the domain corresponding to this
      *         boundary.
      */
+    @Override
     public boolean isInside(double x, double y, double z)
     {
-        return isInside(new Point3D(x, y, z));
+        // first check if point is within cylinder 
+        double lx = globalToLocal.transformX(x, y, z);
+        double ly = globalToLocal.transformY(x, y, z);
+        if (lx * lx + ly * ly > 1) return false;
+        double lz = globalToLocal.transformZ(x, y, z);
+        if (lz >= -0.5 && lz <= 0.5) return true;
+        // if not, check within end caps 
+        double r2 = radius * radius;
+        if (squaredDist(x, y, z, x1, y1, z1) <= r2) return true;
+        if (squaredDist(x, y, z, x2, y2, z2) <= r2) return true;
+        return false;
+    }
+    
+    @Override
+    public boolean lineExtent(double y, double z, double[] extent)
+    {
+        double xmin = Double.POSITIVE_INFINITY;
+        double xmax = Double.NEGATIVE_INFINITY;
+        
+        // intersection with the central cylinder
+        double bx = globalToLocal.transformX(0, y, z);
+        double by = globalToLocal.transformY(0, y, z);
+        double ax = globalToLocal.m00;
+        double ay = globalToLocal.m10;
+        if (LineExtents.clipQuadric(ax * ax + ay * ay, 2 * (ax * bx + ay * by), bx * bx + by * by, extent)
+                && LineExtents.clipSlab(globalToLocal.m20, globalToLocal.transformZ(0, y, z), 0.5, extent))
+        {
+            xmin = extent[0];
+            xmax = extent[1];
+        }
+        
+        // intersection with the end caps
+        if (LineExtents.clipDisk(x1, squaredDist(y, z, y1, z1), radius, extent))
+        {
+            xmin = Math.min(xmin, extent[0]);
+            xmax = Math.max(xmax, extent[1]);
+        }
+        if (LineExtents.clipDisk(x2, squaredDist(y, z, y2, z2), radius, extent))
+        {
+            xmin = Math.min(xmin, extent[0]);
+            xmax = Math.max(xmax, extent[1]);
+        }
+        
+        extent[0] = xmin;
+        extent[1] = xmax;
+        return xmin <= xmax;
+    }
+    
+    @Override
+    public BlockLocation classifyBlock(double xmin, double xmax, double ymin, double ymax, double zmin, double zmax)
+    {
+        // the capsule contains the points within a distance equal to the
+        // radius from the segment joining the centers of the caps
+        double xc = (xmin + xmax) * 0.5;
+        double yc = (ymin + ymax) * 0.5;
+        double zc = (zmin + zmax) * 0.5;
+        double dist = Math.sqrt(squaredDistToSegment(xc, yc, zc));
+        double halfDiag = 0.5 * Math.sqrt(squaredDist(xmin, ymin, zmin, xmax, ymax, zmax));
+        
+        if (dist > radius + halfDiag) return BlockLocation.OUTSIDE;
+        return dist + halfDiag <= radius ? BlockLocation.INSIDE : BlockLocation.BOUNDARY;
+    }
+    
+    private double squaredDistToSegment(double x, double y, double z)
+    {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double dz = z2 - z1;
+        double len2 = dx * dx + dy * dy + dz * dz;
+        double t = len2 > 0 ? ((x - x1) * dx + (y - y1) * dy + (z - z1) * dz) / len2 : 0;
+        t = Math.min(Math.max(t, 0), 1);
+        return squaredDist(x, y, z, x1 + t * dx, y1 + t * dy, z1 + t * dz);
+    }
+    
+    private static final double squaredDist(double y, double z, double yc, double zc)
+    {
+        double dy = y - yc;
+        double dz = z - zc;
+        return dy * dy + dz * dz;
+    }
+    
+    private static final double squaredDist(double x, double y, double z, double xc, double yc, double zc)
+    {
+        double dx = x - xc;
+        double dy = y - yc;
+        double dz = z - zc;
+        return dx * dx + dy * dy + dz * dz;
     }
     
     /**
@@ -146,6 +288,7 @@ public class Capsule3D
      * 
      * @return the approximated bounds of this cylinder.
      */
+    @Override
     public Bounds3D bounds()
     {
         Point3D p1 = point1();
@@ -3,6 +3,8 @@
  */
 package net.ijt.digishapes.shapes3d;
 
+import net.ijt.digishapes.raster.LineExtents;
+import net.ijt.digishapes.raster.SpanShape3D;
 import net.ijt.geometry.geom3d.AffineTransform3D;
 import net.ijt.geometry.geom3d.Bounds3D;
 import net.ijt.geometry.geom3d.Point3D;
@@ -12,7 +14,7 @@ import net.ijt.geometry.geom3d.Rotation3D;
  * @author dlegland
  *
  */
-public class CenteredCylinder3D
+public class CenteredCylinder3D implements SpanShape3D
 {
     // ===================================================================
     // Class variables
@@ -39,6 +41,12 @@ public class CenteredCylinder3D
      */
     final double eulerAngleZ;
     
+    /**
+     * The coefficients of the transform from global coordinates to the local
+     * coordinates of the unit cylinder, computed once at construction.
+     */
+    final AffineMatrix3D globalToLocal;
+    
     
     // ===================================================================
     // Constructors
@@ -56,6 +64,7 @@ public class CenteredCylinder3D
         this.eulerAngleX = eulerX;
         this.eulerAngleY = eulerY;
         this.eulerAngleZ = eulerZ;
+        this.globalToLocal = new AffineMatrix3D(globalToLocalTransform());
     }
     
     /**
@@ -102,11 +111,7 @@ public class CenteredCylinder3D
      */
     public boolean isInside(Point3D point)
     {
-        Point3D pt = globalToLocalTransform().transform(point);
-        double r = Math.hypot(pt.x(), pt.y());
-        if (r > 1) return false;
-        if (Math.abs(pt.z()) > 0.5) return false;
-        return true;
+        return isInside(point.x(), point.y(), point.z());
     }
 
     /**
@@ -116,12 +121,36 @@ public class CenteredCylinder3D
      *            the x-coordinate of the point to test
      * @param y
      *            the y-coordinate of the point to test
+     * @param z
+     *            the z-coordinate of the point to test
      * @return true is the point is within the domain corresponding to this
      *         cylinder.
      */
+    @Override
     public boolean isInside(double x, double y, double z)
     {
-        return isInside(new Point3D(x, y, z));
+        if (Math.abs(globalToLocal.transformZ(x, y, z)) > 0.5) return false;
+        double lx = globalToLocal.transformX(x, y, z);
+        double ly = globalToLocal.transformY(x, y, z);
+        // compare squared radius to avoid square root computation
+        return lx * lx + ly * ly <= 1;
+    }
+    
+    @Override
+    public boolean lineExtent(double y, double z, double[] extent)
+    {
+        // intersection with the infinite cylinder
+        double bx = globalToLocal.transformX(0, y, z);
+        double by = globalToLocal.transformY(0, y, z);
+        double ax = globalToLocal.m00;
+        double ay = globalToLocal.m10;
+        if (!LineExtents.clipQuadric(ax * ax + ay * ay, 2 * (ax * bx + ay * by), bx * bx + by * by, extent))
+        {
+            return false;
+        }
+        
+        // restrict to the slab between the two end planes
+        return LineExtents.clipSlab(globalToLocal.m20, globalToLocal.transformZ(0, y, z), 0.5, extent);
     }
     
     /**
@@ -130,6 +159,7 @@ public class CenteredCylinder3D
      * 
      * @return the approximated bounds of this cylinder.
      */
+    @Override
     public Bounds3D bounds()
     {
         Point3D p1 = point1();
@@ -6,6 +6,12 @@ package net.ijt.digishapes.shapes3d;
 import java.util.ArrayList;
 import java.util.Collection;
 
+import net.ijt.digishapes.raster.BlockLocation;
+import net.ijt.digishapes.raster.BlockShape3D;
+import net.ijt.digishapes.raster.CoverageFunctions;
+import net.ijt.digishapes.raster.CoverageShape3D;
+import net.ijt.digishapes.raster.LineExtents;
+import net.ijt.digishapes.raster.SpanShape3D;
 import net.ijt.geometry.geom3d.AffineTransform3D;
 import net.ijt.geometry.geom3d.Bounds3D;
 import net.ijt.geometry.geom3d.Point3D;
@@ -15,7 +21,7 @@ import net.ijt.geometry.geom3d.Rotation3D;
  * @author dlegland
  *
  */
-public class Cuboid3D
+public class Cuboid3D implements SpanShape3D, BlockShape3D, CoverageShape3D
 {
     // ===================================================================
     // Class variables
@@ -44,6 +50,12 @@ public class Cuboid3D
      */
     final double eulerAngleZ;
     
+    /**
+     * The coefficients of the transform from global coordinates to the local
+     * coordinates of the unit cube, computed once at construction.
+     */
+    final AffineMatrix3D globalToLocal;
+    
     
     // ===================================================================
     // Constructors
@@ -65,6 +77,7 @@ public class Cuboid3D
         this.eulerAngleX = 0.0;
         this.eulerAngleY = 0.0;
         this.eulerAngleZ = 0.0;
+        this.globalToLocal = new AffineMatrix3D(globalToLocalTransform());
     }
 
     /**
@@ -98,6 +111,7 @@ public class Cuboid3D
         this.eulerAngleX = eulerAngleX;
         this.eulerAngleY = eulerAngleY;
         this.eulerAngleZ = eulerAngleZ;
+        this.globalToLocal = new AffineMatrix3D(globalToLocalTransform());
     }
 
     
@@ -129,6 +143,14 @@ public class Cuboid3D
         return sideLength3;
     }
     
+    /**
+     * @return the volume of this cuboid.
+     */
+    public double volume()
+    {
+        return sideLength1 * sideLength2 * sideLength3;
+    }
+    
     /**
      * Returns the orientation of this cuboid, as a Rotation3D object. 
      * 
@@ -163,11 +185,7 @@ public class Cuboid3D
      */
     public boolean isInside(Point3D point)
     {
-        Point3D pt = globalToLocalTransform().transform(point);
-        if (Math.abs(pt.x()) > 1) return false;
-        if (Math.abs(pt.y()) > 1) return false;
-        if (Math.abs(pt.z()) > 1) return false;
-        return true;
+        return isInside(point.x(), point.y(), point.z());
     }
 
     /**
@@ -178,12 +196,93 @@ public class Cuboid3D
      *            the x-coordinate of the point to test
      * @param y
      *            the y-coordinate of the point to test
+     * @param z
+     *            the z-coordinate of the point to test
      * @return true is the point is within the domain corresponding to this
      *         boundary.
      */
+    @Override
     public boolean isInside(double x, double y, double z)
     {
-        return isInside(new Point3D(x, y, z));
+        if (Math.abs(globalToLocal.transformX(x, y, z)) > 1) return false;
+        if (Math.abs(globalToLocal.transformY(x, y, z)) > 1) return false;
+        if (Math.abs(globalToLocal.transformZ(x, y, z)) > 1) return false;
+        return true;
+    }
+    
+    @Override
+    public boolean lineExtent(double y, double z, double[] extent)
+    {
+        LineExtents.setInfinite(extent);
+        return LineExtents.clipSlab(globalToLocal.m00, globalToLocal.transformX(0, y, z), 1.0, extent)
+                && LineExtents.clipSlab(globalToLocal.m10, globalToLocal.transformY(0, y, z), 1.0, extent)
+                && LineExtents.clipSlab(globalToLocal.m20, globalToLocal.transformZ(0, y, z), 1.0, extent);
+    }
+    
+    @Override
+    public BlockLocation classifyBlock(double xmin, double xmax, double ymin, double ymax, double zmin, double zmax)
+    {
+        // compare the bounds of the block in local coordinates with the unit
+        // cube
+        double[] box = globalToLocal.transformBox(xmin, xmax, ymin, ymax, zmin, zmax);
+        boolean inside = true;
+        for (int i = 0; i < 3; i++)
+        {
+            double c = Math.abs(box[i]);
+            double r = box[i + 3];
+            if (c - r > 1) return BlockLocation.OUTSIDE;
+            if (c + r > 1) inside = false;
+        }
+        return inside ? BlockLocation.INSIDE : BlockLocation.BOUNDARY;
+    }
+    
+    @Override
+    public boolean hasExactCoverage()
+    {
+        // the coverage is computed only for cuboids aligned with the axes
+        return eulerAngleX == 0 && eulerAngleY == 0 && eulerAngleZ == 0;
+    }
+    
+    @Override
+    public boolean rowCoverageExtent(int y, int z, double[] extent)
+    {
+        double fraction = sectionArea(y, z);
+        if (fraction <= 0)
+        {
+            return false;
+        }
+        
+        double xmin = center.x() - sideLength1 * 0.5;
+        double xmax = center.x() + sideLength1 * 0.5;
+        extent[0] = xmin;
+        extent[1] = xmin;
+        extent[2] = xmax;
+        extent[3] = xmax;
+        extent[4] = fraction;
+        return true;
+    }
+    
+    @Override
+    public void rowCoverage(int y, int z, int x0, int x1, double[] coverage)
+    {
+        double xmin = center.x() - sideLength1 * 0.5;
+        double xmax = center.x() + sideLength1 * 0.5;
+        double area = sectionArea(y, z);
+        for (int x = x0; x <= x1; x++)
+        {
+            coverage[x - x0] = CoverageFunctions.overlap(x, x + 1, xmin, xmax) * area;
+        }
+    }
+    
+    /**
+     * Computes the area of the intersection of the cuboid aligned with the
+     * axes with the section [y, y + 1] x [z, z + 1] of a row of voxels.
+     */
+    private double sectionArea(int y, int z)
+    {
+        double fy = CoverageFunctions.overlap(y, y + 1, center.y() - sideLength2 * 0.5, center.y() + sideLength2 * 0.5);
+        double fz = CoverageFunctions.overlap(z, z + 1, center.z() - sideLength3 * 0.5, center.z() + sideLength3 * 0.5);
+        return fy * fz;
     }
     
     /**
@@ -206,6 +305,7 @@ public class Cuboid3D
         return localToGlobalTransform().inverse();
     }
 
+    @Override
     public Bounds3D bounds()
     {
         return Bounds3D.of(vertices());
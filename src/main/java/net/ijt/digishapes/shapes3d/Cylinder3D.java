@@ -3,6 +3,8 @@
  */
 package net.ijt.digishapes.shapes3d;
 
+import net.ijt.digishapes.raster.LineExtents;
+import net.ijt.digishapes.raster.SpanShape3D;
 import net.ijt.geometry.geom3d.AffineTransform3D;
 import net.ijt.geometry.geom3d.Bounds3D;
 import net.ijt.geometry.geom3d.Point3D;
@@ -12,7 +14,7 @@ import net.ijt.geometry.geom3d.Vector3D;
  * @author dlegland
  *
  */
-public class Cylinder3D
+public class Cylinder3D implements SpanShape3D
 {
     // ===================================================================
     // Class variables
@@ -32,6 +34,12 @@ public class Cylinder3D
      */
     final double radius;
     
+    /**
+     * The coefficients of the transform from global coordinates to the local
+     * coordinates of the unit cylinder, computed once at construction.
+     */
+    final AffineMatrix3D globalToLocal;
+    
     
     // ===================================================================
     // Constructors
@@ -52,6 +60,7 @@ public class Cylinder3D
         this.p1 = p1;
         this.p2 = p2;
         this.radius = radius;
+        this.globalToLocal = new AffineMatrix3D(globalToLocalTransform());
     }
 
     /**
@@ -63,12 +72,7 @@ public class Cylinder3D
      */
     public boolean isInside(Point3D point)
     {
-        Point3D pt = globalToLocalTransform().transform(point);
-        double r = Math.hypot(pt.x(), pt.y());
-        if (r > 1) return false;
-        if (pt.z() > 1) return false;
-        if (pt.z() < 0) return false;
-        return true;
+        return isInside(point.x(), point.y(), point.z());
     }
 
     /**
@@ -78,11 +82,37 @@ public class Cylinder3D
      *            the x-coordinate of the point to test
      * @param y
      *            the y-coordinate of the point to test
+     * @param z
+     *            the z-coordinate of the point to test
      * @return true is the point is within the cylinder.
      */
+    @Override
     public boolean isInside(double x, double y, double z)
     {
-        return isInside(new Point3D(x, y, z));
+        double lz = globalToLocal.transformZ(x, y, z);
+        if (lz > 1) return false;
+        if (lz < 0) return false;
+        double lx = globalToLocal.transformX(x, y, z);
+        double ly = globalToLocal.transformY(x, y, z);
+        // compare squared radius to avoid square root computation
+        return lx * lx + ly * ly <= 1;
+    }
+    
+    @Override
+    public boolean lineExtent(double y, double z, double[] extent)
+    {
+        // intersection with the infinite cylinder
+        double bx = globalToLocal.transformX(0, y, z);
+        double by = globalToLocal.transformY(0, y, z);
+        double ax = globalToLocal.m00;
+        double ay = globalToLocal.m10;
+        if (!LineExtents.clipQuadric(ax * ax + ay * ay, 2 * (ax * bx + ay * by), bx * bx + by * by, extent))
+        {
+            return false;
+        }
+        
+        // restrict to the slab between the two end planes, where 0 <= lz <= 1
+        return LineExtents.clipSlab(globalToLocal.m20, globalToLocal.transformZ(0, y, z) - 0.5, 0.5, extent);
     }
     
     /**
@@ -91,6 +121,7 @@ public class Cylinder3D
      * 
      * @return the approximated bounds of this cylinder.
      */
+    @Override
     public Bounds3D bounds()
     {
         double xmin = Math.min(p1.x(), p2.x()) - radius;
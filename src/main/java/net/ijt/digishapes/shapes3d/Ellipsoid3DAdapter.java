@@ -0,0 +1,207 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.shapes3d;
+
+import net.ijt.digishapes.raster.BlockLocation;
+import net.ijt.digishapes.raster.BlockShape3D;
+import net.ijt.digishapes.raster.LineExtents;
+import net.ijt.digishapes.raster.SpanShape3D;
+import net.ijt.geometry.geom3d.AffineTransform3D;
+import net.ijt.geometry.geom3d.Bounds3D;
+import net.ijt.geometry.geom3d.Ellipsoid3D;
+import net.ijt.geometry.geom3d.Point3D;
+import net.ijt.geometry.geom3d.Rotation3D;
+
+/**
+ * Wraps an Ellipsoid3D from the ijGeometry library to allow digitizing the
+ * region it encloses row by row.
+ * 
+ * The inclusion test, the extent of each row and the classification of blocks
+ * all use the transform from global coordinates to the local basis defined by
+ * the semi-axes, in which the ellipsoid is the unit ball. The extent of each
+ * row is obtained by solving the quadratic equation of the unit ball.
+ * 
+ * @author dlegland
+ */
+public class Ellipsoid3DAdapter implements SpanShape3D, BlockShape3D
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The center of the ellipsoid.
+     */
+    final Point3D center;
+    
+    /**
+     * The lengths of the three semi-axes.
+     */
+    final double semiAxis1, semiAxis2, semiAxis3;
+    
+    /**
+     * The three Euler angles defining the orientation of the ellipsoid, in
+     * degrees, in XYZ order.
+     */
+    final double eulerAngleX, eulerAngleY, eulerAngleZ;
+    
+    /**
+     * The coefficients of the transform from the unit ball to the ellipsoid.
+     */
+    final AffineMatrix3D localToGlobal;
+    
+    /**
+     * The coefficients of the transform from global coordinates to the local
+     * coordinates of the unit ball.
+     */
+    final AffineMatrix3D globalToLocal;
+    
+    /**
+     * The wrapped ellipsoid.
+     */
+    final Ellipsoid3D ellipsoid;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new ellipsoid from its center, the length of its semi-axes,
+     * and three Euler angles.
+     * 
+     * @param centerX
+     *            the x-coordinate of the center of the ellipsoid
+     * @param centerY
+     *            the y-coordinate of the center of the ellipsoid
+     * @param centerZ
+     *            the z-coordinate of the center of the ellipsoid
+     * @param semiAxis1
+     *            the length of the first semi-axis
+     * @param semiAxis2
+     *            the length of the second semi-axis
+     * @param semiAxis3
+     *            the length of the third semi-axis
+     * @param eulerAngleX
+     *            the first rotation applied to the ellipsoid, around the
+     *            X-axis, in degrees.
+     * @param eulerAngleY
+     *            the second rotation applied to the ellipsoid, around the
+     *            Y-axis, in degrees.
+     * @param eulerAngleZ
+     *            the third rotation applied to the ellipsoid, around the
+     *            Z-axis, in degrees.
+     */
+    public Ellipsoid3DAdapter(double centerX, double centerY, double centerZ, double semiAxis1, double semiAxis2, double semiAxis3, double eulerAngleX, double eulerAngleY, double eulerAngleZ)
+    {
+        this.center = new Point3D(centerX, centerY, centerZ);
+        this.semiAxis1 = semiAxis1;
+        this.semiAxis2 = semiAxis2;
+        this.semiAxis3 = semiAxis3;
+        this.eulerAngleX = eulerAngleX;
+        this.eulerAngleY = eulerAngleY;
+        this.eulerAngleZ = eulerAngleZ;
+        this.ellipsoid = new Ellipsoid3D(centerX, centerY, centerZ, semiAxis1, semiAxis2, semiAxis3, eulerAngleX, eulerAngleY, eulerAngleZ);
+        
+        AffineTransform3D transfo = localToGlobalTransform();
+        this.localToGlobal = new AffineMatrix3D(transfo);
+        this.globalToLocal = new AffineMatrix3D(transfo.inverse());
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * @return the ellipsoid wrapped by this adapter.
+     */
+    public Ellipsoid3D ellipsoid()
+    {
+        return ellipsoid;
+    }
+    
+    /**
+     * Returns the orientation of this ellipsoid, as a Rotation3D object. 
+     * 
+     * @return the orientation of the ellipsoid.
+     */
+    public Rotation3D orientation()
+    {
+        return Rotation3D.fromEulerAngles(Math.toRadians(eulerAngleX), Math.toRadians(eulerAngleY), Math.toRadians(eulerAngleZ));
+    }
+    
+    @Override
+    public boolean isInside(double x, double y, double z)
+    {
+        double lx = globalToLocal.transformX(x, y, z);
+        double ly = globalToLocal.transformY(x, y, z);
+        double lz = globalToLocal.transformZ(x, y, z);
+        return lx * lx + ly * ly + lz * lz <= 1;
+    }
+    
+    @Override
+    public boolean lineExtent(double y, double z, double[] extent)
+    {
+        // local coordinates are affine functions of x: l = a * x + b
+        double ax = globalToLocal.m00;
+        double ay = globalToLocal.m10;
+        double az = globalToLocal.m20;
+        double bx = globalToLocal.transformX(0, y, z);
+        double by = globalToLocal.transformY(0, y, z);
+        double bz = globalToLocal.transformZ(0, y, z);
+        
+        double a = ax * ax + ay * ay + az * az;
+        double b = 2 * (ax * bx + ay * by + az * bz);
+        double c = bx * bx + by * by + bz * bz;
+        return LineExtents.clipQuadric(a, b, c, extent);
+    }
+    
+    @Override
+    public BlockLocation classifyBlock(double xmin, double xmax, double ymin, double ymax, double zmin, double zmax)
+    {
+        // compare the bounds of the block in local coordinates with the unit
+        // ball, using the nearest and the farthest points of the bounds
+        double[] box = globalToLocal.transformBox(xmin, xmax, ymin, ymax, zmin, zmax);
+        double near2 = 0;
+        double far2 = 0;
+        for (int i = 0; i < 3; i++)
+        {
+            double c = Math.abs(box[i]);
+            double r = box[i + 3];
+            if (c > r) near2 += (c - r) * (c - r);
+            far2 += (c + r) * (c + r);
+        }
+        if (near2 > 1) return BlockLocation.OUTSIDE;
+        return far2 <= 1 ? BlockLocation.INSIDE : BlockLocation.BOUNDARY;
+    }
+    
+    /**
+     * Returns the bounds of the ellipsoid, computed from the norm of each row
+     * of the matrix mapping the unit ball to the ellipsoid.
+     * 
+     * @return the bounds of this ellipsoid.
+     */
+    @Override
+    public Bounds3D bounds()
+    {
+        AffineMatrix3D mat = localToGlobal;
+        double dx = Math.sqrt(mat.m00 * mat.m00 + mat.m01 * mat.m01 + mat.m02 * mat.m02);
+        double dy = Math.sqrt(mat.m10 * mat.m10 + mat.m11 * mat.m11 + mat.m12 * mat.m12);
+        double dz = Math.sqrt(mat.m20 * mat.m20 + mat.m21 * mat.m21 + mat.m22 * mat.m22);
+        return new Bounds3D(center.x() - dx, center.x() + dx, center.y() - dy, center.y() + dy, center.z() - dz, center.z() + dz);
+    }
+    
+    /**
+     * Creates the affine transform that will map the unit ball to this
+     * ellipsoid.
+     * 
+     * @return the affine transform that will map the unit ball to this
+     *         ellipsoid.
+     */
+    private AffineTransform3D localToGlobalTransform()
+    {
+        AffineTransform3D sca = AffineTransform3D.createScaling(semiAxis1, semiAxis2, semiAxis3);
+        AffineTransform3D rot = orientation().asTransform();
+        AffineTransform3D tra = AffineTransform3D.createTranslation(center);
+        return tra.concatenate(rot).concatenate(sca);
+    }
+}
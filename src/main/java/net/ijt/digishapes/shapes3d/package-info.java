@@ -1,6 +1,7 @@
 /**
  * A collection of 3D shapes, that are not already defined in the ijGeometry
- * library.
+ * library, as well as adapters for ijGeometry shapes. All shapes implement the
+ * SpanShape3D interface, so that they can be digitized row by row.
  * 
  * @author dlegland
  */
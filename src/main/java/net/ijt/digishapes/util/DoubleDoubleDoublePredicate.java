@@ -0,0 +1,35 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.util;
+
+/**
+ * A predicate on the coordinates of a point in 3D space. The "isInside"
+ * methods of 3D shapes can be used directly as method references. Example:
+ * 
+ * <pre>{@code
+ * ImageStack image = ImageStack.create(100, 100, 100, 8);
+ * Cube3D cube = new Cube3D(new Point3D(50, 50, 50), 40);
+ * ImageUtils.fillCenters(image, cube::isInside, 255);
+ * }</pre>
+ * 
+ * @see ImageUtils#fillCenters(ij.ImageStack, DoubleDoubleDoublePredicate, double)
+ * 
+ * @author dlegland
+ */
+@FunctionalInterface
+public interface DoubleDoubleDoublePredicate
+{
+    /**
+     * Evaluates this predicate on the specified point.
+     * 
+     * @param x
+     *            the x-coordinate of the point
+     * @param y
+     *            the y-coordinate of the point
+     * @param z
+     *            the z-coordinate of the point
+     * @return true if the point matches the predicate
+     */
+    public boolean test(double x, double y, double z);
+}
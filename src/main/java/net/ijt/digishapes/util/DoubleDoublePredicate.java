@@ -0,0 +1,33 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.util;
+
+/**
+ * A predicate on the coordinates of a point in the plane. The "isInside"
+ * methods of 2D shapes can be used directly as method references. Example:
+ * 
+ * <pre>{@code
+ * ImageProcessor image = new ByteProcessor(200, 200);
+ * Circle2D disk = new Circle2D(100, 100, 50);
+ * ImageUtils.fillCenters(image, disk::isInside, 255);
+ * }</pre>
+ * 
+ * @see ImageUtils#fillCenters(ij.process.ImageProcessor, DoubleDoublePredicate, float)
+ * 
+ * @author dlegland
+ */
+@FunctionalInterface
+public interface DoubleDoublePredicate
+{
+    /**
+     * Evaluates this predicate on the specified point.
+     * 
+     * @param x
+     *            the x-coordinate of the point
+     * @param y
+     *            the y-coordinate of the point
+     * @return true if the point matches the predicate
+     */
+    public boolean test(double x, double y);
+}
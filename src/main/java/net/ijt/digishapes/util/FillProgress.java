@@ -0,0 +1,56 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.util;
+
+/**
+ * Receives the progress of a long 3D fill, and decides whether the fill must
+ * be canceled. The progress is reported after each slice (or each slab of
+ * slices), so the inner loops of the rasterizers are not affected.
+ * 
+ * When the fill uses several threads, both methods are called concurrently
+ * by the worker threads, and should therefore be thread-safe and return
+ * quickly. Once isCanceled has returned true, the remaining slices are
+ * skipped, and the fill method throws a
+ * {@link java.util.concurrent.CancellationException}. The slices are never
+ * canceled while being filled: each slice of the image is either completely
+ * filled, or left unchanged.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * FillProgress progress = new ImageJFillProgress();
+ * try
+ * {
+ *     DigitalShapes.fill(image, ellipsoid, 255, 0, progress);
+ * }
+ * catch (CancellationException ex)
+ * {
+ *     IJ.showStatus("Fill canceled");
+ * }
+ * }</pre>
+ * 
+ * @see ImageJFillProgress
+ * 
+ * @author dlegland
+ */
+public interface FillProgress
+{
+    /**
+     * Called each time a slice or a slab of slices has been filled.
+     * 
+     * @param done
+     *            the number of slices filled so far
+     * @param total
+     *            the total number of slices to fill
+     */
+    public void progress(int done, int total);
+    
+    /**
+     * Checks whether the fill must be interrupted. Called before processing
+     * each slice or slab of slices.
+     * 
+     * @return true if the fill must be canceled
+     */
+    public boolean isCanceled();
+}
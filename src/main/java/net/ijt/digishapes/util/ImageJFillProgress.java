@@ -0,0 +1,87 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.util;
+
+import ij.IJ;
+
+/**
+ * Reports the progress of a fill with the ImageJ progress bar, and cancels the
+ * fill when the user presses the Escape key or when the thread that created
+ * this object is interrupted.
+ * 
+ * The progress bar is updated at most ten times per second, so that the
+ * worker threads do not wait for the display. As the worker threads report
+ * their progress concurrently, the updates that are older than the last
+ * displayed one are ignored, so that the progress bar is not shown again
+ * after the end of the fill.
+ * 
+ * @author dlegland
+ */
+public class ImageJFillProgress implements FillProgress
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The minimum delay between two updates of the progress bar, in
+     * nanoseconds.
+     */
+    private static final long UPDATE_PERIOD = 100_000_000L;
+    
+    /**
+     * The thread that started the fill, whose interruption cancels the fill.
+     */
+    final Thread caller;
+    
+    /**
+     * The time of the last update of the progress bar, from System.nanoTime.
+     */
+    long lastUpdate;
+    
+    /**
+     * The largest number of processed slices displayed so far.
+     */
+    int lastDone = -1;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new progress reporter, that cancels the fill when the current
+     * thread is interrupted or when the Escape key is pressed.
+     */
+    public ImageJFillProgress()
+    {
+        this.caller = Thread.currentThread();
+        this.lastUpdate = System.nanoTime();
+    }
+    
+    
+    // ===================================================================
+    // Implementation of the FillProgress interface
+    
+    @Override
+    public synchronized void progress(int done, int total)
+    {
+        if (done <= lastDone)
+        {
+            return;
+        }
+        long now = System.nanoTime();
+        if (done < total && now - lastUpdate < UPDATE_PERIOD)
+        {
+            return;
+        }
+        lastUpdate = now;
+        lastDone = done;
+        IJ.showProgress(done, total);
+    }
+    
+    @Override
+    public boolean isCanceled()
+    {
+        return IJ.escapePressed() || caller.isInterrupted();
+    }
+}
@@ -7,6 +7,8 @@ import java.util.function.BiFunction;
 
 import ij.ImageStack;
 import ij.process.ImageProcessor;
+import net.ijt.geometry.geom2d.Bounds2D;
+import net.ijt.geometry.geom3d.Bounds3D;
 
 /**
  * 
@@ -14,73 +16,274 @@ import ij.process.ImageProcessor;
 public class ImageUtils
 {
     /**
-     * Fills the content of the specified ImageProcessor using a function of the
-     * coordinates within the image.
+     * Fills the pixels of the specified ImageProcessor that match a predicate
+     * on the integer coordinates of the pixels.
      * 
      * Example:
      * 
      * <pre>{@code
      * ImageProcessor image = new ByteProcessor(8, 6);
-     * ImageUtils.fill(image, (x, y) -> (x + y * 10.0));
+     * ImageUtils.fillPixels(image, (int x, int y) -> (x + y) % 2 == 0, 255);
      * }</pre>
      * 
      * @param image
      *            the image to fill
      * @param fun
-     *            the function to use for filling
+     *            the predicate that identifies the pixels to fill
+     * @param fillValue
+     *            the value to assign to the pixels matching the predicate
      */
-    public static final void fill(ImageProcessor image, BiFunction<Integer, Integer, Boolean> fun, float fillValue)
+    public static final void fillPixels(ImageProcessor image, IntIntPredicate fun, float fillValue)
     {
-        int sizeX = image.getWidth();
-        int sizeY = image.getHeight();
-        
-        for (int y = 0; y < sizeY; y++)
+        fillPixels(image, 0, image.getWidth() - 1, 0, image.getHeight() - 1, fun, fillValue);
+    }
+    
+    /**
+     * Fills the pixels of the specified ImageProcessor that match a predicate,
+     * by considering only the pixels within the specified bounds. The cost of
+     * the fill is therefore proportional to the area of the bounds, and not
+     * to the size of the image.
+     * 
+     * The visited pixels are those whose indices are between the floor of the
+     * minimum coordinates and the ceil of the maximum coordinates of the
+     * bounds, clipped to the image.
+     * 
+     * @param image
+     *            the image to fill
+     * @param bounds
+     *            the bounds of the region to fill, in pixel coordinates
+     * @param fun
+     *            the predicate that identifies the pixels to fill
+     * @param fillValue
+     *            the value to assign to the pixels matching the predicate
+     */
+    public static final void fillPixels(ImageProcessor image, Bounds2D bounds, IntIntPredicate fun, float fillValue)
+    {
+        int x0 = (int) Math.max(Math.floor(bounds.minX()), 0);
+        int x1 = (int) Math.min(Math.ceil(bounds.maxX()), image.getWidth() - 1);
+        int y0 = (int) Math.max(Math.floor(bounds.minY()), 0);
+        int y1 = (int) Math.min(Math.ceil(bounds.maxY()), image.getHeight() - 1);
+        fillPixels(image, x0, x1, y0, y1, fun, fillValue);
+    }
+    
+    /**
+     * Fills the pixels within the rectangle [x0, x1] x [y0, y1] (inclusive)
+     * that match a predicate. The rectangle is assumed to be within the image.
+     */
+    private static final void fillPixels(ImageProcessor image, int x0, int x1, int y0, int y1, IntIntPredicate fun, float fillValue)
+    {
+        PixelSink sink = PixelSink.create(image, fillValue);
+        for (int y = y0; y <= y1; y++)
         {
-            for (int x = 0; x < sizeX; x++)
+            for (int x = x0; x <= x1; x++)
             {
-                if (fun.apply(x, y))
+                if (fun.test(x, y))
                 {
-                    image.setf(x, y, fillValue);
+                    sink.set(x, y);
                 }
             }
         }
     }
     
     /**
-     * Fills the content of the specified ImageStack using a function of the
-     * coordinates within the stack.
+     * Fills the pixels of the specified ImageProcessor whose centers, located
+     * at coordinates (x + 0.5, y + 0.5), match a predicate.
      * 
+     * Example:
      * 
      * <pre>{@code
-     * ImageStack image = ImageStack.create(7, 5, 3, 8);
-     * ImageUtils.fill(image, (x, y, z) -> (x + y * 10.0 + z * 100.0));
+     * ImageProcessor image = new ByteProcessor(200, 200);
+     * Circle2D disk = new Circle2D(100, 100, 50);
+     * ImageUtils.fillCenters(image, disk::isInside, 255);
      * }</pre>
      * 
      * @param image
      *            the image to fill
      * @param fun
+     *            the predicate evaluated on the center of each pixel
+     * @param fillValue
+     *            the value to assign to the pixels matching the predicate
+     */
+    public static final void fillCenters(ImageProcessor image, DoubleDoublePredicate fun, float fillValue)
+    {
+        fillPixels(image, (int x, int y) -> fun.test(x + 0.5, y + 0.5), fillValue);
+    }
+    
+    /**
+     * Fills the pixels of the specified ImageProcessor whose centers match a
+     * predicate, by considering only the pixels within the specified bounds.
+     * This is typically used with the bounds of the shape, to stamp many small
+     * shapes on a large image.
+     * 
+     * Example:
+     * 
+     * <pre>{@code
+     * ImageProcessor image = new ByteProcessor(20000, 20000);
+     * Capsule2D capsule = new Capsule2D(1000, 1000, 40, 10, 30);
+     * ImageUtils.fillCenters(image, capsule.bounds(), capsule::isInside, 255);
+     * }</pre>
+     * 
+     * @param image
+     *            the image to fill
+     * @param bounds
+     *            the bounds of the region to fill, in pixel coordinates
+     * @param fun
+     *            the predicate evaluated on the center of each pixel
+     * @param fillValue
+     *            the value to assign to the pixels matching the predicate
+     */
+    public static final void fillCenters(ImageProcessor image, Bounds2D bounds, DoubleDoublePredicate fun, float fillValue)
+    {
+        fillPixels(image, bounds, (int x, int y) -> fun.test(x + 0.5, y + 0.5), fillValue);
+    }
+    
+    /**
+     * Fills the content of the specified ImageProcessor using a function of the
+     * coordinates within the image.
+     * 
+     * @deprecated boxes coordinates and results for each pixel; use
+     *             {@link #fillPixels(ImageProcessor, IntIntPredicate, float)}
+     *             instead
+     * 
+     * @param image
+     *            the image to fill
+     * @param fun
      *            the function to use for filling
+     * @param fillValue
+     *            the value to assign to the pixels matching the function
      */
-    public static final void fill(ImageStack image, TriFunction<Integer, Integer, Integer, Boolean> fun, double fillValue)
+    @Deprecated
+    public static final void fill(ImageProcessor image, BiFunction<Integer, Integer, Boolean> fun, float fillValue)
     {
-        int sizeX = image.getWidth();
-        int sizeY = image.getHeight();
-        int sizeZ = image.getSize();
-        
-        for (int z = 0; z < sizeZ; z++)
+        fillPixels(image, (int x, int y) -> fun.apply(x, y), fillValue);
+    }
+    
+    /**
+     * Fills the voxels of the specified ImageStack that match a predicate on
+     * the integer coordinates of the voxels.
+     * 
+     * <pre>{@code
+     * ImageStack image = ImageStack.create(7, 5, 3, 8);
+     * ImageUtils.fillVoxels(image, (int x, int y, int z) -> (x + y + z) % 2 == 0, 255);
+     * }</pre>
+     * 
+     * @param image
+     *            the image to fill
+     * @param fun
+     *            the predicate that identifies the voxels to fill
+     * @param fillValue
+     *            the value to assign to the voxels matching the predicate
+     */
+    public static final void fillVoxels(ImageStack image, IntIntIntPredicate fun, double fillValue)
+    {
+        fillVoxels(image, 0, image.getWidth() - 1, 0, image.getHeight() - 1, 0, image.getSize() - 1, fun, fillValue);
+    }
+    
+    /**
+     * Fills the voxels of the specified ImageStack that match a predicate, by
+     * considering only the voxels within the specified bounds.
+     * 
+     * @param image
+     *            the image to fill
+     * @param bounds
+     *            the bounds of the region to fill, in voxel coordinates
+     * @param fun
+     *            the predicate that identifies the voxels to fill
+     * @param fillValue
+     *            the value to assign to the voxels matching the predicate
+     */
+    public static final void fillVoxels(ImageStack image, Bounds3D bounds, IntIntIntPredicate fun, double fillValue)
+    {
+        int x0 = (int) Math.max(Math.floor(bounds.minX()), 0);
+        int x1 = (int) Math.min(Math.ceil(bounds.maxX()), image.getWidth() - 1);
+        int y0 = (int) Math.max(Math.floor(bounds.minY()), 0);
+        int y1 = (int) Math.min(Math.ceil(bounds.maxY()), image.getHeight() - 1);
+        int z0 = (int) Math.max(Math.floor(bounds.minZ()), 0);
+        int z1 = (int) Math.min(Math.ceil(bounds.maxZ()), image.getSize() - 1);
+        fillVoxels(image, x0, x1, y0, y1, z0, z1, fun, fillValue);
+    }
+    
+    /**
+     * Fills the voxels within the box [x0, x1] x [y0, y1] x [z0, z1]
+     * (inclusive) that match a predicate. The box is assumed to be within the
+     * image.
+     */
+    private static final void fillVoxels(ImageStack image, int x0, int x1, int y0, int y1, int z0, int z1, IntIntIntPredicate fun, double fillValue)
+    {
+        for (int z = z0; z <= z1; z++)
         {
-            for (int y = 0; y < sizeY; y++)
+            PixelSink sink = PixelSink.create(image, z, fillValue);
+            for (int y = y0; y <= y1; y++)
             {
-                for (int x = 0; x < sizeX; x++)
+                for (int x = x0; x <= x1; x++)
                 {
-                    if (fun.apply(x, y, z))
+                    if (fun.test(x, y, z))
                     {
-                        image.setVoxel(x, y, z, fillValue);
+                        sink.set(x, y);
                     }
                 }
             }
         }
     }
     
-
+    /**
+     * Fills the voxels of the specified ImageStack whose centers, located at
+     * coordinates (x + 0.5, y + 0.5, z + 0.5), match a predicate.
+     * 
+     * <pre>{@code
+     * ImageStack image = ImageStack.create(100, 100, 100, 8);
+     * Cube3D cube = new Cube3D(new Point3D(50, 50, 50), 40);
+     * ImageUtils.fillCenters(image, cube::isInside, 255);
+     * }</pre>
+     * 
+     * @param image
+     *            the image to fill
+     * @param fun
+     *            the predicate evaluated on the center of each voxel
+     * @param fillValue
+     *            the value to assign to the voxels matching the predicate
+     */
+    public static final void fillCenters(ImageStack image, DoubleDoubleDoublePredicate fun, double fillValue)
+    {
+        fillVoxels(image, (int x, int y, int z) -> fun.test(x + 0.5, y + 0.5, z + 0.5), fillValue);
+    }
+    
+    /**
+     * Fills the voxels of the specified ImageStack whose centers match a
+     * predicate, by considering only the voxels within the specified bounds.
+     * 
+     * @param image
+     *            the image to fill
+     * @param bounds
+     *            the bounds of the region to fill, in voxel coordinates
+     * @param fun
+     *            the predicate evaluated on the center of each voxel
+     * @param fillValue
+     *            the value to assign to the voxels matching the predicate
+     */
+    public static final void fillCenters(ImageStack image, Bounds3D bounds, DoubleDoubleDoublePredicate fun, double fillValue)
+    {
+        fillVoxels(image, bounds, (int x, int y, int z) -> fun.test(x + 0.5, y + 0.5, z + 0.5), fillValue);
+    }
+    
+    /**
+     * Fills the content of the specified ImageStack using a function of the
+     * coordinates within the stack.
+     * 
+     * @deprecated boxes coordinates and results for each voxel; use
+     *             {@link #fillVoxels(ImageStack, IntIntIntPredicate, double)}
+     *             instead
+     * 
+     * @param image
+     *            the image to fill
+     * @param fun
+     *            the function to use for filling
+     * @param fillValue
+     *            the value to assign to the voxels matching the function
+     */
+    @Deprecated
+    public static final void fill(ImageStack image, TriFunction<Integer, Integer, Integer, Boolean> fun, double fillValue)
+    {
+        fillVoxels(image, (int x, int y, int z) -> fun.apply(x, y, z), fillValue);
+    }
 }
@@ -0,0 +1,37 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.util;
+
+/**
+ * A predicate on the integer coordinates of a voxel, used for populating 3D
+ * images without boxing the coordinates nor the result.
+ * 
+ * In general, it should not be necessary to reference the interface. Instead,
+ * one can use lambda syntax. Example:
+ * 
+ * <pre>{@code
+ * ImageStack image = ImageStack.create(7, 5, 3, 8);
+ * ImageUtils.fillVoxels(image, (int x, int y, int z) -> (x + y + z) % 2 == 0, 255);
+ * }</pre>
+ * 
+ * @see ImageUtils#fillVoxels(ij.ImageStack, IntIntIntPredicate, double)
+ * 
+ * @author dlegland
+ */
+@FunctionalInterface
+public interface IntIntIntPredicate
+{
+    /**
+     * Evaluates this predicate on the specified voxel coordinates.
+     * 
+     * @param x
+     *            the x-coordinate of the voxel
+     * @param y
+     *            the y-coordinate of the voxel
+     * @param z
+     *            the z-coordinate of the voxel
+     * @return true if the voxel matches the predicate
+     */
+    public boolean test(int x, int y, int z);
+}
@@ -0,0 +1,35 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.util;
+
+/**
+ * A predicate on the integer coordinates of a pixel, used for populating 2D
+ * images without boxing the coordinates nor the result.
+ * 
+ * In general, it should not be necessary to reference the interface. Instead,
+ * one can use lambda syntax. Example:
+ * 
+ * <pre>{@code
+ * ImageProcessor image = new ByteProcessor(8, 6);
+ * ImageUtils.fillPixels(image, (int x, int y) -> (x + y) % 2 == 0, 255);
+ * }</pre>
+ * 
+ * @see ImageUtils#fillPixels(ij.process.ImageProcessor, IntIntPredicate, float)
+ * 
+ * @author dlegland
+ */
+@FunctionalInterface
+public interface IntIntPredicate
+{
+    /**
+     * Evaluates this predicate on the specified pixel coordinates.
+     * 
+     * @param x
+     *            the x-coordinate of the pixel
+     * @param y
+     *            the y-coordinate of the pixel
+     * @return true if the pixel matches the predicate
+     */
+    public boolean test(int x, int y);
+}
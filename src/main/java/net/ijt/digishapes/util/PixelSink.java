@@ -0,0 +1,290 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.util;
+
+import java.util.Arrays;
+
+import ij.ImageStack;
+import ij.process.ImageProcessor;
+
+/**
+ * Writes a fill value into the pixels of a single 2D plane. Implementations
+ * keep a reference to the primitive pixel array of the plane, and convert the
+ * fill value to the pixel type only once, avoiding the type dispatch, bounds
+ * checks and clamping performed by ImageStack.setVoxel for each voxel.
+ * 
+ * Conversion of the fill value follows the conventions of
+ * {@link ij.ImageStack#setVoxel(int, int, int, double)}: integer types are
+ * clamped to their range and rounded, RGB pixels receive the integer part of
+ * the value as packed RGB value, without clamping (a value of 255 therefore
+ * corresponds to pure blue).
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * ImageStack image = ImageStack.create(100, 100, 100, 8);
+ * for (int z = 0; z < 100; z++)
+ * {
+ *     PixelSink sink = PixelSink.create(image, z, 255);
+ *     for (int y = 20; y < 80; y++)
+ *     {
+ *         sink.fill(y, 20, 79);
+ *     }
+ * }
+ * }</pre>
+ * 
+ * @author dlegland
+ */
+public interface PixelSink
+{
+    // ===================================================================
+    // Static factories
+    
+    /**
+     * Creates a new pixel sink for the specified pixel array.
+     * 
+     * @param pixels
+     *            the pixel array, as an instance of byte[], short[], float[] or
+     *            int[] (RGB)
+     * @param width
+     *            the number of pixels within a row of the plane
+     * @param value
+     *            the initial fill value
+     * @return a new pixel sink writing into the array
+     */
+    public static PixelSink create(Object pixels, int width, double value)
+    {
+        if (pixels instanceof byte[])
+        {
+            return new ByteArraySink((byte[]) pixels, width, value);
+        }
+        if (pixels instanceof short[])
+        {
+            return new ShortArraySink((short[]) pixels, width, value);
+        }
+        if (pixels instanceof float[])
+        {
+            return new FloatArraySink((float[]) pixels, width, value);
+        }
+        if (pixels instanceof int[])
+        {
+            return new RgbArraySink((int[]) pixels, width, value);
+        }
+        throw new IllegalArgumentException("Can not manage pixel array of class: " + pixels.getClass().getName());
+    }
+    
+    /**
+     * Creates a new pixel sink writing into the pixels of an ImageProcessor.
+     * 
+     * @param image
+     *            the image to fill
+     * @param value
+     *            the initial fill value
+     * @return a new pixel sink writing into the image
+     */
+    public static PixelSink create(ImageProcessor image, double value)
+    {
+        return create(image.getPixels(), image.getWidth(), value);
+    }
+    
+    /**
+     * Creates a new pixel sink writing into a slice of an ImageStack.
+     * 
+     * @param image
+     *            the 3D image to fill
+     * @param z
+     *            the slice index, starting from 0 (as for setVoxel)
+     * @param value
+     *            the initial fill value
+     * @return a new pixel sink writing into the slice
+     */
+    public static PixelSink create(ImageStack image, int z, double value)
+    {
+        return create(image.getPixels(z + 1), image.getWidth(), value);
+    }
+    
+    
+    // ===================================================================
+    // Interface methods
+    
+    /**
+     * Changes the value written by the subsequent calls to the set and fill
+     * methods.
+     * 
+     * @param value
+     *            the new fill value
+     */
+    public void setValue(double value);
+    
+    /**
+     * Writes the fill value into a single pixel.
+     * 
+     * @param x
+     *            the x-coordinate of the pixel
+     * @param y
+     *            the y-coordinate of the pixel
+     */
+    public void set(int x, int y);
+    
+    /**
+     * Writes the fill value into a range of pixels within a row.
+     * 
+     * @param y
+     *            the index of the row
+     * @param x0
+     *            the x-coordinate of the first pixel to fill
+     * @param x1
+     *            the x-coordinate of the last pixel to fill (inclusive)
+     */
+    public void fill(int y, int x0, int x1);
+    
+    
+    // ===================================================================
+    // Implementations
+    
+    /**
+     * Pixel sink for 8-bit images.
+     */
+    public static final class ByteArraySink implements PixelSink
+    {
+        final byte[] pixels;
+        final int width;
+        byte value;
+        
+        public ByteArraySink(byte[] pixels, int width, double value)
+        {
+            this.pixels = pixels;
+            this.width = width;
+            setValue(value);
+        }
+        
+        @Override
+        public void setValue(double value)
+        {
+            this.value = (byte) (Math.min(Math.max(value, 0.0), 255.0) + 0.5);
+        }
+        
+        @Override
+        public void set(int x, int y)
+        {
+            pixels[y * width + x] = value;
+        }
+        
+        @Override
+        public void fill(int y, int x0, int x1)
+        {
+            int offset = y * width;
+            Arrays.fill(pixels, offset + x0, offset + x1 + 1, value);
+        }
+    }
+    
+    /**
+     * Pixel sink for 16-bit images.
+     */
+    public static final class ShortArraySink implements PixelSink
+    {
+        final short[] pixels;
+        final int width;
+        short value;
+        
+        public ShortArraySink(short[] pixels, int width, double value)
+        {
+            this.pixels = pixels;
+            this.width = width;
+            setValue(value);
+        }
+        
+        @Override
+        public void setValue(double value)
+        {
+            this.value = (short) (Math.min(Math.max(value, 0.0), 65535.0) + 0.5);
+        }
+        
+        @Override
+        public void set(int x, int y)
+        {
+            pixels[y * width + x] = value;
+        }
+        
+        @Override
+        public void fill(int y, int x0, int x1)
+        {
+            int offset = y * width;
+            Arrays.fill(pixels, offset + x0, offset + x1 + 1, value);
+        }
+    }
+    
+    /**
+     * Pixel sink for 32-bit floating point images.
+     */
+    public static final class FloatArraySink implements PixelSink
+    {
+        final float[] pixels;
+        final int width;
+        float value;
+        
+        public FloatArraySink(float[] pixels, int width, double value)
+        {
+            this.pixels = pixels;
+            this.width = width;
+            setValue(value);
+        }
+        
+        @Override
+        public void setValue(double value)
+        {
+            this.value = (float) value;
+        }
+        
+        @Override
+        public void set(int x, int y)
+        {
+            pixels[y * width + x] = value;
+        }
+        
+        @Override
+        public void fill(int y, int x0, int x1)
+        {
+            int offset = y * width;
+            Arrays.fill(pixels, offset + x0, offset + x1 + 1, value);
+        }
+    }
+    
+    /**
+     * Pixel sink for RGB images, that writes the integer part of the fill
+     * value as packed RGB value, like ImageStack.setVoxel.
+     */
+    public static final class RgbArraySink implements PixelSink
+    {
+        final int[] pixels;
+        final int width;
+        int value;
+        
+        public RgbArraySink(int[] pixels, int width, double value)
+        {
+            this.pixels = pixels;
+            this.width = width;
+            setValue(value);
+        }
+        
+        @Override
+        public void setValue(double value)
+        {
+            this.value = (int) value;
+        }
+        
+        @Override
+        public void set(int x, int y)
+        {
+            pixels[y * width + x] = value;
+        }
+        
+        @Override
+        public void fill(int y, int x0, int x1)
+        {
+            int offset = y * width;
+            Arrays.fill(pixels, offset + x0, offset + x1 + 1, value);
+        }
+    }
+}
@@ -0,0 +1,446 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.util;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * A bounded cache of slice pixel arrays, that keeps the most recently used
+ * slices in memory and discards the least recently used ones.
+ * 
+ * The size of the cache is limited both by a number of slices and by a number
+ * of bytes. Missing slices are computed by a loader function. When a prefetch
+ * radius is specified, the slices neighboring a requested slice are computed
+ * in advance by a background thread, so that sequential scans do not wait
+ * for the computation of the next slices.
+ * 
+ * The cached arrays are shared: callers that need to modify the content of a
+ * slice must work on a copy.
+ * 
+ * Example:
+ * 
+ * <pre>{@code
+ * SliceCache cache = new SliceCache(z -> renderSlice(z), 1000, 64, 512L << 20);
+ * cache.setPrefetchRadius(2);
+ * Object pixels = cache.get(10);
+ * System.out.println(cache.hitCount() + " hits, " + cache.missCount() + " misses");
+ * }</pre>
+ * 
+ * @author dlegland
+ */
+public class SliceCache
+{
+    // ===================================================================
+    // Class variables
+    
+    /**
+     * The function used to compute the pixel array of a slice from its index.
+     */
+    final IntFunction<Object> loader;
+    
+    /**
+     * The number of slices that can be requested.
+     */
+    final int sliceCount;
+    
+    /**
+     * The maximum number of slices kept in memory.
+     */
+    final int maxSlices;
+    
+    /**
+     * The maximum number of bytes kept in memory.
+     */
+    final long maxBytes;
+    
+    /**
+     * The cached slices, in access order.
+     */
+    final LinkedHashMap<Integer, Object> slices = new LinkedHashMap<>(16, 0.75f, true);
+    
+    /**
+     * The indices of the slices being computed, either by a caller of the get
+     * method or by the prefetch thread.
+     */
+    final HashSet<Integer> pending = new HashSet<>();
+    
+    /**
+     * The number of slices on each side of a requested slice that are
+     * computed in advance.
+     */
+    int prefetchRadius = 0;
+    
+    /**
+     * The executor computing the prefetched slices, created on demand.
+     */
+    ThreadPoolExecutor prefetcher = null;
+    
+    long byteCount = 0;
+    long hitCount = 0;
+    long missCount = 0;
+    long prefetchCount = 0;
+    long evictionCount = 0;
+    
+    
+    // ===================================================================
+    // Constructors
+    
+    /**
+     * Creates a new slice cache.
+     * 
+     * @param loader
+     *            the function computing the pixel array of a slice from its
+     *            index
+     * @param sliceCount
+     *            the number of slices that can be requested, with indices
+     *            between 0 and sliceCount - 1
+     * @param maxSlices
+     *            the maximum number of slices kept in memory
+     * @param maxBytes
+     *            the maximum number of bytes kept in memory
+     */
+    public SliceCache(IntFunction<Object> loader, int sliceCount, int maxSlices, long maxBytes)
+    {
+        if (maxSlices < 1)
+        {
+            throw new IllegalArgumentException("Cache must contain at least one slice");
+        }
+        this.loader = loader;
+        this.sliceCount = sliceCount;
+        this.maxSlices = maxSlices;
+        this.maxBytes = maxBytes;
+    }
+    
+    
+    // ===================================================================
+    // Methods
+    
+    /**
+     * Changes the number of neighbor slices computed in advance on each side
+     * of the requested slices. A value of zero disables prefetching.
+     * 
+     * @param radius
+     *            the prefetch radius, in number of slices
+     */
+    public synchronized void setPrefetchRadius(int radius)
+    {
+        if (radius < 0)
+        {
+            throw new IllegalArgumentException("Prefetch radius must be positive or zero");
+        }
+        this.prefetchRadius = radius;
+    }
+    
+    /**
+     * Returns the pixel array of the slice with the specified index, computing
+     * it if it is not in the cache. If the slice is already being computed,
+     * by another caller or by the prefetch thread, waits for the end of its
+     * computation, so that each slice is computed only once.
+     * 
+     * @param index
+     *            the index of the slice
+     * @return the pixel array of the slice
+     */
+    public Object get(int index)
+    {
+        Object pixels;
+        boolean marked = false;
+        synchronized (this)
+        {
+            // keep waiting when interrupted, as the slice would otherwise be
+            // computed twice, and restore the interrupt status afterwards
+            boolean interrupted = false;
+            while (pending.contains(index))
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException ex)
+                {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+            
+            pixels = slices.get(index);
+            if (pixels != null)
+            {
+                hitCount++;
+            }
+            else
+            {
+                missCount++;
+                marked = pending.add(index);
+            }
+        }
+        
+        if (pixels == null)
+        {
+            try
+            {
+                pixels = loader.apply(index);
+            }
+            finally
+            {
+                synchronized (this)
+                {
+                    // only release the mark added by this call
+                    if (marked)
+                    {
+                        pending.remove(index);
+                    }
+                    if (pixels != null)
+                    {
+                        store(index, pixels);
+                    }
+                    notifyAll();
+                }
+            }
+        }
+        
+        prefetchNeighbors(index);
+        return pixels;
+    }
+    
+    /**
+     * Submits the computation of the slices around the specified index that
+     * are neither cached nor being computed.
+     */
+    private synchronized void prefetchNeighbors(int index)
+    {
+        for (int d = 1; d <= prefetchRadius; d++)
+        {
+            prefetch(index + d);
+            prefetch(index - d);
+        }
+    }
+    
+    private void prefetch(int index)
+    {
+        if (index < 0 || index >= sliceCount || slices.containsKey(index) || pending.contains(index))
+        {
+            return;
+        }
+        
+        if (prefetcher == null)
+        {
+            // when slices are requested faster than they are computed, discard
+            // the oldest request, that is the least likely to be useful
+            prefetcher = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(2 * prefetchRadius),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "SliceCache prefetch");
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (runnable, executor) -> {
+                        if (executor.isShutdown())
+                        {
+                            cancel(runnable);
+                            return;
+                        }
+                        cancel(executor.getQueue().poll());
+                        executor.execute(runnable);
+                    });
+            prefetcher.allowCoreThreadTimeOut(true);
+        }
+        
+        pending.add(index);
+        prefetcher.execute(new PrefetchTask(index));
+    }
+    
+    /**
+     * Releases the slice of a prefetch task that will not be executed.
+     */
+    private synchronized void cancel(Runnable task)
+    {
+        if (task instanceof PrefetchTask)
+        {
+            pending.remove(((PrefetchTask) task).index);
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Adds a slice to the cache, and removes the least recently used slices
+     * until the cache fits within its limits. The last added slice is always
+     * kept.
+     */
+    private void store(int index, Object pixels)
+    {
+        Object previous = slices.put(index, pixels);
+        if (previous != null)
+        {
+            byteCount -= byteSize(previous);
+        }
+        byteCount += byteSize(pixels);
+        
+        Iterator<Map.Entry<Integer, Object>> iter = slices.entrySet().iterator();
+        while (slices.size() > 1 && (slices.size() > maxSlices || byteCount > maxBytes))
+        {
+            Map.Entry<Integer, Object> eldest = iter.next();
+            byteCount -= byteSize(eldest.getValue());
+            iter.remove();
+            evictionCount++;
+        }
+    }
+    
+    /**
+     * Removes all the slices from the cache, and resets the counters.
+     */
+    public synchronized void clear()
+    {
+        slices.clear();
+        byteCount = 0;
+        hitCount = 0;
+        missCount = 0;
+        prefetchCount = 0;
+        evictionCount = 0;
+    }
+    
+    /**
+     * Stops the prefetch thread, after completion of the current computation.
+     * The cache can still be used, and the thread will be created again if
+     * needed.
+     */
+    public synchronized void shutdown()
+    {
+        if (prefetcher != null)
+        {
+            for (Runnable task : prefetcher.shutdownNow())
+            {
+                cancel(task);
+            }
+            prefetcher = null;
+        }
+    }
+    
+    private static final long byteSize(Object pixels)
+    {
+        if (pixels instanceof byte[])
+        {
+            return ((byte[]) pixels).length;
+        }
+        if (pixels instanceof short[])
+        {
+            return 2L * ((short[]) pixels).length;
+        }
+        if (pixels instanceof float[])
+        {
+            return 4L * ((float[]) pixels).length;
+        }
+        if (pixels instanceof int[])
+        {
+            return 4L * ((int[]) pixels).length;
+        }
+        throw new IllegalArgumentException("Unsupported pixel array: " + pixels.getClass().getName());
+    }
+    
+    
+    // ===================================================================
+    // Statistics
+    
+    /**
+     * @return the number of slices currently in the cache.
+     */
+    public synchronized int size()
+    {
+        return slices.size();
+    }
+    
+    /**
+     * @return the number of bytes of the slices currently in the cache.
+     */
+    public synchronized long byteCount()
+    {
+        return byteCount;
+    }
+    
+    /**
+     * @return the number of requests answered from the cache, including the
+     *         slices computed in advance.
+     */
+    public synchronized long hitCount()
+    {
+        return hitCount;
+    }
+    
+    /**
+     * @return the number of requests that required the computation of the
+     *         slice.
+     */
+    public synchronized long missCount()
+    {
+        return missCount;
+    }
+    
+    /**
+     * @return the number of slices computed in advance by the prefetch
+     *         thread.
+     */
+    public synchronized long prefetchCount()
+    {
+        return prefetchCount;
+    }
+    
+    /**
+     * @return the number of slices removed from the cache to respect its
+     *         limits.
+     */
+    public synchronized long evictionCount()
+    {
+        return evictionCount;
+    }
+    
+    
+    // ===================================================================
+    // Inner classes
+    
+    /**
+     * Computes a slice in advance and stores it within the cache.
+     */
+    private final class PrefetchTask implements Runnable
+    {
+        final int index;
+        
+        PrefetchTask(int index)
+        {
+            this.index = index;
+        }
+        
+        @Override
+        public void run()
+        {
+            Object pixels = null;
+            try
+            {
+                pixels = loader.apply(index);
+            }
+            finally
+            {
+                synchronized (SliceCache.this)
+                {
+                    pending.remove(index);
+                    if (pixels != null)
+                    {
+                        prefetchCount++;
+                        store(index, pixels);
+                    }
+                    SliceCache.this.notifyAll();
+                }
+            }
+        }
+    }
+}
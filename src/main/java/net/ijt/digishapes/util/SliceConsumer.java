@@ -0,0 +1,33 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.util;
+
+import ij.process.ImageProcessor;
+
+/**
+ * Receives the slices of a 3D image as soon as they are computed, allowing
+ * to process or save large images without keeping the whole stack in memory.
+ * 
+ * Slices are provided in increasing order of their index. Example:
+ * 
+ * <pre>{@code
+ * ImageStack stack = new ImageStack(200, 200);
+ * renderer.render((int z, ImageProcessor slice) -> stack.addSlice(slice));
+ * }</pre>
+ * 
+ * @author dlegland
+ */
+@FunctionalInterface
+public interface SliceConsumer
+{
+    /**
+     * Processes the slice with the specified index.
+     * 
+     * @param z
+     *            the index of the slice, starting from 0
+     * @param slice
+     *            the content of the slice
+     */
+    public void accept(int z, ImageProcessor slice);
+}
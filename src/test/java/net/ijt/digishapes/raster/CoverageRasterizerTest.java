@@ -0,0 +1,164 @@
+/**
+ * 
+ */
+package net.ijt.digishapes.raster;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import ij.ImageStack;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import net.ijt.digishapes.shapes2d.Circle2DAdapter;
+import net.ijt.digishapes.shapes3d.Ball3D;
+import net.ijt.digishapes.shapes3d.Cube3D;
+import net.ijt.digishapes.shapes3d.Cuboid3D;
+import net.ijt.geometry.geom3d.Point3D;
+
+/**
+ * @author dlegland
+ * 
+ */
+public class CoverageRasterizerTest
+{
+    /**
+     * Checks the corner areas and volumes of CoverageFunctions for regions
+     * with known values: quarter disk, full disk, octant of ball, full ball.
+     */
+    @Test
+    public final void testCoverageFunctions_Corners()
+    {
+        double r = 3.7;
+        assertEquals(Math.PI * r * r / 4, CoverageFunctions.diskCorner(r, 0, 0), 1e-10);
+        assertEquals(Math.PI * r * r, CoverageFunctions.diskCorner(r, -r, -r), 1e-10);
+        assertEquals(Math.PI * r * r * r / 6, CoverageFunctions.ballCorner(r, 0, 0, 0), 1e-10);
+        assertEquals(4 * Math.PI * r * r * r / 3, CoverageFunctions.ballCorner(r, -r, -r, -r), 1e-10);
+        assertEquals(0, CoverageFunctions.ballCorner(r, 2.2, 2.2, 2.2), 1e-10);
+    }
+    
+    /**
+     * Test method for {@link net.ijt.digishapes.raster.CoverageRasterizer#fillExact(ij.process.ImageProcessor, CoverageShape2D, double)}.
+     */
+    @Test
+    public final void testFillExact_Disk()
+    {
+        Circle2DAdapter disk = new Circle2DAdapter(30.27, 31.61, 20.35);
+        ImageProcessor exact = new FloatProcessor(64, 64);
+        ImageProcessor sampled = new FloatProcessor(64, 64);
+        
+        CoverageRasterizer.fillExact(exact, disk, 1.0);
+        CoverageRasterizer.fill(sampled, disk, 1.0, 256);
+        
+        double sum = 0;
+        for (int i = 0; i < 64 * 64; i++)
+        {
+            sum += exact.getf(i);
+            assertEquals(sampled.getf(i), exact.getf(i), 2e-3);
+        }
+        assertEquals(Math.PI * 20.35 * 20.35, sum, 1e-4);
+    }
+    
+    /**
+     * Test method for {@link net.ijt.digishapes.raster.CoverageRasterizer#fillExact(ij.process.ImageProcessor, CoverageShape2D, double)}.
+     */
+    @Test
+    public final void testFillExact_DiskWithinPixel()
+    {
+        ImageProcessor image = new FloatProcessor(8, 8);
+        
+        CoverageRasterizer.fillExact(image, new Circle2DAdapter(3.5, 3.5, 0.3), 1.0);
+        
+        assertEquals(Math.PI * 0.09, image.getf(3, 3), 1e-6);
+        assertEquals(0, image.getf(4, 3), 1e-6);
+    }
+    
+    /**
+     * Test method for {@link net.ijt.digishapes.raster.CoverageRasterizer#fillExact(ij.ImageStack, CoverageShape3D, double, int)}.
+     */
+    @Test
+    public final void testFillExact_Ball()
+    {
+        Ball3D ball = new Ball3D(20.3, 21.7, 19.2, 12.4);
+        ImageStack exact = ImageStack.create(42, 42, 42, 32);
+        ImageStack sampled = ImageStack.create(42, 42, 42, 32);
+        
+        CoverageRasterizer.fillExact(exact, ball, 1.0, 1);
+        CoverageRasterizer.fill(sampled, ball, 1.0, 32, 1);
+        
+        double sum = 0;
+        for (int z = 0; z < 42; z++)
+        {
+            for (int y = 0; y < 42; y++)
+            {
+                for (int x = 0; x < 42; x++)
+                {
+                    double v = exact.getVoxel(x, y, z);
+                    sum += v;
+                    assertEquals(sampled.getVoxel(x, y, z), v, 1e-2);
+                }
+            }
+        }
+        assertEquals(4 * Math.PI * Math.pow(12.4, 3) / 3, sum, 1e-3);
+    }
+    
+    /**
+     * Test method for {@link net.ijt.digishapes.raster.CoverageRasterizer#fillExact(ij.ImageStack, CoverageShape3D, double, int)}.
+     */
+    @Test
+    public final void testFillExact_BallMultiThread()
+    {
+        Ball3D ball = new Ball3D(20.3, 21.7, 19.2, 12.4);
+        ImageStack serial = ImageStack.create(42, 42, 42, 32);
+        ImageStack parallel = ImageStack.create(42, 42, 42, 32);
+        
+        CoverageRasterizer.fillExact(serial, ball, 1.0, 1);
+        CoverageRasterizer.fillExact(parallel, ball, 1.0, 4);
+        
+        for (int z = 0; z < 42; z++)
+        {
+            for (int y = 0; y < 42; y++)
+            {
+                for (int x = 0; x < 42; x++)
+                {
+                    assertEquals(serial.getVoxel(x, y, z), parallel.getVoxel(x, y, z), 0);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Test method for {@link net.ijt.digishapes.raster.CoverageRasterizer#fillExact(ij.ImageStack, CoverageShape3D, double, int)}.
+     */
+    @Test
+    public final void testFillExact_AlignedCuboid()
+    {
+        Cuboid3D cuboid = new Cuboid3D(new Point3D(20.3, 19.8, 21.1), 15.3, 10.7, 8.45);
+        ImageStack image = ImageStack.create(42, 42, 42, 32);
+        
+        CoverageRasterizer.fillExact(image, cuboid, 1.0, 1);
+        
+        double sum = 0;
+        for (int z = 0; z < 42; z++)
+        {
+            for (int y = 0; y < 42; y++)
+            {
+                for (int x = 0; x < 42; x++)
+                {
+                    sum += image.getVoxel(x, y, z);
+                }
+            }
+        }
+        assertEquals(15.3 * 10.7 * 8.45, sum, 1e-3);
+    }
+    
+    /**
+     * Test method for {@link net.ijt.digishapes.raster.CoverageRasterizer#fillExact(ij.ImageStack, CoverageShape3D, double, int)}.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testFillExact_RotatedCube()
+    {
+        ImageStack image = ImageStack.create(10, 10, 10, 32);
+        CoverageRasterizer.fillExact(image, new Cube3D(5, 5, 5, 4, 10, 0, 0), 1.0, 1);
+    }
+}